@@ -39,18 +39,24 @@
 package fi.vtt.physicalactivityclient;
 
 import android.app.Activity;
-import android.content.BroadcastReceiver;
+import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
+import android.content.ServiceConnection;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.IBinder;
+import android.os.Message;
 import android.util.Log;
 import android.widget.TextView;
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import java.text.DecimalFormat;
 
 /**
  * Application main (Activity) class. 
  * <p> 
- * Starts the PhysicalActivityClientService Android Service, no binding of the Service to this Activity is done however. 
+ * Starts the PhysicalActivityClientService Android Service and binds to it while this Activity is visible. 
+ * The results are read from the Service as a binary ActivitySnapshot record and formatted as text only here. 
  * <p> 
  * When this Activity is destroyed, an Intent is fired, which the PhysicalActivityClientService grabs and initiates shutdown. 
  * 
@@ -60,15 +66,6 @@ import android.widget.TextView;
 
 public class PhysicalActivityClientActivity extends Activity {
 
-	/**
-	 * Basic BroadcastReceiver for receiving Intents. 
-	 * 
-	 * @see  android.content.BroadcastReceiver 
-	 * 
-	 */
-
-    private PhysicalActivityBroadcastReceiver physicalActivityBroadcastReceiver = null;
-
     /**
      * TextView for displaying the physical activity data. 
      * 
@@ -79,36 +76,111 @@ public class PhysicalActivityClientActivity extends Activity {
     private TextView statusTextView = null;
 
     /**
-	 * Basic way of receiving broadcasted Intents. 
-	 * <p> 
-	 * Grabs the text Intent from the main Service and shows it on the TextView. 
+	 * Binder of the PhysicalActivityClientService, or null when not bound. 
+	 * 
+	 * @see  fi.vtt.physicalactivityclient.PhysicalActivityClientService.PhysicalActivityBinder 
+	 * 
+	 */
+
+	private PhysicalActivityClientService.PhysicalActivityBinder physicalActivityBinder = null;
+
+	/**
+	 * The result read from the PhysicalActivityClientService, reused for every result. 
+	 * 
+	 */
+
+	private final ActivitySnapshot activitySnapshot = new ActivitySnapshot();
+
+	/**
+	 * Formatter of the detection values, created once. 
+	 * 
+	 */
+
+	private DecimalFormat decimalFormat = null;
+
+	/**
+	 * Buffer for the shown text, reused for every result. 
+	 * 
+	 */
+
+	private final StringBuilder stringBuilder = new StringBuilder();
+
+	/**
+	 * Handler of the new result messages from the PhysicalActivityClientService, runs on the UI thread. 
+	 * 
+	 * @see  android.os.Handler 
+	 * 
+	 */
+
+	private final Handler resultHandler = new Handler() {
+
+		@Override
+		public void handleMessage(Message messageIncoming) {
+			if (messageIncoming.what == PhysicalActivityClientService.NEW_RESULT_MESSAGE_INTEGER) {
+				showResult();
+			}
+		}
+
+	};
+
+	/**
+	 * Connection to the PhysicalActivityClientService, set up in onStart() and torn down in onStop(). 
 	 * 
-	 * @see  android.content.BroadcastReceiver 
+	 * @see  android.content.ServiceConnection 
 	 * 
 	 */
 
-	public class PhysicalActivityBroadcastReceiver extends BroadcastReceiver {
+	private final ServiceConnection serviceConnection = new ServiceConnection() {
+
+		@Override
+		public void onServiceConnected(ComponentName componentNameIncoming, IBinder iBinderIncoming) {
+			physicalActivityBinder = (PhysicalActivityClientService.PhysicalActivityBinder)iBinderIncoming;
+			physicalActivityBinder.setResultHandler(resultHandler);
+
+			showResult();
+		}
 
 		@Override
-		public void onReceive(Context contextIncoming, Intent intentIncoming) {
-			Log.d(getString(R.string.PhysicalActivityClientActivityString), getString(R.string.OnReceiveString));
+		public void onServiceDisconnected(ComponentName componentNameIncoming) {
+			physicalActivityBinder = null;
+		}
 
-			if (intentIncoming.getAction().equals(getString(R.string.SetTextToTextViewString))) {
-				String string = intentIncoming.getStringExtra(getString(R.string.TextViewTextString));
+	};
 
-				if (string != null) {
-					statusTextView.setText(string);
-				}
+	/**
+	 * Reads the latest result from the PhysicalActivityClientService and shows it on the TextView. 
+	 * 
+	 */
 
+	private void showResult() {
+		if (physicalActivityBinder == null) {
+			return;
+		}
+
+		int counterInteger = physicalActivityBinder.getResult(activitySnapshot);
+
+		if (counterInteger == 0) {
+			return;
+		}
+
+		stringBuilder.setLength(0);
+		stringBuilder.append("c: ").append(counterInteger).append(' ');
+
+		for (int typeInteger = 0; typeInteger < ActivitySnapshot.DETECTION_TYPE_COUNT; typeInteger++) {
+			if (activitySnapshot.hasValue(typeInteger)) {
+				stringBuilder.append("key: ").append(typeInteger).append(" value: ");
+				stringBuilder.append(decimalFormat.format(activitySnapshot.getValue(typeInteger)));
+				stringBuilder.append(' ');
 			}
 		}
 
+		statusTextView.setText(stringBuilder);
 	}
 
 	/**
 	 * Basic onCreate() -method. 
 	 * <p> 
-	 * Starts the PhysicalActivityClientService Android Service, no binding to this Activity is done. 
+	 * Starts the PhysicalActivityClientService Android Service, the binding is done in onStart(). 
 	 * 
 	 * @param  bundleIncoming  The incoming application state Bundle. 
 	 * 
@@ -127,15 +199,48 @@ public class PhysicalActivityClientActivity extends Activity {
 		statusTextView = (TextView)findViewById(R.id.StatusTextView);
 		statusTextView.setText(getString(R.string.StatusString));
 
-		IntentFilter intentFilter = new IntentFilter(getString(R.string.SetTextToTextViewString));
+		decimalFormat = new DecimalFormat("###.###");
+		decimalFormat.setMinimumIntegerDigits(3);
+		decimalFormat.setMinimumFractionDigits(3);
+
+		Intent intent = new Intent(getApplicationContext(), PhysicalActivityClientService.class);
+
+		startService(intent);
+	}
 
-		physicalActivityBroadcastReceiver = new PhysicalActivityBroadcastReceiver();
+	/**
+	 * Basic onStart() -method. 
+	 * <p> 
+	 * Binds to the PhysicalActivityClientService, the results are shown only while this Activity is visible. 
+	 * 
+	 */
 
-		registerReceiver(physicalActivityBroadcastReceiver, intentFilter);
+	@Override
+	protected void onStart() {
+		super.onStart();
 
 		Intent intent = new Intent(getApplicationContext(), PhysicalActivityClientService.class);
 
-		startService(intent);
+		bindService(intent, serviceConnection, Context.BIND_AUTO_CREATE);
+	}
+
+	/**
+	 * Basic onStop() -method. 
+	 * <p> 
+	 * Unbinds from the PhysicalActivityClientService, no results are formatted while this Activity is not visible. 
+	 * 
+	 */
+
+	@Override
+	protected void onStop() {
+		super.onStop();
+
+		if (physicalActivityBinder != null) {
+			physicalActivityBinder.setResultHandler(null);
+			physicalActivityBinder = null;
+		}
+
+		unbindService(serviceConnection);
 	}
 
 	/**
@@ -151,13 +256,9 @@ public class PhysicalActivityClientActivity extends Activity {
 
 		Log.d(getString(R.string.PhysicalActivityClientActivityString), getString(R.string.OnDestroyString));
 
-		if (physicalActivityBroadcastReceiver != null) {
-        	unregisterReceiver(physicalActivityBroadcastReceiver);
-        }
-
 		Intent intent = new Intent(getString(R.string.StopPhysicalActivityClientServiceString));
 
 		sendBroadcast(intent);
 	}
 
-}
\ No newline at end of file
+}
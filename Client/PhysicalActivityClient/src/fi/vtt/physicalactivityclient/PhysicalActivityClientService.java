@@ -44,26 +44,39 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
+import android.os.Binder;
+import android.os.Handler;
 import android.os.IBinder;
 import android.util.Log;
-import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryCallback;
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryErrorCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback;
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
-import java.text.DecimalFormat;
-import java.util.Map;
 
 /**
  * Application main (Service) class. 
  * <p> 
  * Creates the PhysicaActivityLibrary object, implements and sets call backs and starts the physical activity recognition. 
  * <p> 
+ * The results are kept as a binary ActivitySnapshot record, which the application Activity reads through a local Binder while it is visible. 
+ * No text is formatted, no Map is filled and no Intent is sent per result. 
+ * <p> 
  * When a shutdown Intent from the application Activity class is received, the PhysicalActivityLibrary is stopped and this Service is destroyed. 
  * 
  * @see  android.app.Service 
- * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryCallback
+ * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryErrorCallback
+ * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback
  * 
  */
 
-public class PhysicalActivityClientService extends Service implements PhysicalActivityLibraryCallback {
+public class PhysicalActivityClientService extends Service implements PhysicalActivityLibraryErrorCallback, PhysicalActivityLibrarySnapshotCallback {
+
+	/**
+	 * Message sent to the result Handler, when a new result is available. 
+	 * 
+	 */
+
+	public static final int NEW_RESULT_MESSAGE_INTEGER = 1;
 
 	/**
 	 * Basic BroadcastReceiver for receiving Intents. 
@@ -83,6 +96,34 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 
 	private VTTPhysicalActivityLibrary physicalActivityLibrary = null;
 
+	/**
+	 * The Binder returned to the bound Activity. 
+	 * 
+	 */
+
+	private final PhysicalActivityBinder physicalActivityBinder = new PhysicalActivityBinder();
+
+	/**
+	 * The latest result, copied from the library thread and read by the bound Activity. Also the lock of the result fields. 
+	 * 
+	 */
+
+	private final ActivitySnapshot resultActivitySnapshot = new ActivitySnapshot();
+
+	/**
+	 * Handler of the bound Activity, notified of new results, or null when no Activity is visible. 
+	 * 
+	 */
+
+	private Handler resultHandler = null;
+
+	/**
+	 * True, if a new result message has been sent and the result has not been read yet. 
+	 * 
+	 */
+
+	private boolean resultPendingBoolean = false;
+
 	/**
 	 * Basic way of receiving broadcasted Intents. 
 	 * <p> 
@@ -111,10 +152,58 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 
 	}
 
+	/**
+	 * Local Binder for reading the results in the same process. 
+	 * <p> 
+	 * The bound Activity sets its Handler and gets an empty NEW_RESULT_MESSAGE_INTEGER message when a new result is available. 
+	 * Results arriving before the previous one has been read are coalesced, so at most one message is queued at a time. 
+	 * 
+	 * @see  android.os.Binder 
+	 * 
+	 */
+
+	public class PhysicalActivityBinder extends Binder {
+
+		/**
+		 * Copies the latest result into the given snapshot and allows the next new result message. 
+		 * 
+		 * @param  activitySnapshotIncoming  The destination snapshot. 
+		 * 
+		 * @return  counterInteger  The sample number of the result, 0 if no result is available yet. 
+		 * 
+		 */
+
+		public int getResult(ActivitySnapshot activitySnapshotIncoming) {
+			synchronized (resultActivitySnapshot) {
+				resultActivitySnapshot.copyTo(activitySnapshotIncoming);
+
+				resultPendingBoolean = false;
+
+				return counterInteger;
+			}
+		}
+
+		/**
+		 * Sets the Handler notified of new results. 
+		 * 
+		 * @param  handlerIncoming  The Handler, or null to stop the notifications. 
+		 * 
+		 */
+
+		public void setResultHandler(Handler handlerIncoming) {
+			synchronized (resultActivitySnapshot) {
+				resultHandler = handlerIncoming;
+
+				resultPendingBoolean = false;
+			}
+		}
+
+	}
+
 	/**
 	 * Basic onBind() -method. 
 	 * <p> 
-	 * Needed if you want to bind this Service to some Activity or Service. 
+	 * Returns the local PhysicalActivityBinder, the application Activity binds to this Service while it is visible. 
 	 * 
 	 * @param  intentIncoming  The incoming Intent. 
 	 * 
@@ -124,9 +213,27 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 
     @Override
     public IBinder onBind(Intent intentIncoming) {
-        return null;
+        return physicalActivityBinder;
     }
 
+	/**
+	 * Basic onUnbind() -method. 
+	 * <p> 
+	 * Stops the result notifications, when the application Activity is no longer visible. 
+	 * 
+	 * @param  intentIncoming  The incoming Intent. 
+	 * 
+	 * @see  android.content.Intent 
+	 * 
+	 */
+
+	@Override
+	public boolean onUnbind(Intent intentIncoming) {
+		physicalActivityBinder.setResultHandler(null);
+
+		return false;
+	}
+
     /**
 	 * Sample number counter. 
 	 * 
@@ -135,7 +242,7 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 	public static int counterInteger = 0;
 
 	/**
-	 * From PhysicalActivityLibraryCallback. 
+	 * From PhysicalActivityLibraryErrorCallback. 
 	 * <p> 
 	 * This method is called when an error occurs. 
 	 * 
@@ -149,50 +256,45 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 	}
 
 	/**
-	 * From PhysicalActivityLibraryCallback. 
+	 * From PhysicalActivityLibrarySnapshotCallback. 
 	 * <p> 
 	 * This method is called when new physical data is available. 
 	 * <p> 
-	 * Implement this however you wish, here the raw data is simply just shown on the UI. 
+	 * Copies the result into the latest result record and notifies the bound Activity, if it is visible and 
+	 * has read the previous result. The text is formatted by the Activity. 
+	 * <p> 
+	 * The stability and fall changes reported between the windows carry only their own value and no window, they 
+	 * are skipped. The next window result has all the values, including stability and fall. 
 	 * 
-	 * @param  infoMapIncoming  Contains the current physical information. 
-	 * 				 			<p>
-	 * 				 			Key is detection type, value is value in range of [0.0, 1.0]. 
-	 * 				 			<p>
-	 *               			For example: Key = 1, Value = 1.0 means walking type and value 1.0 
-	 *               			is the value from the walking detection method. 
+	 * @param  activitySnapshotIncoming  The values of the detections, indexed by the detection type. 
 	 * 
-	 * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryCallback
+	 * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback
 	 * 
 	 */
 
 	@Override
-	public void newActivityInfo(Map<Integer, Double> infoMapIncoming) {
-		Log.d(getString(R.string.PhysicalActivityClientServiceString), "New activity info, size: " + infoMapIncoming.size());
+	public void newActivitySnapshot(ActivitySnapshot activitySnapshotIncoming) {
+		Handler handler = null;
 
-		counterInteger++;
-
-		String string = "c: " + counterInteger + " ";
+		if (activitySnapshotIncoming.getWindowEndTime() == 0) {
+			return;
+		}
 
-		DecimalFormat decimalFormat = new DecimalFormat("###.###");
-		decimalFormat.setMinimumIntegerDigits(3);
-		decimalFormat.setMinimumFractionDigits(3);
+		synchronized (resultActivitySnapshot) {
+			activitySnapshotIncoming.copyTo(resultActivitySnapshot);
 
-		for (Map.Entry<Integer, Double> infoMap : infoMapIncoming.entrySet()) {
-			string += "key: " + infoMap.getKey() + " value: ";
+			counterInteger++;
 
-			double valueDouble = infoMap.getValue();
+			if (resultHandler != null && !resultPendingBoolean) {
+				resultPendingBoolean = true;
 
-			string += decimalFormat.format(valueDouble);
-			string += " ";
+				handler = resultHandler;
+			}
 		}
 
-		Log.d("Content: ", string);
-
-		Intent intent = new Intent(getString(R.string.SetTextToTextViewString));
-		intent.putExtra(getString(R.string.TextViewTextString), string);
-
-		sendBroadcast(intent);
+		if (handler != null) {
+			handler.sendEmptyMessage(NEW_RESULT_MESSAGE_INTEGER);
+		}
 	}
 
 	/**
@@ -219,7 +321,8 @@ public class PhysicalActivityClientService extends Service implements PhysicalAc
 		startForeground(0, notification);
 
 		physicalActivityLibrary = new VTTPhysicalActivityLibrary(this);
-		physicalActivityLibrary.setCallback(this);
+		physicalActivityLibrary.setErrorCallback(this);
+		physicalActivityLibrary.setSnapshotCallback(this);
 		physicalActivityLibrary.enableDetection(VTTPhysicalActivityLibrary.DETECTION_FALL);
 		physicalActivityLibrary.enableDetection(VTTPhysicalActivityLibrary.DETECTION_LIGHT);
 		physicalActivityLibrary.enableDetection(VTTPhysicalActivityLibrary.DETECTION_ORIENTATION);
@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary;
+
+/**
+ * The results of several recording windows, delivered together to reduce the wakeups of the application. 
+ * <p>
+ * The results are kept in flat primitive arrays: per entry the values indexed by the detection type, the presence and 
+ * change masks and the window timestamps. Entries are in the order of the windows. The library reuses the same instance 
+ * for every batch, so it is valid only during the newActivityBatch() call. The mutators are protected, the application 
+ * reads the batch only. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.ActivitySnapshot 
+ * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryBatchCallback 
+ * 
+ */
+
+public class ActivityBatch {
+
+	private final int capacityInteger;
+
+	private int sizeInteger = 0;
+
+	private final double[] valueDoubleArray; // capacityInteger * ActivitySnapshot.DETECTION_TYPE_COUNT values. 
+
+	private final int[] presenceMaskIntegerArray;
+	private final int[] changeMaskIntegerArray;
+
+	private final long[] windowStartTimeLongArray;
+	private final long[] windowEndTimeLongArray;
+
+	/**
+	 * Constructor, called by the library. 
+	 * 
+	 * @param  capacityIntegerIncoming  The maximum number of entries. 
+	 * 
+	 */
+
+	protected ActivityBatch(int capacityIntegerIncoming) {
+		capacityInteger = capacityIntegerIncoming;
+
+		valueDoubleArray = new double[capacityInteger * ActivitySnapshot.DETECTION_TYPE_COUNT];
+
+		presenceMaskIntegerArray = new int[capacityInteger];
+		changeMaskIntegerArray = new int[capacityInteger];
+
+		windowStartTimeLongArray = new long[capacityInteger];
+		windowEndTimeLongArray = new long[capacityInteger];
+	}
+
+	/**
+	 * Appends the results of a window. 
+	 * <p>
+	 * Called by the library. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results, copied before returning. 
+	 * 
+	 * @return  True, if appended, false if the batch is full. 
+	 * 
+	 */
+
+	protected boolean add(ActivitySnapshot activitySnapshotIncoming) {
+		if (sizeInteger == capacityInteger) {
+			return false;
+		}
+
+		int offsetInteger = sizeInteger * ActivitySnapshot.DETECTION_TYPE_COUNT;
+
+		for (int i = 0; i < ActivitySnapshot.DETECTION_TYPE_COUNT; i++) {
+			valueDoubleArray[offsetInteger + i] = activitySnapshotIncoming.hasValue(i) ? activitySnapshotIncoming.getValue(i) : 0.0;
+		}
+
+		presenceMaskIntegerArray[sizeInteger] = activitySnapshotIncoming.getPresenceMask();
+		changeMaskIntegerArray[sizeInteger] = activitySnapshotIncoming.getChangeMask();
+
+		windowStartTimeLongArray[sizeInteger] = activitySnapshotIncoming.getWindowStartTime();
+		windowEndTimeLongArray[sizeInteger] = activitySnapshotIncoming.getWindowEndTime();
+
+		sizeInteger++;
+
+		return true;
+	}
+
+	/**
+	 * Removes all the entries. 
+	 * <p>
+	 * Called by the library after the batch has been delivered. 
+	 * 
+	 */
+
+	protected void clear() {
+		sizeInteger = 0;
+	}
+
+	/**
+	 * Copies an entry into a snapshot. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * @param  activitySnapshotIncoming  The destination snapshot. 
+	 * 
+	 */
+
+	public void copyTo(int indexIntegerIncoming, ActivitySnapshot activitySnapshotIncoming) {
+		activitySnapshotIncoming.clear(windowStartTimeLongArray[indexIntegerIncoming], windowEndTimeLongArray[indexIntegerIncoming]);
+
+		for (int i = 0; i < ActivitySnapshot.DETECTION_TYPE_COUNT; i++) {
+			if (hasValue(indexIntegerIncoming, i)) {
+				activitySnapshotIncoming.putValue(i, valueDoubleArray[indexIntegerIncoming * ActivitySnapshot.DETECTION_TYPE_COUNT + i]);
+			}
+		}
+
+		activitySnapshotIncoming.setChangeMask(changeMaskIntegerArray[indexIntegerIncoming]);
+	}
+
+	public int getCapacity() {
+		return capacityInteger;
+	}
+
+	/**
+	 * Returns the bit mask of the changed detections of an entry. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.ActivitySnapshot#getChangeMask() 
+	 * 
+	 */
+
+	public int getChangeMask(int indexIntegerIncoming) {
+		return changeMaskIntegerArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the bit mask of the detections that have a value in an entry. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * 
+	 */
+
+	public int getPresenceMask(int indexIntegerIncoming) {
+		return presenceMaskIntegerArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the number of entries. 
+	 * 
+	 */
+
+	public int getSize() {
+		return sizeInteger;
+	}
+
+	/**
+	 * Returns the value of a detection in an entry. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 * @return  The value, or Double.NaN if the detection has no value in the entry. 
+	 * 
+	 */
+
+	public double getValue(int indexIntegerIncoming, int typeIntegerIncoming) {
+		return hasValue(indexIntegerIncoming, typeIntegerIncoming) ? valueDoubleArray[indexIntegerIncoming * ActivitySnapshot.DETECTION_TYPE_COUNT + typeIntegerIncoming] : Double.NaN;
+	}
+
+	/**
+	 * Returns the timestamp of the last sample of the window of an entry in microseconds, 0 for an immediately reported change. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * 
+	 */
+
+	public long getWindowEndTime(int indexIntegerIncoming) {
+		return windowEndTimeLongArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the timestamp of the first sample of the window of an entry in microseconds, 0 for an immediately reported change. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * 
+	 */
+
+	public long getWindowStartTime(int indexIntegerIncoming) {
+		return windowStartTimeLongArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns true, if the detection has a value in an entry, otherwise false. 
+	 * 
+	 * @param  indexIntegerIncoming  The entry index, 0 for the oldest. 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 */
+
+	public boolean hasValue(int indexIntegerIncoming, int typeIntegerIncoming) {
+		return (typeIntegerIncoming >= 0) && (typeIntegerIncoming < ActivitySnapshot.DETECTION_TYPE_COUNT) && ((presenceMaskIntegerArray[indexIntegerIncoming] & (1 << typeIntegerIncoming)) != 0);
+	}
+
+	/**
+	 * Returns true, if the batch has no entries, otherwise false. 
+	 * 
+	 */
+
+	public boolean isEmpty() {
+		return sizeInteger == 0;
+	}
+
+	/**
+	 * Returns true, if no more entries fit in the batch, otherwise false. 
+	 * 
+	 */
+
+	public boolean isFull() {
+		return sizeInteger == capacityInteger;
+	}
+
+}
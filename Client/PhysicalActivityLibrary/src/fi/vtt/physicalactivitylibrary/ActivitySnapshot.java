@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary;
+
+import java.util.Map;
+
+/**
+ * The results of one recording window, or of one immediately reported detection change. 
+ * <p>
+ * The values are kept in a double array indexed by the detection type (for example DETECTION_WALK), and a bit mask tells 
+ * which of the detections have a value. The library reuses the same instance for every window, so it is valid only during 
+ * the newActivitySnapshot() call. Use copyTo() to keep the values. The setters are protected, the application reads the 
+ * values only. 
+ * <p>
+ * The window timestamps are 0 for an immediately reported change, which is not bound to a window. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback 
+ * 
+ */
+
+public class ActivitySnapshot {
+
+	/**
+	 * Size of the value array, one more than the largest detection type. 
+	 * 
+	 */
+
+	public static final int DETECTION_TYPE_COUNT = 10;
+
+	private final double[] valueDoubleArray = new double[DETECTION_TYPE_COUNT];
+
+	private int presenceMaskInteger = 0;
+
+	private int changeMaskInteger = 0;
+
+	private long windowStartTimeLong = 0;
+	private long windowEndTimeLong = 0;
+
+	/**
+	 * Removes all the values and sets the window timestamps. 
+	 * <p>
+	 * Called by the library before the values of a new window are put. 
+	 * 
+	 * @param  windowStartTimeLongIncoming  The timestamp of the first sample of the window in microseconds. 
+	 * @param  windowEndTimeLongIncoming  The timestamp of the last sample of the window in microseconds. 
+	 * 
+	 */
+
+	protected void clear(long windowStartTimeLongIncoming, long windowEndTimeLongIncoming) {
+		presenceMaskInteger = 0;
+		changeMaskInteger = 0;
+
+		windowStartTimeLong = windowStartTimeLongIncoming;
+		windowEndTimeLong = windowEndTimeLongIncoming;
+	}
+
+	/**
+	 * Copies the values and the window timestamps into another snapshot. 
+	 * 
+	 * @param  activitySnapshotIncoming  The destination snapshot. 
+	 * 
+	 */
+
+	public void copyTo(ActivitySnapshot activitySnapshotIncoming) {
+		copyTo(activitySnapshotIncoming, ~0);
+	}
+
+	/**
+	 * Copies the values of the selected detections and the window timestamps into another snapshot. 
+	 * 
+	 * @param  activitySnapshotIncoming  The destination snapshot. 
+	 * @param  detectionMaskIntegerIncoming  Bit (1 << type) is set for each detection to copy. 
+	 * 
+	 */
+
+	public void copyTo(ActivitySnapshot activitySnapshotIncoming, int detectionMaskIntegerIncoming) {
+		System.arraycopy(valueDoubleArray, 0, activitySnapshotIncoming.valueDoubleArray, 0, DETECTION_TYPE_COUNT);
+
+		activitySnapshotIncoming.presenceMaskInteger = presenceMaskInteger & detectionMaskIntegerIncoming;
+		activitySnapshotIncoming.changeMaskInteger = changeMaskInteger & detectionMaskIntegerIncoming;
+		activitySnapshotIncoming.windowStartTimeLong = windowStartTimeLong;
+		activitySnapshotIncoming.windowEndTimeLong = windowEndTimeLong;
+	}
+
+	/**
+	 * Returns the bit mask of the detections, whose value changed since the previous delivered snapshot. 
+	 * <p>
+	 * All the present detections are marked as changed, unless change-only delivery is enabled. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary#setChangeOnlyDelivery(boolean, double, long) 
+	 * 
+	 */
+
+	public int getChangeMask() {
+		return changeMaskInteger;
+	}
+
+	/**
+	 * Returns the bit mask of the detections that have a value, bit (1 << type) is set for each of them. 
+	 * 
+	 */
+
+	public int getPresenceMask() {
+		return presenceMaskInteger;
+	}
+
+	/**
+	 * Returns the value of a detection. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 * @return  The value, or Double.NaN if the detection has no value in this snapshot. 
+	 * 
+	 */
+
+	public double getValue(int typeIntegerIncoming) {
+		return hasValue(typeIntegerIncoming) ? valueDoubleArray[typeIntegerIncoming] : Double.NaN;
+	}
+
+	/**
+	 * Returns the timestamp of the last sample of the window in microseconds. 
+	 * 
+	 */
+
+	public long getWindowEndTime() {
+		return windowEndTimeLong;
+	}
+
+	/**
+	 * Returns the timestamp of the first sample of the window in microseconds. 
+	 * 
+	 */
+
+	public long getWindowStartTime() {
+		return windowStartTimeLong;
+	}
+
+	/**
+	 * Returns true, if the detection has a value in this snapshot, otherwise false. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 */
+
+	public boolean hasValue(int typeIntegerIncoming) {
+		return (typeIntegerIncoming >= 0) && (typeIntegerIncoming < DETECTION_TYPE_COUNT) && ((presenceMaskInteger & (1 << typeIntegerIncoming)) != 0);
+	}
+
+	/**
+	 * Returns true, if the value of the detection changed since the previous delivered snapshot, otherwise false. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 */
+
+	public boolean hasChanged(int typeIntegerIncoming) {
+		return (typeIntegerIncoming >= 0) && (typeIntegerIncoming < DETECTION_TYPE_COUNT) && ((changeMaskInteger & (1 << typeIntegerIncoming)) != 0);
+	}
+
+	/**
+	 * Returns true, if no detection has a value, otherwise false. 
+	 * 
+	 */
+
+	public boolean isEmpty() {
+		return presenceMaskInteger == 0;
+	}
+
+	/**
+	 * Sets the bit mask of the changed detections. 
+	 * <p>
+	 * Called by the library. 
+	 * 
+	 * @param  changeMaskIntegerIncoming  Bit (1 << type) is set for each changed detection. 
+	 * 
+	 */
+
+	protected void setChangeMask(int changeMaskIntegerIncoming) {
+		changeMaskInteger = changeMaskIntegerIncoming & presenceMaskInteger;
+	}
+
+	/**
+	 * Sets the value of a detection. 
+	 * <p>
+	 * Called by the library. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * @param  valueDoubleIncoming  The value. 
+	 * 
+	 */
+
+	protected void putValue(int typeIntegerIncoming, double valueDoubleIncoming) {
+		if ((typeIntegerIncoming < 0) || (typeIntegerIncoming >= DETECTION_TYPE_COUNT)) {
+			return;
+		}
+
+		valueDoubleArray[typeIntegerIncoming] = valueDoubleIncoming;
+
+		presenceMaskInteger |= 1 << typeIntegerIncoming;
+	}
+
+	/**
+	 * Puts the values into a map, as delivered by newActivityInfo(). 
+	 * 
+	 * @param  infoMapIncoming  The destination map, key is the detection type. 
+	 * 
+	 */
+
+	public void putInto(Map<Integer, Double> infoMapIncoming) {
+		for (int i = 0; i < DETECTION_TYPE_COUNT; i++) {
+			if ((presenceMaskInteger & (1 << i)) != 0) {
+				infoMapIncoming.put(i, valueDoubleArray[i]);
+			}
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary;
+
+/**
+ * Interface for batched results, implement this in your application if the results are only logged in the background. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.ActivityBatch 
+ * 
+ */
+
+public interface PhysicalActivityLibraryBatchCallback {
+
+	/**
+	 * This method is called when a batch of results is complete, or right away when a fall is detected. 
+	 * <p>
+	 * Implement this in your application. The batch is reused by the library, it is valid only during this call. 
+	 * 
+	 * @param  activityBatchIncoming  The results of the windows since the previous batch, the oldest first. 
+	 * 
+	 */
+
+	abstract void newActivityBatch(ActivityBatch activityBatchIncoming);
+
+}
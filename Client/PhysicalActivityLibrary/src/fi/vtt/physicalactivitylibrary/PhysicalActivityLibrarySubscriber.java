@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary;
+
+/**
+ * Subscriber of a PhysicalActivityLibraryPublisher, follows the Reactive Streams Subscriber contract. 
+ * <p>
+ * The methods are never called concurrently for one subscription. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryPublisher 
+ * 
+ */
+
+public interface PhysicalActivityLibrarySubscriber<T> {
+
+	/**
+	 * Called once, when the subscription is created. Nothing is delivered before request() is called. 
+	 * 
+	 * @param  physicalActivityLibrarySubscriptionIncoming  The subscription, used to request and cancel. 
+	 * 
+	 */
+
+	abstract void onSubscribe(PhysicalActivityLibrarySubscription physicalActivityLibrarySubscriptionIncoming);
+
+	/**
+	 * Called with a result, at most as many times as requested. 
+	 * 
+	 * @param  itemIncoming  The result, owned by the subscriber. 
+	 * 
+	 */
+
+	abstract void onNext(T itemIncoming);
+
+	/**
+	 * Called if the subscription fails, for example on a non-positive request(). No more methods are called after this. 
+	 * 
+	 * @param  throwableIncoming  The reason. 
+	 * 
+	 */
+
+	abstract void onError(Throwable throwableIncoming);
+
+	/**
+	 * Called when the publisher has no more results. No more methods are called after this. 
+	 * 
+	 */
+
+	abstract void onComplete();
+
+}
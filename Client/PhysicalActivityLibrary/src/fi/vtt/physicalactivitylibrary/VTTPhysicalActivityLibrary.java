@@ -33,6 +33,8 @@ import android.content.Context;
 import android.os.PowerManager;
 import android.os.PowerManager.WakeLock;
 import fi.vtt.physicalactivitylibrary.internal.InternalClass;
+import fi.vtt.physicalactivitylibrary.internal.NativeLibrary;
+import java.util.concurrent.Executor;
 
 /**
  * VTT Physical Activity Library for Android. 
@@ -118,19 +120,16 @@ import fi.vtt.physicalactivitylibrary.internal.InternalClass;
 public class VTTPhysicalActivityLibrary {
 
 	/**
-	 * The binary physical activity library is included with this Java library the using the following clause:
-	 * <pre>
-	 * <code>
-	 * static {
-     *     System.loadLibrary("physicalactivitylibrary");
-     * }
-     * </code>
-     * </pre>
+	 * The binary physical activity library is included with this Java library when available. 
+	 * <p>
+	 * The library is built for ARM only. Where it cannot be loaded, the Java implementations of the detections are used. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.NativeLibrary 
 	 * 
 	 */
 
 	static {
-		System.loadLibrary("physicalactivitylibrary");
+		NativeLibrary.isAvailable();
 	}
 
 	/**
@@ -151,6 +150,27 @@ public class VTTPhysicalActivityLibrary {
 
 	private WakeLock wakeLock = null;
 
+	/**
+	 * Creates a publisher of the results, that honors the demand of its subscribers. 
+	 * <p>
+	 * Each subscriber receives at most as many results (copies of the ActivitySnapshot) as it has requested with 
+	 * PhysicalActivityLibrarySubscription.request(). Results without demand are never queued: with BACKPRESSURE_LATEST 
+	 * the latest result is kept and delivered on the next request, with BACKPRESSURE_DROP they are dropped. The results are 
+	 * the same as for the other callbacks, after change-only filtering and asynchronous dispatch. The publisher does not 
+	 * complete, cancel the subscription to stop receiving results. 
+	 * 
+	 * @param  backpressurePolicyIntegerIncoming  BACKPRESSURE_LATEST or BACKPRESSURE_DROP. 
+	 * 
+	 * @return  The publisher, or null if the policy is not valid. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryPublisher 
+	 * 
+	 */
+
+	public PhysicalActivityLibraryPublisher<ActivitySnapshot> createResultPublisher(int backpressurePolicyIntegerIncoming) {
+		return internalClass.createResultPublisher(backpressurePolicyIntegerIncoming);
+	}
+
 	/**
 	 * Disable detection. 
 	 * 
@@ -173,6 +193,85 @@ public class VTTPhysicalActivityLibrary {
 		return internalClass.enableDetectionMethod(typeIntegerIncoming);
 	}
 
+	/**
+	 * Returns how long a detection took on the last window, so the slowest detection can be found. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * 
+	 * @return  The duration in nanoseconds, or -1 if the detection is not enabled or has not run yet. 
+	 * 
+	 */
+
+	public long getDetectionTime(int typeIntegerIncoming) {
+		return internalClass.getDetectionTime(typeIntegerIncoming);
+	}
+
+	/**
+	 * Returns the number of results merged into other results in the callback queue. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public long getDispatchCoalesceCount() {
+		return internalClass.getDispatchCoalesceCount();
+	}
+
+	/**
+	 * Returns the number of events dropped from the callback queue. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public long getDispatchDropCount() {
+		return internalClass.getDispatchDropCount();
+	}
+
+	/**
+	 * Returns the number of events waiting in the callback queue. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public int getDispatchQueueDepth() {
+		return internalClass.getDispatchQueueDepth();
+	}
+
+	/**
+	 * Returns the current power state, POWER_STATE_FULL_RATE or POWER_STATE_LOW_RATE. 
+	 * 
+	 * @see  #setAdaptiveDutyCycle(int, long) 
+	 * 
+	 */
+
+	public int getPowerState() {
+		return internalClass.getPowerState();
+	}
+
+	/**
+	 * Returns the number of power state transitions since adaptive duty cycling was enabled. 
+	 * 
+	 */
+
+	public int getPowerStateTransitionCount() {
+		return internalClass.getPowerStateTransitionCount();
+	}
+
+	/**
+	 * Returns the time spent in a power state since adaptive duty cycling was enabled. 
+	 * 
+	 * @param  powerStateIntegerIncoming  POWER_STATE_FULL_RATE or POWER_STATE_LOW_RATE. 
+	 * 
+	 * @return  The time in milliseconds. 
+	 * 
+	 */
+
+	public long getTimeInPowerState(int powerStateIntegerIncoming) {
+		return internalClass.getTimeInPowerState(powerStateIntegerIncoming);
+	}
+
 	/**
      * Initializes wakelock for keeping recognition alive when phone screen is turned off. 
      * <p>
@@ -208,6 +307,15 @@ public class VTTPhysicalActivityLibrary {
 		return internalClass.isRunning();
 	}
 
+	/**
+	 * Returns true if the native detection library is loaded, otherwise false (the Java implementations are used). 
+	 * 
+	 */
+
+	public static boolean isNativeLibraryAvailable() {
+		return NativeLibrary.isAvailable();
+	}
+
 	/**
 	 * Orientation face down constant value is 2.0.
 	 * 
@@ -317,6 +425,151 @@ public class VTTPhysicalActivityLibrary {
 
 	public static final int DETECTION_WALK = 1;
 
+	/**
+	 * Native implementation constant value is 0. 
+	 * <p>
+	 * The detection runs in the native library, default when the library is available. 
+	 * 
+	 */
+
+	public static final int IMPLEMENTATION_NATIVE = 0;
+
+	/**
+	 * Java implementation constant value is 1. 
+	 * <p>
+	 * The detection runs in Java, available for fall, run, run and walk and walk detection. 
+	 * 
+	 */
+
+	public static final int IMPLEMENTATION_JAVA = 1;
+
+	/**
+	 * Linear interpolation constant value is 0. 
+	 * 
+	 * @see  #setResampling(int, int) 
+	 * 
+	 */
+
+	public static final int INTERPOLATION_LINEAR = 0;
+
+	/**
+	 * Cubic (Catmull-Rom) interpolation constant value is 1. 
+	 * 
+	 * @see  #setResampling(int, int) 
+	 * 
+	 */
+
+	public static final int INTERPOLATION_CUBIC = 1;
+
+	/**
+	 * Full rate power state constant value is 0. 
+	 * <p>
+	 * The snapshots are recorded back to back at the fastest accelerometer rate. 
+	 * 
+	 */
+
+	public static final int POWER_STATE_FULL_RATE = 0;
+
+	/**
+	 * Low rate power state constant value is 1. 
+	 * <p>
+	 * The device has been stable: the snapshots are recorded at a low accelerometer rate with an idle period between them. 
+	 * 
+	 */
+
+	public static final int POWER_STATE_LOW_RATE = 1;
+
+	/**
+	 * Timer window closure constant value is 0. 
+	 * <p>
+	 * The windows are closed by a timer after the window duration (default). 
+	 * 
+	 * @see  #setWindowClosure(int, int) 
+	 * 
+	 */
+
+	public static final int WINDOW_CLOSURE_TIMER = 0;
+
+	/**
+	 * Timestamp window closure constant value is 1. 
+	 * <p>
+	 * The windows are closed when the sample timestamps span the window duration. 
+	 * 
+	 * @see  #setWindowClosure(int, int) 
+	 * 
+	 */
+
+	public static final int WINDOW_CLOSURE_TIMESTAMP = 1;
+
+	/**
+	 * Sample count window closure constant value is 2. 
+	 * <p>
+	 * The windows are closed when they have the configured number of samples. 
+	 * 
+	 * @see  #setWindowClosure(int, int) 
+	 * 
+	 */
+
+	public static final int WINDOW_CLOSURE_SAMPLE_COUNT = 2;
+
+	/**
+	 * Latest result backpressure policy constant value is 0. 
+	 * <p>
+	 * Without demand the latest result is kept, and delivered when the subscriber requests more. A result is merged into 
+	 * the kept one, so the values missing from it (for example from an immediately reported change) are kept, and the 
+	 * change masks are combined. 
+	 * 
+	 * @see  #createResultPublisher(int) 
+	 * 
+	 */
+
+	public static final int BACKPRESSURE_LATEST = 0;
+
+	/**
+	 * Dropping backpressure policy constant value is 1. 
+	 * <p>
+	 * The results without demand are dropped. 
+	 * 
+	 * @see  #createResultPublisher(int) 
+	 * 
+	 */
+
+	public static final int BACKPRESSURE_DROP = 1;
+
+	/**
+	 * Coalescing dispatch overflow policy constant value is 0. 
+	 * <p>
+	 * When the callback queue is full, the new results are merged into the newest queued ones: missing values are kept from the 
+	 * queued results and their change masks are combined. Falls are never dropped. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public static final int DISPATCH_OVERFLOW_COALESCE = 0;
+
+	/**
+	 * Drop oldest dispatch overflow policy constant value is 1. 
+	 * <p>
+	 * When the callback queue is full, the oldest queued results (or error) are dropped. Falls are never dropped for a newer event. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public static final int DISPATCH_OVERFLOW_DROP_OLDEST = 1;
+
+	/**
+	 * Blocking dispatch overflow policy constant value is 2. 
+	 * <p>
+	 * When the callback queue is full, the recognition waits until the application has taken an event. 
+	 * 
+	 * @see  #setAsyncDispatch(int, int) 
+	 * 
+	 */
+
+	public static final int DISPATCH_OVERFLOW_BLOCK = 2;
+
 	/**
 	 * Error code for no accelerometer data available is -1. 
 	 * <p>
@@ -369,6 +622,288 @@ public class VTTPhysicalActivityLibrary {
 		internalClass.setCallback(physicalActivityLibraryCallbackIncoming);
 	}
 
+	/**
+	 * Enables or disables adaptive duty cycling of the accelerometer in snapshot mode. 
+	 * <p>
+	 * When the device has been stable for the given number of consecutive snapshots, the library changes to 
+	 * POWER_STATE_LOW_RATE: the accelerometer rate is lowered and the snapshots are separated by the idle period. 
+	 * The first motion returns to POWER_STATE_FULL_RATE right away. 
+	 * 
+	 * @param  stableWindowCountIntegerIncoming  Number of consecutive stable snapshots before the low rate state, 0 to disable. 
+	 * @param  idleLengthLongIncoming  The idle period between two snapshots in the low rate state in milliseconds. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setAdaptiveDutyCycle(int stableWindowCountIntegerIncoming, long idleLengthLongIncoming) {
+		return internalClass.setAdaptiveDutyCycle(stableWindowCountIntegerIncoming, idleLengthLongIncoming);
+	}
+
+	/**
+     * Sets the callback for batched results. 
+     * <p>
+     * The results are collected into a primitive ActivityBatch with the window timestamps of each entry, and delivered 
+     * in one call when the batch has the given number of windows, or when the given time has passed since the start of its 
+     * first window. The time is also kept on the library clock, so a batch is delivered at the latest the given time after 
+     * its first result arrived, even if no more results arrive (for example with change-only delivery). A fall is urgent: it is delivered right away together with the collected results. The remaining results 
+     * are delivered when recognition is stopped. Set no PhysicalActivityLibraryCallback or snapshot callback, if only the 
+     * batches are needed, those are still called every window. 
+     * 
+     * @param  physicalActivityLibraryBatchCallbackIncoming  Your application class that implements the PhysicalActivityLibraryBatchCallback, or null. 
+     * @param  windowCountIntegerIncoming  The number of windows in a full batch. 
+     * @param  batchDelayLongIncoming  The longest time covered by a batch in milliseconds, 0 to deliver full batches only. 
+     * 
+     * @return  true  If the parameters were accepted, otherwise false. 
+     * 
+     * @see  fi.vtt.physicalactivitylibrary.ActivityBatch
+     * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryBatchCallback
+     * 
+     */
+
+	public boolean setBatchCallback(PhysicalActivityLibraryBatchCallback physicalActivityLibraryBatchCallbackIncoming, int windowCountIntegerIncoming, long batchDelayLongIncoming) {
+		return internalClass.setBatchCallback(physicalActivityLibraryBatchCallbackIncoming, windowCountIntegerIncoming, batchDelayLongIncoming);
+	}
+
+	/**
+     * Sets the callback for errors. 
+     * <p>
+     * The errors are reported to this callback and to the PhysicalActivityLibraryCallback, if set. Use this callback 
+     * with the snapshot, batch or publisher interfaces, so that no PhysicalActivityLibraryCallback and no newActivityInfo() 
+     * map per window is needed. 
+     * 
+     * @param  physicalActivityLibraryErrorCallbackIncoming  Your application class that implements the PhysicalActivityLibraryErrorCallback, or null. 
+     * 
+     * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryErrorCallback
+     * 
+     */
+
+	public void setErrorCallback(PhysicalActivityLibraryErrorCallback physicalActivityLibraryErrorCallbackIncoming) {
+		internalClass.setErrorCallback(physicalActivityLibraryErrorCallbackIncoming);
+	}
+
+	/**
+     * Sets the callback for fall alerts. 
+     * <p>
+     * While fall detection is enabled, the samples are watched for a free fall followed by an impact, and a fall is reported 
+     * to this callback as soon as it happens, without waiting for the recording window to complete. The fall is delivered 
+     * ahead of the queued window completions on the main thread, or with asynchronous dispatch ahead of the queued results 
+     * on the callback thread. 
+     * 
+     * @param  physicalActivityLibraryFallCallbackIncoming  Your application class that implements the PhysicalActivityLibraryFallCallback, or null. 
+     * 
+     * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryFallCallback
+     * 
+     */
+
+	public void setFallCallback(PhysicalActivityLibraryFallCallback physicalActivityLibraryFallCallbackIncoming) {
+		internalClass.setFallCallback(physicalActivityLibraryFallCallbackIncoming);
+	}
+
+	/**
+     * Sets the callback for allocation free results. 
+     * <p>
+     * The results are delivered in a reused ActivitySnapshot, a double array indexed by the detection type with a presence 
+     * bit mask and the window timestamps. Nothing is allocated per window, unless a PhysicalActivityLibraryCallback is set too: 
+     * its newActivityInfo() map is then filled from the same snapshot of a window. Errors are reported through setErrorCallback() or the PhysicalActivityLibraryCallback. 
+     * 
+     * @param  physicalActivityLibrarySnapshotCallbackIncoming  Your application class that implements the PhysicalActivityLibrarySnapshotCallback, or null. 
+     * 
+     * @see  fi.vtt.physicalactivitylibrary.ActivitySnapshot
+     * @see  fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback
+     * 
+     */
+
+	public void setSnapshotCallback(PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming) {
+		internalClass.setSnapshotCallback(physicalActivityLibrarySnapshotCallbackIncoming);
+	}
+
+	/**
+	 * Selects the native or the Java implementation of a detection. 
+	 * <p>
+	 * Available for fall, run, run and walk and walk detection. If the detection is enabled, it is replaced right away. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * @param  implementationIntegerIncoming  IMPLEMENTATION_NATIVE or IMPLEMENTATION_JAVA. 
+	 * 
+	 * @return  true  If the implementation was selected, otherwise false (e.g. the native library is not available). 
+	 * 
+	 */
+
+	public boolean setDetectionImplementation(int typeIntegerIncoming, int implementationIntegerIncoming) {
+		return internalClass.setDetectionImplementation(typeIntegerIncoming, implementationIntegerIncoming);
+	}
+
+	/**
+	 * Enables or disables running the detections in parallel. 
+	 * <p>
+	 * By default the detections run one after another, so the slowest detection sets the latency of every result. In parallel 
+	 * mode they run on a small worker pool, at most one thread per processor core, and the results are delivered together. 
+	 * A detection that has not completed by the deadline is left out of that result. 
+	 * 
+	 * @param  parallelBooleanIncoming  True to run the detections in parallel. 
+	 * @param  deadlineLongIncoming  The maximum time to wait for the detections in milliseconds, 0 to wait for all of them. 
+	 * 
+	 */
+
+	public void setParallelDetections(boolean parallelBooleanIncoming, long deadlineLongIncoming) {
+		internalClass.setParallelDetections(parallelBooleanIncoming, deadlineLongIncoming);
+	}
+
+	/**
+	 * Enables or disables delivering the callbacks on a dedicated dispatcher thread. 
+	 * <p>
+	 * By default the callbacks are called on the thread that completes the window, so a slow callback delays the recognition. 
+	 * With asynchronous dispatch the results, falls and errors are copied into a bounded queue of preallocated slots and the 
+	 * callbacks are called on the dispatcher thread. If the application does not keep up, the overflow policy decides 
+	 * what happens. The queue depth and the number of dropped and coalesced events are available from 
+	 * getDispatchQueueDepth(), getDispatchDropCount() and getDispatchCoalesceCount(). 
+	 * 
+	 * @param  queueCapacityIntegerIncoming  The queue capacity in events, 0 to disable (default). 
+	 * @param  overflowPolicyIntegerIncoming  DISPATCH_OVERFLOW_COALESCE, DISPATCH_OVERFLOW_DROP_OLDEST or DISPATCH_OVERFLOW_BLOCK. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setAsyncDispatch(int queueCapacityIntegerIncoming, int overflowPolicyIntegerIncoming) {
+		return internalClass.setAsyncDispatch(queueCapacityIntegerIncoming, overflowPolicyIntegerIncoming);
+	}
+
+	/**
+	 * Enables or disables change-only delivery of the results. 
+	 * <p>
+	 * By default the results of every window are delivered, also when nothing has changed. With change-only delivery a window 
+	 * is delivered only if a detection value changed since the last delivered window: a categorical value (for example 
+	 * orientation, stability, walk or run) differs, or a numeric value (light, proximity) moves more than the numeric delta. 
+	 * The changed detections are marked in ActivitySnapshot.getChangeMask(). The heartbeat delivers a window also without 
+	 * changes, once the heartbeat interval has passed since the last delivered window. 
+	 * The changes reported between the windows (stability, fall) are always delivered, and do not count as delivered 
+	 * window values. 
+	 * 
+	 * @param  changeOnlyBooleanIncoming  True to deliver only the changes. 
+	 * @param  numericDeltaDoubleIncoming  The smallest change of a numeric value to deliver, for example 10.0 lux. 
+	 * @param  heartbeatLongIncoming  The heartbeat interval in milliseconds, 0 for no heartbeat. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setChangeOnlyDelivery(boolean changeOnlyBooleanIncoming, double numericDeltaDoubleIncoming, long heartbeatLongIncoming) {
+		return internalClass.setChangeOnlyDelivery(changeOnlyBooleanIncoming, numericDeltaDoubleIncoming, heartbeatLongIncoming);
+	}
+
+	/**
+	 * Enables or disables resampling the accelerometer data onto an even grid. 
+	 * <p>
+	 * Android delivers the accelerometer events with irregular spacing. With resampling, every window is interpolated onto 
+	 * an even grid, for example 50 Hz, before the detections run. Gaps in the original data are interpolated linearly. 
+	 * 
+	 * @param  rateIntegerIncoming  The rate of the grid in Hz, at most 1000. Use 0 to disable resampling (default). 
+	 * @param  interpolationIntegerIncoming  INTERPOLATION_LINEAR or INTERPOLATION_CUBIC. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setResampling(int rateIntegerIncoming, int interpolationIntegerIncoming) {
+		return internalClass.setResampling(rateIntegerIncoming, interpolationIntegerIncoming);
+	}
+
+	/**
+	 * Sets how the recording windows are closed. 
+	 * <p>
+	 * By default a timer closes the window, so the number of samples per window varies with the scheduling delays. 
+	 * With WINDOW_CLOSURE_TIMESTAMP the window is closed by the first sample past the window duration, with 
+	 * WINDOW_CLOSURE_SAMPLE_COUNT when the window has the given number of samples. No timer is used then, and the windows 
+	 * are exact and reproducible. In streaming mode the hop is scaled to samples by the hop and window lengths. 
+	 * <p>
+	 * Takes effect on the next startRecognition(). 
+	 * 
+	 * @param  windowClosureIntegerIncoming  WINDOW_CLOSURE_TIMER, WINDOW_CLOSURE_TIMESTAMP or WINDOW_CLOSURE_SAMPLE_COUNT. 
+	 * @param  sampleCountIntegerIncoming  The samples per window for WINDOW_CLOSURE_SAMPLE_COUNT, otherwise ignored. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setWindowClosure(int windowClosureIntegerIncoming, int sampleCountIntegerIncoming) {
+		return internalClass.setWindowClosure(windowClosureIntegerIncoming, sampleCountIntegerIncoming);
+	}
+
+	/**
+	 * Enables streaming recognition over sliding windows. 
+	 * <p>
+	 * By default the library records a 5 second snapshot, runs the detections and then registers the sensors again for the next snapshot. 
+	 * In streaming mode the sensors stay registered for the whole session and the detections run every hop over the newest 
+	 * window length of data, for example 5000 ms windows every 1000 ms. 
+	 * <p>
+	 * Takes effect on the next startRecognition(). 
+	 * 
+	 * @param  windowLengthLongIncoming  The window length in milliseconds. 
+	 * @param  hopLengthLongIncoming  The interval between two windows in milliseconds, at most the window length. Use 0 to return to snapshot mode. 
+	 * 
+	 * @return  true  If the parameters were accepted, otherwise false. 
+	 * 
+	 */
+
+	public boolean setSlidingWindow(long windowLengthLongIncoming, long hopLengthLongIncoming) {
+		return internalClass.setSlidingWindow(windowLengthLongIncoming, hopLengthLongIncoming);
+	}
+
+	/**
+     * Subscribes a callback to the results of the given detections. 
+     * <p>
+     * Any number of subscribers can be registered in addition to setCallback(). A subscriber receives a map with only the 
+     * detections in its mask, and only when one of them has changed (every window, unless change-only delivery is enabled). 
+     * For example (1 << DETECTION_FALL) subscribes to falls only. The error() method of a subscriber is not called. 
+     * As for newActivityInfo(), only the window results are delivered: the changes reported between the windows (stability, 
+     * fall) reach the snapshot subscribers only, use setFallCallback() for immediate falls. 
+     * 
+     * @param  physicalActivityLibraryCallbackIncoming  Your application class that implements the PhysicalActivityLibraryCallback. 
+     * @param  detectionMaskIntegerIncoming  The detections of interest, bit (1 << type) for each detection type. 
+     * @param  executorIncoming  Delivers the results to the subscriber, or null to deliver them on the thread of the other callbacks. 
+     * 
+     * @return  true  If the parameters were accepted, otherwise false. 
+     * 
+     */
+
+	public boolean subscribe(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+		return internalClass.subscribe(physicalActivityLibraryCallbackIncoming, detectionMaskIntegerIncoming, executorIncoming);
+	}
+
+	/**
+     * Subscribes a snapshot callback to the results of the given detections. 
+     * <p>
+     * As subscribe(PhysicalActivityLibraryCallback, int, Executor), but the results are delivered in an ActivitySnapshot. 
+     * Without an executor the snapshot is reused, and routing the results allocates nothing. The changes reported between 
+     * the windows are delivered too, their snapshot has no window timestamps. 
+     * 
+     * @param  physicalActivityLibrarySnapshotCallbackIncoming  Your application class that implements the PhysicalActivityLibrarySnapshotCallback. 
+     * @param  detectionMaskIntegerIncoming  The detections of interest, bit (1 << type) for each detection type. 
+     * @param  executorIncoming  Delivers the results to the subscriber, or null to deliver them on the thread of the other callbacks. 
+     * 
+     * @return  true  If the parameters were accepted, otherwise false. 
+     * 
+     */
+
+	public boolean subscribe(PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+		return internalClass.subscribe(physicalActivityLibrarySnapshotCallbackIncoming, detectionMaskIntegerIncoming, executorIncoming);
+	}
+
+	/**
+     * Removes a subscriber. 
+     * 
+     * @param  callbackIncoming  The PhysicalActivityLibraryCallback or PhysicalActivityLibrarySnapshotCallback of the subscriber. 
+     * 
+     * @return  true  If the subscriber was found, otherwise false. 
+     * 
+     */
+
+	public boolean unsubscribe(Object callbackIncoming) {
+		return internalClass.unsubscribe(callbackIncoming);
+	}
+
 	/**
      * Starts recognition algorithms and acquires a Android Wakelock.
      * 
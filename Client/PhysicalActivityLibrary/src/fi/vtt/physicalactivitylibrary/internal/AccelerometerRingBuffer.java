@@ -0,0 +1,332 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Preallocated ring buffer for accelerometer samples. 
+ * <p>
+ * The samples are stored column-wise in primitive arrays (struct-of-arrays), so writing a sample does not allocate anything. 
+ * When the buffer is full, the oldest samples are overwritten. 
+ * <p>
+ * Every written sample gets a running sequence number, windows are addressed with these sequence numbers. 
+ * <p>
+ * The buffer is a lock-free single producer / single consumer queue: exactly one thread (the sensor thread) calls add(), 
+ * which never blocks. A sample is published by advancing the write count after the sample has been stored. 
+ * The consumer copies windows with read(), which detects and drops samples that the producer overwrote during the copy, 
+ * so the consumer always gets a consistent window. 
+ * <p>
+ * Used by DataCollector. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerWindow 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
+ * 
+ */
+
+public final class AccelerometerRingBuffer {
+
+	private final float[] xFloatArray;
+	private final float[] yFloatArray;
+	private final float[] zFloatArray;
+
+	private final long[] timeLongArray;
+
+	private final int capacityInteger;
+	private final int maskInteger;
+
+	// Total number of samples published, the sequence number of the next sample. Written only by the producer. 
+
+	private final AtomicLong writeCountAtomicLong = new AtomicLong();
+
+	// Producer's own copy of the write count, avoids reading the atomic on every sample. 
+
+	private long producerWriteCountLong;
+
+	// Sampling rate used for sizing, if the sensor does not report its minimum delay. 
+
+	static final int DEFAULT_SAMPLING_RATE_INTEGER = 200; // Hz. 
+
+	// Smallest allowed capacity. 
+
+	static final int MINIMUM_CAPACITY_INTEGER = 64;
+
+	/**
+	 * Calculates a buffer capacity for the given sensor minimum delay and window duration. 
+	 * <p>
+	 * The capacity is doubled for headroom (timer latency, sampling jitter) and rounded up to a power of two. 
+	 * 
+	 * @param  minDelayIntegerIncoming  Minimum delay between two sensor events in microseconds, 0 if not known. 
+	 * @param  windowMillisLongIncoming  The window duration in milliseconds. 
+	 * 
+	 * @return  The capacity in samples. 
+	 * 
+	 */
+
+	public static int capacityFor(int minDelayIntegerIncoming, long windowMillisLongIncoming) {
+		double rateDouble = DEFAULT_SAMPLING_RATE_INTEGER;
+
+		if (minDelayIntegerIncoming > 0) {
+			rateDouble = 1000000.0 / minDelayIntegerIncoming;
+		}
+
+		long samplesLong = (long)Math.ceil(rateDouble * windowMillisLongIncoming / 1000.0) * 2;
+
+		int capacityInteger = MINIMUM_CAPACITY_INTEGER;
+
+		while (capacityInteger < samplesLong && capacityInteger < (1 << 30)) {
+			capacityInteger <<= 1;
+		}
+
+		return capacityInteger;
+	}
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  capacityIntegerIncoming  The requested capacity in samples, rounded up to a power of two. 
+	 * 
+	 */
+
+	public AccelerometerRingBuffer(int capacityIntegerIncoming) {
+		int capacityInteger = MINIMUM_CAPACITY_INTEGER;
+
+		while (capacityInteger < capacityIntegerIncoming && capacityInteger < (1 << 30)) {
+			capacityInteger <<= 1;
+		}
+
+		this.capacityInteger = capacityInteger;
+
+		maskInteger = capacityInteger - 1;
+
+		xFloatArray = new float[capacityInteger];
+		yFloatArray = new float[capacityInteger];
+		zFloatArray = new float[capacityInteger];
+
+		timeLongArray = new long[capacityInteger];
+	}
+
+	/**
+	 * Appends a sample, overwrites the oldest sample if the buffer is full. 
+	 * 
+	 * @param  xFloatIncoming  Acceleration along the x axis. 
+	 * @param  yFloatIncoming  Acceleration along the y axis. 
+	 * @param  zFloatIncoming  Acceleration along the z axis. 
+	 * @param  timeLongIncoming  The sample timestamp in microseconds. 
+	 * 
+	 */
+
+	public void add(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming) {
+		int indexInteger = (int)producerWriteCountLong & maskInteger;
+
+		xFloatArray[indexInteger] = xFloatIncoming;
+		yFloatArray[indexInteger] = yFloatIncoming;
+		zFloatArray[indexInteger] = zFloatIncoming;
+
+		timeLongArray[indexInteger] = timeLongIncoming;
+
+		producerWriteCountLong++;
+
+		// Publish the sample, the ordered write makes the array stores above visible to the consumer first: 
+		writeCountAtomicLong.lazySet(producerWriteCountLong);
+	}
+
+	public int getCapacity() {
+		return capacityInteger;
+	}
+
+	/**
+	 * Returns the sequence number of the next sample to be written, which equals the total number of samples written. 
+	 * 
+	 */
+
+	public long getWriteCount() {
+		return writeCountAtomicLong.get();
+	}
+
+	/**
+	 * Returns a read-only view of the samples between the given sequence numbers. 
+	 * <p>
+	 * If some of the requested samples have already been overwritten, the window starts from the oldest sample still available. 
+	 * 
+	 * @param  fromSequenceLongIncoming  Sequence number of the first sample (inclusive). 
+	 * @param  toSequenceLongIncoming  Sequence number of the last sample (exclusive). 
+	 * 
+	 * @return  The window view. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerWindow 
+	 * 
+	 */
+
+	public AccelerometerWindow getWindow(long fromSequenceLongIncoming, long toSequenceLongIncoming) {
+		long toSequenceLong = Math.min(toSequenceLongIncoming, getWriteCount());
+		long fromSequenceLong = Math.max(fromSequenceLongIncoming, toSequenceLong - capacityInteger);
+
+		fromSequenceLong = Math.max(fromSequenceLong, 0);
+
+		int sizeInteger = (int)Math.max(toSequenceLong - fromSequenceLong, 0);
+
+		return new AccelerometerWindow(this, fromSequenceLong, sizeInteger);
+	}
+
+	/**
+	 * Returns a read-only view of the newest samples, whose timestamps are within the given duration from the newest sample. 
+	 * 
+	 * @param  durationLongIncoming  The window duration in microseconds. 
+	 * 
+	 * @return  The window view. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerWindow 
+	 * 
+	 */
+
+	public AccelerometerWindow getLatestWindow(long durationLongIncoming) {
+		return getLatestWindow(getWriteCount(), durationLongIncoming);
+	}
+
+	/**
+	 * Returns a read-only view of the samples before the given sequence number, whose timestamps are within the given duration 
+	 * from the last of them. 
+	 * 
+	 * @param  toSequenceLongIncoming  Sequence number of the last sample (exclusive), at most getWriteCount(). 
+	 * @param  durationLongIncoming  The window duration in microseconds. 
+	 * 
+	 * @return  The window view. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerWindow 
+	 * 
+	 */
+
+	public AccelerometerWindow getLatestWindow(long toSequenceLongIncoming, long durationLongIncoming) {
+		long toSequenceLong = Math.min(toSequenceLongIncoming, getWriteCount());
+		long fromSequenceLong = Math.max(toSequenceLong - capacityInteger, 0);
+
+		if (toSequenceLong == fromSequenceLong) {
+			return new AccelerometerWindow(this, toSequenceLong, 0);
+		}
+
+		long startTimeLong = getTime(toSequenceLong - 1) - durationLongIncoming;
+
+		// Binary search for the first sample at or after the start time, the timestamps are ascending: 
+
+		long lowLong = fromSequenceLong;
+		long highLong = toSequenceLong - 1;
+
+		while (lowLong < highLong) {
+			long middleLong = (lowLong + highLong) >>> 1;
+
+			if (getTime(middleLong) < startTimeLong) {
+				lowLong = middleLong + 1;
+			}
+			else {
+				highLong = middleLong;
+			}
+		}
+
+		return new AccelerometerWindow(this, lowLong, (int)(toSequenceLong - lowLong));
+	}
+
+	/**
+	 * Copies the samples between the given sequence numbers into the given arrays, starting from index 0. 
+	 * <p>
+	 * Called by the consumer thread. If the producer overwrote some of the oldest samples during the copy, those samples are 
+	 * dropped and the remaining samples are moved to the beginning of the arrays. 
+	 * 
+	 * @param  fromSequenceLongIncoming  Sequence number of the first sample (inclusive). 
+	 * @param  toSequenceLongIncoming  Sequence number of the last sample (exclusive). 
+	 * @param  xFloatArrayIncoming  Destination for the x values. 
+	 * @param  yFloatArrayIncoming  Destination for the y values. 
+	 * @param  zFloatArrayIncoming  Destination for the z values. 
+	 * @param  timeLongArrayIncoming  Destination for the timestamps. 
+	 * 
+	 * @return  The number of samples copied, at most the length of the destination arrays. 
+	 * 
+	 */
+
+	public int read(long fromSequenceLongIncoming, long toSequenceLongIncoming, float[] xFloatArrayIncoming, float[] yFloatArrayIncoming, float[] zFloatArrayIncoming, long[] timeLongArrayIncoming) {
+		long toSequenceLong = Math.min(toSequenceLongIncoming, getWriteCount());
+		long fromSequenceLong = Math.max(Math.max(fromSequenceLongIncoming, toSequenceLong - capacityInteger), 0);
+
+		fromSequenceLong = Math.max(fromSequenceLong, toSequenceLong - xFloatArrayIncoming.length);
+
+		int sizeInteger = (int)Math.max(toSequenceLong - fromSequenceLong, 0);
+
+		// Copy in at most two chunks, the window may wrap around the end of the arrays: 
+
+		int startIndexInteger = (int)fromSequenceLong & maskInteger;
+		int firstChunkInteger = Math.min(sizeInteger, capacityInteger - startIndexInteger);
+
+		System.arraycopy(xFloatArray, startIndexInteger, xFloatArrayIncoming, 0, firstChunkInteger);
+		System.arraycopy(yFloatArray, startIndexInteger, yFloatArrayIncoming, 0, firstChunkInteger);
+		System.arraycopy(zFloatArray, startIndexInteger, zFloatArrayIncoming, 0, firstChunkInteger);
+		System.arraycopy(timeLongArray, startIndexInteger, timeLongArrayIncoming, 0, firstChunkInteger);
+
+		int secondChunkInteger = sizeInteger - firstChunkInteger;
+
+		System.arraycopy(xFloatArray, 0, xFloatArrayIncoming, firstChunkInteger, secondChunkInteger);
+		System.arraycopy(yFloatArray, 0, yFloatArrayIncoming, firstChunkInteger, secondChunkInteger);
+		System.arraycopy(zFloatArray, 0, zFloatArrayIncoming, firstChunkInteger, secondChunkInteger);
+		System.arraycopy(timeLongArray, 0, timeLongArrayIncoming, firstChunkInteger, secondChunkInteger);
+
+		// Validate: every sample older than the current write count minus the capacity may have been overwritten during the copy. 
+
+		long oldestValidSequenceLong = getWriteCount() - capacityInteger;
+
+		if (fromSequenceLong < oldestValidSequenceLong) {
+			int droppedInteger = (int)Math.min(oldestValidSequenceLong - fromSequenceLong, sizeInteger);
+
+			sizeInteger -= droppedInteger;
+
+			System.arraycopy(xFloatArrayIncoming, droppedInteger, xFloatArrayIncoming, 0, sizeInteger);
+			System.arraycopy(yFloatArrayIncoming, droppedInteger, yFloatArrayIncoming, 0, sizeInteger);
+			System.arraycopy(zFloatArrayIncoming, droppedInteger, zFloatArrayIncoming, 0, sizeInteger);
+			System.arraycopy(timeLongArrayIncoming, droppedInteger, timeLongArrayIncoming, 0, sizeInteger);
+		}
+
+		return sizeInteger;
+	}
+
+	float getX(long sequenceLongIncoming) {
+		return xFloatArray[(int)sequenceLongIncoming & maskInteger];
+	}
+
+	float getY(long sequenceLongIncoming) {
+		return yFloatArray[(int)sequenceLongIncoming & maskInteger];
+	}
+
+	float getZ(long sequenceLongIncoming) {
+		return zFloatArray[(int)sequenceLongIncoming & maskInteger];
+	}
+
+	long getTime(long sequenceLongIncoming) {
+		return timeLongArray[(int)sequenceLongIncoming & maskInteger];
+	}
+
+}
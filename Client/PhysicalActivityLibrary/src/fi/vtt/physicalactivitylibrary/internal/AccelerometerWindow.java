@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Read-only view of a window of samples in an AccelerometerRingBuffer. 
+ * <p>
+ * The view does not copy the samples. Index 0 is the oldest sample of the window. 
+ * <p>
+ * The view reads the ring buffer directly, so it is consistent only on the producer thread or while the producer is idle. 
+ * Other threads should copy the window with AccelerometerRingBuffer.read(). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerRingBuffer 
+ * 
+ */
+
+public final class AccelerometerWindow {
+
+	private final AccelerometerRingBuffer accelerometerRingBuffer;
+
+	private final long startSequenceLong;
+
+	private final int sizeInteger;
+
+	AccelerometerWindow(AccelerometerRingBuffer accelerometerRingBufferIncoming, long startSequenceLongIncoming, int sizeIntegerIncoming) {
+		accelerometerRingBuffer = accelerometerRingBufferIncoming;
+		startSequenceLong = startSequenceLongIncoming;
+		sizeInteger = sizeIntegerIncoming;
+	}
+
+	public float getX(int indexIntegerIncoming) {
+		return accelerometerRingBuffer.getX(startSequenceLong + indexIntegerIncoming);
+	}
+
+	public float getY(int indexIntegerIncoming) {
+		return accelerometerRingBuffer.getY(startSequenceLong + indexIntegerIncoming);
+	}
+
+	public float getZ(int indexIntegerIncoming) {
+		return accelerometerRingBuffer.getZ(startSequenceLong + indexIntegerIncoming);
+	}
+
+	public long getTime(int indexIntegerIncoming) {
+		return accelerometerRingBuffer.getTime(startSequenceLong + indexIntegerIncoming);
+	}
+
+	/**
+	 * Returns the sequence number of the first sample in this window. 
+	 * 
+	 */
+
+	public long getStartSequence() {
+		return startSequenceLong;
+	}
+
+	public int size() {
+		return sizeInteger;
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Activity-aware duty cycling of the accelerometer in snapshot mode. 
+ * <p>
+ * Every snapshot is judged by a StabilityDetection. After the given number of consecutive stable snapshots the power state 
+ * changes to POWER_STATE_LOW_RATE: the snapshots are recorded at LOW_RATE_DELAY_INTEGER with an idle period between them. 
+ * The first unstable snapshot, or motion above MOTION_THRESHOLD_DOUBLE during the low rate state, returns to POWER_STATE_FULL_RATE. 
+ * <p>
+ * The transitions and the time spent in each state are counted, the time is measured with the sample timestamps. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * @see  fi.vtt.physicalactivitylibrary.internal.StabilityDetection 
+ * 
+ */
+
+final class AdaptiveDutyCycle {
+
+	// Accelerometer delay in the low rate state in microseconds (5 Hz). 
+
+	static final int LOW_RATE_DELAY_INTEGER = 200000;
+
+	// Deviation of the acceleration magnitude from gravity in m/s^2, that returns to the full rate state. 
+
+	static final double MOTION_THRESHOLD_DOUBLE = 1.5;
+
+	private static final int POWER_STATE_COUNT_INTEGER = 2;
+
+	private final StabilityDetection stabilityDetection = new StabilityDetection();
+
+	private final int stableWindowCountInteger;
+
+	private final long idleLengthLong;
+
+	private int consecutiveStableWindowCountInteger = 0;
+
+	private int powerStateInteger = VTTPhysicalActivityLibrary.POWER_STATE_FULL_RATE;
+
+	private int transitionCountInteger = 0;
+
+	// Time spent in each power state in microseconds, and the timestamp up to which it has been counted. 
+
+	private final long[] timeInStateLongArray = new long[POWER_STATE_COUNT_INTEGER];
+
+	private long countedTimeLong = -1;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  stableWindowCountIntegerIncoming  Number of consecutive stable snapshots before the low rate state. 
+	 * @param  idleLengthLongIncoming  The idle period between two snapshots in the low rate state in milliseconds. 
+	 * 
+	 */
+
+	AdaptiveDutyCycle(int stableWindowCountIntegerIncoming, long idleLengthLongIncoming) {
+		stableWindowCountInteger = stableWindowCountIntegerIncoming;
+		idleLengthLong = idleLengthLongIncoming;
+	}
+
+	private void countTime(long timeLongIncoming) {
+		if ((countedTimeLong >= 0) && (timeLongIncoming > countedTimeLong)) {
+			timeInStateLongArray[powerStateInteger] += timeLongIncoming - countedTimeLong;
+		}
+
+		if (timeLongIncoming > countedTimeLong) {
+			countedTimeLong = timeLongIncoming;
+		}
+	}
+
+	/**
+	 * Returns the accelerometer delay of the current power state in microseconds, 0 for the fastest rate. 
+	 * 
+	 */
+
+	int getAccelerometerDelay() {
+		return (powerStateInteger == VTTPhysicalActivityLibrary.POWER_STATE_LOW_RATE) ? LOW_RATE_DELAY_INTEGER : 0;
+	}
+
+	/**
+	 * Returns the idle period before the next snapshot in milliseconds. 
+	 * 
+	 */
+
+	long getIdleLength() {
+		return (powerStateInteger == VTTPhysicalActivityLibrary.POWER_STATE_LOW_RATE) ? idleLengthLong : 0;
+	}
+
+	/**
+	 * Returns the motion wake threshold of the current power state in m/s^2, 0 if disabled. 
+	 * 
+	 */
+
+	double getMotionWakeThreshold() {
+		return (powerStateInteger == VTTPhysicalActivityLibrary.POWER_STATE_LOW_RATE) ? MOTION_THRESHOLD_DOUBLE : 0.0;
+	}
+
+	int getPowerState() {
+		return powerStateInteger;
+	}
+
+	/**
+	 * Returns the time spent in a power state in milliseconds. 
+	 * 
+	 */
+
+	long getTimeInState(int powerStateIntegerIncoming) {
+		if ((powerStateIntegerIncoming < 0) || (powerStateIntegerIncoming >= POWER_STATE_COUNT_INTEGER)) {
+			return 0;
+		}
+
+		return timeInStateLongArray[powerStateIntegerIncoming] / 1000;
+	}
+
+	int getTransitionCount() {
+		return transitionCountInteger;
+	}
+
+	/**
+	 * Called when motion was detected in the low rate state. 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the sample in microseconds. 
+	 * 
+	 * @return  True, if the power state changed. 
+	 */
+
+	boolean motionDetected(long timeLongIncoming) {
+		countTime(timeLongIncoming);
+
+		consecutiveStableWindowCountInteger = 0;
+
+		return setPowerState(VTTPhysicalActivityLibrary.POWER_STATE_FULL_RATE);
+	}
+
+	/**
+	 * Restarts the time counting, called when the recording starts. The counted times are kept. 
+	 * 
+	 */
+
+	void restart() {
+		countedTimeLong = -1;
+		consecutiveStableWindowCountInteger = 0;
+
+		setPowerState(VTTPhysicalActivityLibrary.POWER_STATE_FULL_RATE);
+	}
+
+	private boolean setPowerState(int powerStateIntegerIncoming) {
+		if (powerStateInteger == powerStateIntegerIncoming) {
+			return false;
+		}
+
+		powerStateInteger = powerStateIntegerIncoming;
+
+		transitionCountInteger++;
+
+		return true;
+	}
+
+	/**
+	 * Judges a completed snapshot. 
+	 * 
+	 * @param  rawDataIncoming  The snapshot. 
+	 * 
+	 * @return  True, if the power state changed. 
+	 */
+
+	boolean windowCompleted(RawData rawDataIncoming) {
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
+
+		if (sampleCountInteger == 0) {
+			return false;
+		}
+
+		countTime(rawDataIncoming.getAccelerometerTime(sampleCountInteger - 1));
+
+		stabilityDetection.dataCollectedNotify(rawDataIncoming);
+
+		if (stabilityDetection.getValue() == 1.0) {
+			consecutiveStableWindowCountInteger++;
+		}
+		else {
+			consecutiveStableWindowCountInteger = 0;
+		}
+
+		if (consecutiveStableWindowCountInteger >= stableWindowCountInteger) {
+			return setPowerState(VTTPhysicalActivityLibrary.POWER_STATE_LOW_RATE);
+		}
+
+		return setPowerState(VTTPhysicalActivityLibrary.POWER_STATE_FULL_RATE);
+	}
+
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.telephony.TelephonyManager;
+import android.telephony.gsm.GsmCellLocation;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * SensorSource that reads the Android accelerometer, light and proximity sensors, implements SensorEventListener. 
+ * <p>
+ * The sensor events are delivered on a dedicated sensor thread, so slow detections on the main thread do not delay them. 
+ * The thread runs only while the source is started. 
+ * 
+ * @see  android.hardware.SensorEventListener 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+ * 
+ */
+
+public final class AndroidSensorSource implements SensorEventListener, SensorSource {
+
+	private Context context;
+
+	private SensorManager sensorManager;
+
+	private volatile SensorSourceListener sensorSourceListener;
+
+	// Delay between two accelerometer samples in microseconds, SENSOR_DELAY_FASTEST (0) for the fastest rate. 
+
+	private int accelerometerDelayInteger = SensorManager.SENSOR_DELAY_FASTEST;
+
+	// The sensor thread and its Handler, created by start() and quit by stop(). 
+
+	private HandlerThread sensorHandlerThread;
+
+	private Handler sensorHandler;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  contextIncoming  The application context. 
+	 * 
+	 */
+
+	public AndroidSensorSource(Context contextIncoming) {
+		context = contextIncoming;
+	}
+
+	private SensorManager getSensorManager() {
+		if (sensorManager == null) {
+			sensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
+		}
+
+		return sensorManager;
+	}
+
+	@Override
+	public int getAccelerometerMinDelay() {
+		Sensor accelerometerSensor = getSensorManager().getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+
+		return (accelerometerSensor != null) ? accelerometerSensor.getMinDelay() : 0;
+	}
+
+	public int getCellID() {
+		TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+
+		GsmCellLocation gsmCellLocation = (GsmCellLocation)telephonyManager.getCellLocation();
+
+		return gsmCellLocation.getCid();
+	}
+
+	@Override
+	public boolean isRealTime() {
+		return true;
+	}
+
+	/**
+	 * Sets the accelerometer delay, the accelerometer is registered again if the source is started. 
+	 * 
+	 */
+
+	@Override
+	public void setAccelerometerDelay(int delayIntegerIncoming) {
+		if (accelerometerDelayInteger == delayIntegerIncoming) {
+			return;
+		}
+
+		accelerometerDelayInteger = delayIntegerIncoming;
+
+		if (sensorSourceListener != null) {
+			SensorManager sensorManager = getSensorManager();
+
+			Sensor accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+
+			sensorManager.unregisterListener(this, accelerometerSensor);
+			sensorManager.registerListener(this, accelerometerSensor, accelerometerDelayInteger, sensorHandler);
+		}
+	}
+
+	// Ignore.
+
+	@Override
+	public void onAccuracyChanged(Sensor sensorIncoming, int accuracyIntegerIncoming) {}
+
+	@Override
+	public void onSensorChanged(SensorEvent sensorEventIncoming) {
+		SensorSourceListener sensorSourceListener = this.sensorSourceListener;
+
+		if (sensorSourceListener == null) {
+			return; // Stopped. 
+		}
+
+		int typeInteger = sensorEventIncoming.sensor.getType();
+
+		if (Sensor.TYPE_ACCELEROMETER == typeInteger) {
+			float[] valuesFloatArray = sensorEventIncoming.values;
+
+			long timeStampLong = sensorEventIncoming.timestamp / 1000;
+
+			sensorSourceListener.accelerometerChanged(valuesFloatArray[0], valuesFloatArray[1], valuesFloatArray[2], timeStampLong);
+		}
+		else if (Sensor.TYPE_LIGHT == typeInteger) {
+			sensorSourceListener.lightChanged(sensorEventIncoming.values[0]);
+		}
+		else if (Sensor.TYPE_PROXIMITY == typeInteger) {
+			sensorSourceListener.proximityChanged(sensorEventIncoming.values[0]);
+		}
+	}
+
+	@Override
+	public void start(SensorSourceListener sensorSourceListenerIncoming) {
+		sensorSourceListener = sensorSourceListenerIncoming;
+
+		if (sensorHandlerThread == null) {
+			sensorHandlerThread = new HandlerThread("PhysicalActivityLibrary sensor thread");
+			sensorHandlerThread.start();
+
+			sensorHandler = new Handler(sensorHandlerThread.getLooper());
+		}
+
+		SensorManager sensorManager = getSensorManager();
+
+		// Enable accelerometer data:
+
+		Sensor accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+
+		boolean successBoolean = sensorManager.registerListener(this, accelerometerSensor, accelerometerDelayInteger, sensorHandler);
+
+		if (!successBoolean) {
+			sensorSourceListenerIncoming.sensorFailed(VTTPhysicalActivityLibrary.ERROR_NO_ACCELEROMETER_DATA_AVAILABLE);
+		}
+
+		// Enable proximity data:
+
+		Sensor proximitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
+
+		successBoolean = sensorManager.registerListener(this, proximitySensor, SensorManager.SENSOR_DELAY_NORMAL, sensorHandler);
+
+		if (!successBoolean) {
+			sensorSourceListenerIncoming.sensorFailed(VTTPhysicalActivityLibrary.ERROR_NO_PROXIMITY_SENSOR_AVAILABLE);
+		}
+
+		// Enable light data:
+
+		Sensor lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
+
+		successBoolean = sensorManager.registerListener(this, lightSensor, SensorManager.SENSOR_DELAY_NORMAL, sensorHandler);
+
+		if (!successBoolean) {
+			sensorSourceListenerIncoming.sensorFailed(VTTPhysicalActivityLibrary.ERROR_NO_LIGHT_SENSOR_AVAILABLE);
+		}
+	}
+
+	@Override
+	public void stop() {
+		sensorSourceListener = null;
+
+		getSensorManager().unregisterListener(this);
+
+		if (sensorHandlerThread != null) {
+			sensorHandlerThread.quit(); // The events still queued are not needed any more. 
+
+			sensorHandlerThread = null;
+			sensorHandler = null;
+		}
+	}
+
+}
@@ -0,0 +1,410 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Delivers the results, falls and errors to the application on a dedicated thread, implements Runnable. 
+ * <p>
+ * The events are copied into a bounded queue of preallocated slots, so the recognition loop only waits for the copy. 
+ * When the queue is full, the overflow policy decides: 
+ * <p>
+ * DISPATCH_OVERFLOW_COALESCE: the new results are merged into the newest queued results. The values of the detections 
+ * missing from the new results are kept, and the change masks are combined, so a change is not lost for a subscriber that 
+ * routes by it. If the newest queued event is a fall or an error, the oldest queued results are merged into the next queued 
+ * results, or dropped as with DISPATCH_OVERFLOW_DROP_OLDEST if there are no next results. 
+ * <p>
+ * DISPATCH_OVERFLOW_DROP_OLDEST: the oldest queued results are dropped, or the oldest error if no results are queued. 
+ * Falls are never dropped for a newer event: if only falls are queued, the new event is dropped, unless it is a fall too. 
+ * <p>
+ * DISPATCH_OVERFLOW_BLOCK: the recognition loop waits until the application has taken an event. 
+ * <p>
+ * A fall is queued ahead of the queued results and errors, behind the earlier falls, so it is delivered next. It is 
+ * queued from the sensor thread, which never waits: when the queue is full, room is made as with DISPATCH_OVERFLOW_DROP_OLDEST 
+ * (merged with DISPATCH_OVERFLOW_COALESCE) whatever the policy. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcherListener 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * 
+ */
+
+final class CallbackDispatcher implements Runnable {
+
+	private static final int EVENT_ACTIVITY_INTEGER = 0;
+	private static final int EVENT_ERROR_INTEGER = 1;
+	private static final int EVENT_FALL_INTEGER = 2;
+
+	private final CallbackDispatcherListener callbackDispatcherListener;
+
+	private final int overflowPolicyInteger;
+
+	// The queue slots, the results are copied into the snapshot of the slot, the error code or fall time into the long. 
+
+	private final int[] eventTypeIntegerArray;
+	private final long[] eventLongArray;
+
+	private final WritableActivitySnapshot[] activitySnapshotArray;
+
+	private int headInteger = 0; // Index of the oldest queued event. 
+	private int countInteger = 0;
+
+	private boolean runningBoolean = true;
+
+	private long dropCountLong = 0;
+	private long coalesceCountLong = 0;
+
+	// The dispatcher thread delivers from this copy, so the slot is free while the application runs. 
+
+	private final ActivitySnapshot deliveryActivitySnapshot = new ActivitySnapshot();
+
+	// The older results while coalescing. 
+
+	private final WritableActivitySnapshot coalesceActivitySnapshot = new WritableActivitySnapshot();
+
+	/**
+	 * Constructor, starts the dispatcher thread. 
+	 * 
+	 * @param  callbackDispatcherListenerIncoming  Receives the events on the dispatcher thread. 
+	 * @param  capacityIntegerIncoming  The queue capacity in events, at least 1. 
+	 * @param  overflowPolicyIntegerIncoming  DISPATCH_OVERFLOW_COALESCE, DISPATCH_OVERFLOW_DROP_OLDEST or DISPATCH_OVERFLOW_BLOCK. 
+	 * 
+	 */
+
+	CallbackDispatcher(CallbackDispatcherListener callbackDispatcherListenerIncoming, int capacityIntegerIncoming, int overflowPolicyIntegerIncoming) {
+		callbackDispatcherListener = callbackDispatcherListenerIncoming;
+		overflowPolicyInteger = overflowPolicyIntegerIncoming;
+
+		eventTypeIntegerArray = new int[capacityIntegerIncoming];
+		eventLongArray = new long[capacityIntegerIncoming];
+
+		activitySnapshotArray = new WritableActivitySnapshot[capacityIntegerIncoming];
+
+		for (int i = 0; i < capacityIntegerIncoming; i++) {
+			activitySnapshotArray[i] = new WritableActivitySnapshot();
+		}
+
+		Thread thread = new Thread(this, "PhysicalActivityLibrary callback thread");
+
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Queues the results of a window or a change. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results, copied before returning. 
+	 * 
+	 */
+
+	void dispatchActivitySnapshot(ActivitySnapshot activitySnapshotIncoming) {
+		offer(EVENT_ACTIVITY_INTEGER, activitySnapshotIncoming, 0);
+	}
+
+	/**
+	 * Queues an error. 
+	 * 
+	 * @param  errorCodeIntegerIncoming  The error code. 
+	 * 
+	 */
+
+	void dispatchError(int errorCodeIntegerIncoming) {
+		offer(EVENT_ERROR_INTEGER, null, errorCodeIntegerIncoming);
+	}
+
+	/**
+	 * Queues a fall ahead of the queued results and errors. 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the impact in microseconds. 
+	 * 
+	 */
+
+	void dispatchFall(long timeLongIncoming) {
+		offer(EVENT_FALL_INTEGER, null, timeLongIncoming);
+	}
+
+	/**
+	 * Returns the number of results merged into other queued results with DISPATCH_OVERFLOW_COALESCE. 
+	 * 
+	 */
+
+	synchronized long getCoalesceCount() {
+		return coalesceCountLong;
+	}
+
+	/**
+	 * Returns the number of events dropped because the queue was full. 
+	 * 
+	 */
+
+	synchronized long getDropCount() {
+		return dropCountLong;
+	}
+
+	/**
+	 * Returns the number of queued events, that the application has not yet taken. 
+	 * 
+	 */
+
+	synchronized int getQueueDepth() {
+		return countInteger;
+	}
+
+	/**
+	 * Copies an event into the queue, applies the overflow policy if the queue is full. 
+	 * 
+	 */
+
+	private synchronized void offer(int eventTypeIntegerIncoming, ActivitySnapshot activitySnapshotIncoming, long eventLongIncoming) {
+		if (!runningBoolean) {
+			return;
+		}
+
+		int capacityInteger = eventTypeIntegerArray.length;
+
+		if (countInteger == capacityInteger) {
+			int newestIndexInteger = (headInteger + countInteger - 1) % capacityInteger;
+
+			if ((overflowPolicyInteger == VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_COALESCE) && (eventTypeIntegerIncoming == EVENT_ACTIVITY_INTEGER) && (eventTypeIntegerArray[newestIndexInteger] == EVENT_ACTIVITY_INTEGER)) {
+				activitySnapshotArray[newestIndexInteger].coalesce(activitySnapshotIncoming, coalesceActivitySnapshot);
+
+				coalesceCountLong++;
+
+				return;
+			}
+			else if ((overflowPolicyInteger == VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_BLOCK) && (eventTypeIntegerIncoming != EVENT_FALL_INTEGER)) {
+				while ((countInteger == capacityInteger) && runningBoolean) {
+					try {
+						wait();
+					}
+					catch (InterruptedException interruptedExceptionIncoming) {
+						Thread.currentThread().interrupt();
+
+						dropCountLong++;
+
+						return;
+					}
+				}
+
+				if (!runningBoolean) {
+					return;
+				}
+			}
+			else if (!dropOldestEvent(eventTypeIntegerIncoming)) {
+				return; // The new event was dropped. 
+			}
+		}
+
+		int indexInteger = (headInteger + countInteger) % capacityInteger;
+
+		if (eventTypeIntegerIncoming == EVENT_FALL_INTEGER) {
+			// Ahead of the queued results and errors, the events behind move one slot back, the free snapshot takes the gap: 
+
+			WritableActivitySnapshot freeActivitySnapshot = activitySnapshotArray[indexInteger];
+
+			for (int i = countInteger; i > 0; i--) {
+				int previousIndexInteger = (indexInteger + capacityInteger - 1) % capacityInteger;
+
+				if (eventTypeIntegerArray[previousIndexInteger] == EVENT_FALL_INTEGER) {
+					break;
+				}
+
+				eventTypeIntegerArray[indexInteger] = eventTypeIntegerArray[previousIndexInteger];
+				eventLongArray[indexInteger] = eventLongArray[previousIndexInteger];
+				activitySnapshotArray[indexInteger] = activitySnapshotArray[previousIndexInteger];
+
+				indexInteger = previousIndexInteger;
+			}
+
+			activitySnapshotArray[indexInteger] = freeActivitySnapshot;
+		}
+
+		eventTypeIntegerArray[indexInteger] = eventTypeIntegerIncoming;
+		eventLongArray[indexInteger] = eventLongIncoming;
+
+		if (activitySnapshotIncoming != null) {
+			activitySnapshotIncoming.copyTo(activitySnapshotArray[indexInteger]);
+		}
+
+		countInteger++;
+
+		notifyAll();
+	}
+
+	/**
+	 * Makes room in the full queue, a queued fall is dropped only for a new fall. 
+	 * <p>
+	 * With DISPATCH_OVERFLOW_COALESCE the oldest results are merged into the next queued results, if any. 
+	 * 
+	 * @param  eventTypeIntegerIncoming  The type of the new event. 
+	 * 
+	 * @return  True, if a queued event was removed, false if the new event is to be dropped instead. 
+	 * 
+	 */
+
+	private boolean dropOldestEvent(int eventTypeIntegerIncoming) {
+		int capacityInteger = eventTypeIntegerArray.length;
+
+		int dropOffsetInteger = -1;
+		int nextActivityOffsetInteger = -1;
+
+		for (int i = 0; i < countInteger; i++) {
+			int eventTypeInteger = eventTypeIntegerArray[(headInteger + i) % capacityInteger];
+
+			if (eventTypeInteger == EVENT_ACTIVITY_INTEGER) {
+				if ((dropOffsetInteger >= 0) && (eventTypeIntegerArray[(headInteger + dropOffsetInteger) % capacityInteger] == EVENT_ACTIVITY_INTEGER)) {
+					nextActivityOffsetInteger = i;
+
+					break;
+				}
+
+				dropOffsetInteger = i;
+			}
+			else if ((eventTypeInteger == EVENT_ERROR_INTEGER) && (dropOffsetInteger < 0)) {
+				dropOffsetInteger = i;
+			}
+		}
+
+		if (dropOffsetInteger < 0) {
+			if (eventTypeIntegerIncoming != EVENT_FALL_INTEGER) {
+				dropCountLong++;
+
+				return false;
+			}
+
+			dropOffsetInteger = 0; // Only falls are queued. 
+		}
+
+		if ((overflowPolicyInteger == VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_COALESCE) && (nextActivityOffsetInteger >= 0)) {
+			int olderIndexInteger = (headInteger + dropOffsetInteger) % capacityInteger;
+			int newerIndexInteger = (headInteger + nextActivityOffsetInteger) % capacityInteger;
+
+			// Merged into the older slot, which then takes the place of the newer one: 
+
+			WritableActivitySnapshot mergedActivitySnapshot = activitySnapshotArray[olderIndexInteger];
+
+			mergedActivitySnapshot.coalesce(activitySnapshotArray[newerIndexInteger], coalesceActivitySnapshot);
+
+			activitySnapshotArray[olderIndexInteger] = activitySnapshotArray[newerIndexInteger];
+			activitySnapshotArray[newerIndexInteger] = mergedActivitySnapshot;
+
+			coalesceCountLong++;
+		}
+		else {
+			dropCountLong++;
+		}
+
+		// The events before the dropped one move one slot forward, the snapshots are swapped without copying: 
+
+		int indexInteger = (headInteger + dropOffsetInteger) % capacityInteger;
+
+		WritableActivitySnapshot droppedActivitySnapshot = activitySnapshotArray[indexInteger];
+
+		for (int i = dropOffsetInteger; i > 0; i--) {
+			int previousIndexInteger = (indexInteger + capacityInteger - 1) % capacityInteger;
+
+			eventTypeIntegerArray[indexInteger] = eventTypeIntegerArray[previousIndexInteger];
+			eventLongArray[indexInteger] = eventLongArray[previousIndexInteger];
+			activitySnapshotArray[indexInteger] = activitySnapshotArray[previousIndexInteger];
+
+			indexInteger = previousIndexInteger;
+		}
+
+		activitySnapshotArray[headInteger] = droppedActivitySnapshot;
+
+		headInteger = (headInteger + 1) % capacityInteger;
+		countInteger--;
+
+		return true;
+	}
+
+	/**
+	 * Delivers the queued events until shutdown() is called. 
+	 * 
+	 */
+
+	@Override
+	public void run() {
+		while (true) {
+			int eventTypeInteger;
+			long eventLong;
+
+			synchronized (this) {
+				while ((countInteger == 0) && runningBoolean) {
+					try {
+						wait();
+					}
+					catch (InterruptedException interruptedExceptionIncoming) {
+						return;
+					}
+				}
+
+				if (!runningBoolean) {
+					return;
+				}
+
+				eventTypeInteger = eventTypeIntegerArray[headInteger];
+				eventLong = eventLongArray[headInteger];
+
+				if (eventTypeInteger == EVENT_ACTIVITY_INTEGER) {
+					activitySnapshotArray[headInteger].copyTo(deliveryActivitySnapshot);
+				}
+
+				headInteger = (headInteger + 1) % eventTypeIntegerArray.length;
+				countInteger--;
+
+				notifyAll(); // Room for a blocked producer. 
+			}
+
+			if (eventTypeInteger == EVENT_ACTIVITY_INTEGER) {
+				callbackDispatcherListener.activitySnapshotDispatched(deliveryActivitySnapshot);
+			}
+			else if (eventTypeInteger == EVENT_ERROR_INTEGER) {
+				callbackDispatcherListener.errorDispatched((int)eventLong);
+			}
+			else {
+				callbackDispatcherListener.fallDispatched(eventLong);
+			}
+		}
+	}
+
+	/**
+	 * Stops the dispatcher thread, the queued events are discarded and a blocked producer is released. 
+	 * 
+	 */
+
+	synchronized void shutdown() {
+		runningBoolean = false;
+
+		notifyAll();
+	}
+
+}
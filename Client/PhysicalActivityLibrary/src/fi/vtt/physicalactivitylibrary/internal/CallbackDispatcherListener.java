@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+
+/**
+ * Interface for delivering the results from the CallbackDispatcher thread. 
+ * <p>
+ * Implemented by InternalClass. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcher 
+ * 
+ */
+
+interface CallbackDispatcherListener {
+
+	/**
+	 * Called on the dispatcher thread with the queued results of a window or a change. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results, valid only during this call. 
+	 * 
+	 */
+
+	public abstract void activitySnapshotDispatched(ActivitySnapshot activitySnapshotIncoming);
+
+	/**
+	 * Called on the dispatcher thread with a queued error. 
+	 * 
+	 * @param  errorCodeIntegerIncoming  The error code. 
+	 * 
+	 */
+
+	public abstract void errorDispatched(int errorCodeIntegerIncoming);
+
+	/**
+	 * Called on the dispatcher thread with a queued fall. 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the impact in microseconds. 
+	 * 
+	 */
+
+	public abstract void fallDispatched(long timeLongIncoming);
+
+}
@@ -30,71 +30,149 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import android.content.Context;
-import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
-import android.location.Location;
-import android.location.LocationListener;
-import android.os.Bundle;
-import android.os.Handler;
-import android.os.Message;
-import android.telephony.TelephonyManager;
-import android.telephony.gsm.GsmCellLocation;
-import fi.vtt.physicalactivitylibrary.internal.utils.*;
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import fi.vtt.physicalactivitylibrary.internal.utils.*;
 import java.util.*;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
 
 /**
  * DataCollector class, that collects the accelerometer etc. data. 
  * <p>
+ * The data is read from a SensorSource, so the collector itself does not depend on the Android sensor framework. 
+ * <p>
+ * Windows are closed by a timer, if the SensorSource delivers the samples in real time. Otherwise (for example a trace replayed 
+ * as fast as possible) the windows are closed based on the sample timestamps. The timer is scheduled on a Clock, by default 
+ * on the shared scheduler thread of RealTimeClock. 
+ * <p>
+ * With setWindowClosure() the windows of a real time source can be closed by the samples as well, when their timestamps span 
+ * the window duration or when the window has the configured sample count. The sensor thread then records where the window 
+ * ends, so the samples that arrive before the window completion runs are not part of the window. 
+ * <p>
+ * The samples are handed from the sensor thread to the window completion through a lock-free single producer / single consumer 
+ * ring buffer, so the sensor callbacks never block. 
+ * <p>
+ * A snapshot can be preceded by an idle period, during which the samples are not recorded into the window. The idle period 
+ * is measured with the sample timestamps, and ends early if the motion wake threshold is exceeded. 
+ * <p>
  * Used by InternalClass. 
  * 
- * @see  android.location.LocationListener 
- * @see  android.hardware.SensorEventListener 
  * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSourceListener 
+ * @see  fi.vtt.physicalactivitylibrary.internal.utils.Clock 
  * @see  fi.vtt.physicalactivitylibrary.internal.utils.MyTimerListener 
  *
  */
 
-public final class DataCollector implements LocationListener, MyTimerListener, SensorEventListener {
+public final class DataCollector implements MyTimerListener, SensorSourceListener {
+
+	private AccelerometerRingBuffer accelerometerRingBuffer;
+
+	// Number of window buffers, one is read by the detections while the next window is copied into another. 
+
+	static final int WINDOW_BUFFER_COUNT_INTEGER = 2;
+
+	private RawData[] rawDataArray = new RawData[WINDOW_BUFFER_COUNT_INTEGER];
 
-	private ArrayList<AccelerometerReadings> accelerometerReadingsArrayList;
+	private int rawDataIndexInteger = 0;
 
 	private ArrayList<DataCollectorListener> dataCollectorListenersArrayList = new ArrayList<DataCollectorListener>();
 
 	private ArrayList<DataCollectorObserver> DataCollectorObserversArrayList = new ArrayList<DataCollectorObserver>();
 
-	private ArrayList<Float> xFloatArrayList;
-	private ArrayList<Float> yFloatArrayList;
-	private ArrayList<Float> zFloatArrayList;
+	// Read on the sensor thread for every sample, replaced (copy on write) when an observer is registered or unregistered. 
 
-	private ArrayList<Long> timeLongArrayList;
+	private volatile DataCollectorSampleObserver[] dataCollectorSampleObserversArray = new DataCollectorSampleObserver[0];
 
-	private boolean isRecordingBoolean;
+	// Sequence numbers of the first and the last (exclusive) sample of the current window. 
 
-	private Context context;
+	private long windowStartSequenceLong;
+	private long windowEndSequenceLong;
 
-	private float lightValue = -1.0f; // Ambient light level in SI lux units.  < 0 , if no data available. 
-	private float proximityValue = -1.0f; // Proximity sensor distance measured in centimeters. < 0 , if no data available. 
+	// Written by the window completion thread, read also by the sensor thread. 
 
-	private MyTimer myTimer;
+	private volatile boolean isRecordingBoolean;
+	private volatile boolean isStreamingBoolean;
 
-	private SensorManager sensorManager;
+	// Sliding window length and hop in milliseconds, used in streaming mode. 
 
-	private static final int ACCELEROMETER_TIMER_TIMER_DELAY = 5 * 1000; // 5 seconds. 
+	private long windowLengthLong;
+	private long hopLengthLong;
+
+	// Window closure mode and sample count set by setWindowClosure(), applied when recording starts. 
+
+	private int windowClosureInteger = VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMER;
+	private int windowClosureSampleCountInteger = 0;
+
+	// True, if the windows of the current recording are closed by the samples instead of the timer. 
+	// Written before the sensors are started. 
+
+	private volatile boolean isDataDrivenBoolean;
+
+	// Samples per window and between two windows, if the windows are closed by the sample count, otherwise 0. 
+
+	private volatile int windowSampleCountInteger;
+	private volatile int hopSampleCountInteger;
+
+	// Time (sample timestamp in microseconds) when the current window is due, < 0 if not known yet. 
+	// Used only, if the windows are closed by the sample timestamps. 
+
+	private long windowDueTimeLong = -1;
+
+	// Sequence number of the sample, that closes the current window by the sample count. 
 
-	private WriteLock writeLock;
+	private long windowDueSequenceLong;
+
+	// Sequence number (exclusive) where the sensor thread closed the latest window, < 0 if not closed yet. 
+
+	private volatile long closedWindowEndSequenceLong = -1;
+
+	// Idle period before the current snapshot: written before the sensors are started, then owned by the sensor thread. 
+
+	private volatile boolean isIdleBoolean = false;
+	private volatile long idleLengthLong; // Microseconds. 
+
+	private long idleEndTimeLong = -1; // Sample timestamp in microseconds, < 0 if not known yet. 
+
+	// Deviation of the acceleration magnitude from gravity in m/s^2, that informs the listeners about motion. 0 if disabled. 
+
+	private volatile double motionWakeThresholdDouble = 0.0;
+
+	private static final double GRAVITY_DOUBLE = 9.80665;
+
+	private volatile float lightValue = -1.0f; // Ambient light level in SI lux units.  < 0 , if no data available. 
+	private volatile float proximityValue = -1.0f; // Proximity sensor distance measured in centimeters. < 0 , if no data available. 
+
+	private final MyTimer myTimer; // Reused for every window. 
+
+	private SensorSource sensorSource;
+
+	// Executes the window completion, for example on the Android main thread. 
+
+	private Executor executor;
+
+	// Schedules the window timer and the delayed tasks of the listeners. 
+
+	private final Clock clock;
+
+	private static final int ACCELEROMETER_TIMER_TIMER_DELAY = 5 * 1000; // 5 seconds. 
 
 	// Key: Sensor object identifier, Value: true, if data collected, otherwise false. 
 
 	protected Map<DataSourceID, Boolean> collectedDataMap;
 
-	private Handler handler = new Handler() {
-		public void handleMessage(Message messageIncoming) {
-			myTimer.cancel();
+	private Runnable windowCompletedRunnable = new Runnable() {
+		public void run() {
+			if (!isRecording()) {
+				return; // Stopped while the window completion was pending. 
+			}
+
+			if (isStreaming()) {
+				closeSlidingWindow();
+
+				return;
+			}
 
 			stopRecording();
 
@@ -106,6 +184,46 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 		};
 	};
 
+	private Runnable startWindowTimerRunnable = new Runnable() {
+		public void run() {
+			if (isRecording() && !isStreaming() && !isIdleBoolean) {
+				startTimer(ACCELEROMETER_TIMER_TIMER_DELAY);
+			}
+		};
+	};
+
+	/**
+	 * Closes the current sliding window, informs the listeners and schedules the next window. 
+	 * <p>
+	 * The sensors stay registered, the window covers the newest samples within the window length. 
+	 * 
+	 */
+
+	private void closeSlidingWindow() {
+		AccelerometerWindow accelerometerWindow;
+
+		long closedWindowEndSequenceLong = this.closedWindowEndSequenceLong;
+
+		if (closedWindowEndSequenceLong < 0) {
+			accelerometerWindow = accelerometerRingBuffer.getLatestWindow(windowLengthLong * 1000);
+		}
+		else if (windowSampleCountInteger > 0) {
+			accelerometerWindow = accelerometerRingBuffer.getWindow(closedWindowEndSequenceLong - windowSampleCountInteger, closedWindowEndSequenceLong);
+		}
+		else {
+			accelerometerWindow = accelerometerRingBuffer.getLatestWindow(closedWindowEndSequenceLong, windowLengthLong * 1000);
+		}
+
+		windowStartSequenceLong = accelerometerWindow.getStartSequence();
+		windowEndSequenceLong = windowStartSequenceLong + accelerometerWindow.size();
+
+		informListenersDataCollectionCompleted();
+
+		if (isRecording() && !isDataDrivenBoolean) {
+			myTimer.start(hopLengthLong);
+		}
+	}
+
 	/**
 	 * Inform all data collectors that data collection is now complete. 
 	 * 
@@ -120,6 +238,70 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 		}
 	}
 
+	/**
+	 * Inform all data collectors that a streaming detection changed its value. 
+	 * <p>
+	 * Called on the sensor thread, the listeners are informed through the executor. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorListener 
+	 *
+	 */
+
+	private void informListenersDetectionChanged(final int typeIntegerIncoming, final double valueDoubleIncoming) {
+		executor.execute(new Runnable() {
+			public void run() {
+				if (!isRecording()) {
+					return; // Stopped meanwhile. 
+				}
+
+				for (int i = 0; i < dataCollectorListenersArrayList.size(); i++) {
+					DataCollectorListener dataCollectorListener = dataCollectorListenersArrayList.get(i);
+					dataCollectorListener.detectionChanged(typeIntegerIncoming, valueDoubleIncoming);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Inform all data collectors that a fall was detected. 
+	 * <p>
+	 * Called and informed on the sensor thread, so the fall does not wait behind a window completion on the executor. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorListener 
+	 *
+	 */
+
+	private void informListenersFallDetected() {
+		for (int i = 0; i < dataCollectorListenersArrayList.size(); i++) {
+			DataCollectorListener dataCollectorListener = dataCollectorListenersArrayList.get(i);
+			dataCollectorListener.fallDetected();
+		}
+	}
+
+	/**
+	 * Inform all data collectors that motion was detected. 
+	 * <p>
+	 * Called on the sensor thread, the listeners are informed through the executor. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorListener 
+	 *
+	 */
+
+	private void informListenersMotionDetected(final long timeLongIncoming) {
+		executor.execute(new Runnable() {
+			public void run() {
+				if (!isRecording()) {
+					return;
+				}
+
+				for (int i = 0; i < dataCollectorListenersArrayList.size(); i++) {
+					DataCollectorListener dataCollectorListener = dataCollectorListenersArrayList.get(i);
+					dataCollectorListener.motionDetected(timeLongIncoming);
+				}
+			}
+		});
+	}
+
 	/**
 	 * Inform all data collectors that data collection failed. 
 	 * 
@@ -134,30 +316,51 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 		}
 	}
 
-	public ArrayList<Float> getXBuffer() {
-		return xFloatArrayList;
-	}
+	/**
+	 * Returns the accelerometer samples recorded during the last snapshot or sliding window. 
+	 * <p>
+	 * The window is copied into one of the preallocated RawData buffers, which are used in turns. The returned RawData 
+	 * stays unchanged until this method has been called WINDOW_BUFFER_COUNT_INTEGER more times, so the recording of the 
+	 * next window can continue while the detections read this one. A buffer still held by a detection that missed its 
+	 * deadline is replaced by a new one. 
+	 * <p>
+	 * The copy is consistent even if the sensor thread keeps writing samples meanwhile. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.RawData 
+	 * 
+	 */
 
-	public ArrayList<Float> getYBuffer() {
-		return yFloatArrayList;
-	}
+	public RawData getRawData() {
+		int capacityInteger = (accelerometerRingBuffer != null) ? accelerometerRingBuffer.getCapacity() : 0;
 
-	public ArrayList<Float> getZBuffer() {
-		return zFloatArrayList;
-	}
+		rawDataIndexInteger = (rawDataIndexInteger + 1) % WINDOW_BUFFER_COUNT_INTEGER;
 
-	public ArrayList<Long> getTimeBuffer() {
-		return timeLongArrayList;
-	}
+		RawData rawData = rawDataArray[rawDataIndexInteger];
 
-	public boolean isRecording() {
-		writeLock.lock();
+		if (rawData == null || rawData.isHeld() || rawData.getCapacity() < capacityInteger) {
+			rawData = new RawData(capacityInteger);
 
-		boolean recordingBoolean = isRecordingBoolean;
+			rawDataArray[rawDataIndexInteger] = rawData;
+		}
 
-		writeLock.unlock();
+		if (accelerometerRingBuffer != null) {
+			rawData.readFrom(accelerometerRingBuffer, windowStartSequenceLong, windowEndSequenceLong);
+		}
 
-		return recordingBoolean;
+		return rawData;
+	}
+
+	/**
+	 * Returns true, if recording in streaming (sliding window) mode, otherwise false. 
+	 * 
+	 */
+
+	public boolean isStreaming() {
+		return isRecordingBoolean && isStreamingBoolean;
+	}
+
+	public boolean isRecording() {
+		return isRecordingBoolean;
 	}
 
 	/**
@@ -220,27 +423,142 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 		return DataCollectorObserversArrayList.remove(dataCollectorObserverIncoming);
 	}
 
+	/**
+	 * Registers a DataCollectorSampleObserver, that is updated with every accelerometer sample on the sensor thread. 
+	 * 
+	 * @param  dataCollectorSampleObserverIncoming  The observer to register. 
+	 * 
+	 * @return  True, if success, otherwise false. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+	 * 
+	 */
+
+	public synchronized boolean registerSampleObserver(DataCollectorSampleObserver dataCollectorSampleObserverIncoming) {
+		DataCollectorSampleObserver[] oldArray = dataCollectorSampleObserversArray;
+		DataCollectorSampleObserver[] newArray = new DataCollectorSampleObserver[oldArray.length + 1];
+
+		System.arraycopy(oldArray, 0, newArray, 0, oldArray.length);
+
+		newArray[oldArray.length] = dataCollectorSampleObserverIncoming;
+
+		dataCollectorSampleObserversArray = newArray;
+
+		return true;
+	}
+
+	/**
+	 * Unregisters a DataCollectorSampleObserver. 
+	 * 
+	 * @param  dataCollectorSampleObserverIncoming  The observer to unregister. 
+	 * 
+	 * @return  True, if success, otherwise false. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+	 * 
+	 */
+
+	public synchronized boolean unRegisterSampleObserver(DataCollectorSampleObserver dataCollectorSampleObserverIncoming) {
+		DataCollectorSampleObserver[] oldArray = dataCollectorSampleObserversArray;
+
+		for (int i = 0; i < oldArray.length; i++) {
+			if (oldArray[i] == dataCollectorSampleObserverIncoming) {
+				DataCollectorSampleObserver[] newArray = new DataCollectorSampleObserver[oldArray.length - 1];
+
+				System.arraycopy(oldArray, 0, newArray, 0, i);
+				System.arraycopy(oldArray, i + 1, newArray, i, oldArray.length - i - 1);
+
+				dataCollectorSampleObserversArray = newArray;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
 	/**
 	 * Constructor. 
+	 * <p>
+	 * Reads the Android sensors and completes the windows on the thread that calls this constructor. 
 	 * 
 	 * @param  contextIncoming  The application context. 
 	 * 
 	 */
 
 	public DataCollector(Context contextIncoming) {
-		context = contextIncoming;
+		this(new AndroidSensorSource(contextIncoming), new HandlerExecutor());
+	}
 
-		writeLock = new ReentrantReadWriteLock().writeLock();
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  sensorSourceIncoming  The source of the sensor data. 
+	 * @param  executorIncoming  Executes the window completion and the listener callbacks. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+	 * 
+	 */
+
+	public DataCollector(SensorSource sensorSourceIncoming, Executor executorIncoming) {
+		this(sensorSourceIncoming, executorIncoming, RealTimeClock.getInstance());
+	}
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  sensorSourceIncoming  The source of the sensor data. 
+	 * @param  executorIncoming  Executes the window completion and the listener callbacks. 
+	 * @param  clockIncoming  Schedules the window timer, for example a ManualClock to close the windows deterministically. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.utils.Clock 
+	 * 
+	 */
+
+	public DataCollector(SensorSource sensorSourceIncoming, Executor executorIncoming, Clock clockIncoming) {
+		sensorSource = sensorSourceIncoming;
+		executor = executorIncoming;
+		clock = clockIncoming;
+
+		myTimer = new MyTimer(clockIncoming);
+		myTimer.setListener(this);
 
 		collectedDataMap = new TreeMap<DataSourceID, Boolean>();
+	}
 
-		accelerometerReadingsArrayList = new ArrayList<AccelerometerReadings>();
+	/**
+	 * Runs an urgent task through the executor, ahead of the queued window completions if the executor is a HandlerExecutor. 
+	 * 
+	 * @param  runnableIncoming  The task. 
+	 * 
+	 */
 
-		xFloatArrayList = new ArrayList<Float>();
-		yFloatArrayList = new ArrayList<Float>();
-		zFloatArrayList = new ArrayList<Float>();
+	public void executeAtFront(Runnable runnableIncoming) {
+		if (executor instanceof HandlerExecutor) {
+			((HandlerExecutor)executor).executeAtFrontOfQueue(runnableIncoming);
+		}
+		else {
+			executor.execute(runnableIncoming);
+		}
+	}
 
-		timeLongArrayList = new ArrayList<Long>();
+	/**
+	 * Runs a task after a delay on the clock, through the executor like the window completion. 
+	 * 
+	 * @param  runnableIncoming  The task to run. 
+	 * @param  delayLongIncoming  The delay in milliseconds. 
+	 * 
+	 * @return  The pending task, cancel() removes it unless it has been handed to the executor already. 
+	 * 
+	 */
+
+	public Future<?> schedule(final Runnable runnableIncoming, long delayLongIncoming) {
+		return clock.schedule(new Runnable() {
+			public void run() {
+				executor.execute(runnableIncoming);
+			}
+		}, delayLongIncoming);
 	}
 
 	public float getProximityValue() {
@@ -251,73 +569,173 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 		return lightValue;
 	}
 
-	public int getCellID() {
-		TelephonyManager telephonyManager = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
+	/**
+	 * From SensorSourceListener. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SensorSourceListener 
+	 * 
+	 */
+
+	@Override
+	public void accelerometerChanged(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming) {
+		if (isIdleBoolean) {
+			endIdleIfDue(timeLongIncoming);
+		}
+		else if (isDataDrivenBoolean && (windowSampleCountInteger == 0)) {
+			closeWindowIfDue(timeLongIncoming);
+		}
 
-		GsmCellLocation gsmCellLocation = (GsmCellLocation)telephonyManager.getCellLocation();
+		accelerometerRingBuffer.add(xFloatIncoming, yFloatIncoming, zFloatIncoming, timeLongIncoming);
+
+		if (isDataDrivenBoolean && (windowSampleCountInteger > 0) && !isIdleBoolean) {
+			closeWindowIfFull();
+		}
 
-		return gsmCellLocation.getCid();
+		double motionWakeThresholdDouble = this.motionWakeThresholdDouble;
+
+		if (motionWakeThresholdDouble > 0.0) {
+			double magnitudeDouble = Math.sqrt(xFloatIncoming * xFloatIncoming + yFloatIncoming * yFloatIncoming + zFloatIncoming * zFloatIncoming);
+
+			if (Math.abs(magnitudeDouble - GRAVITY_DOUBLE) > motionWakeThresholdDouble) {
+				this.motionWakeThresholdDouble = 0.0; // Reported once. 
+
+				if (isIdleBoolean) {
+					endIdle();
+				}
+
+				informListenersMotionDetected(timeLongIncoming);
+			}
+		}
+
+		DataCollectorSampleObserver[] dataCollectorSampleObserversArray = this.dataCollectorSampleObserversArray;
+
+		for (int i = 0; i < dataCollectorSampleObserversArray.length; i++) {
+			DataCollectorSampleObserver dataCollectorSampleObserver = dataCollectorSampleObserversArray[i];
+
+			if (dataCollectorSampleObserver.sampleCollectedNotify(xFloatIncoming, yFloatIncoming, zFloatIncoming, timeLongIncoming)) {
+				if (dataCollectorSampleObserver.getIdentifier() == VTTPhysicalActivityLibrary.DETECTION_FALL) {
+					informListenersFallDetected();
+				}
+
+				informListenersDetectionChanged(dataCollectorSampleObserver.getIdentifier(), dataCollectorSampleObserver.getStreamingValue());
+			}
+		}
 	}
 
-	// Ignore.
+	/**
+	 * Closes the current window at the given sequence number and completes it through the executor. 
+	 * <p>
+	 * A snapshot is closed only once, later samples until the completion are ignored. 
+	 * 
+	 * @param  endSequenceLongIncoming  Sequence number of the last sample of the window (exclusive). 
+	 * 
+	 */
 
-	@Override
-	public void onAccuracyChanged(Sensor sensorIncoming, int accuracyIntegerIncoming) {}
+	private void closeWindow(long endSequenceLongIncoming) {
+		if (!isStreaming() && (closedWindowEndSequenceLong >= 0)) {
+			return;
+		}
 
-	// Ignore.
+		closedWindowEndSequenceLong = endSequenceLongIncoming;
 
-	@Override
-	public void onLocationChanged(Location locationIncoming) {}
+		executor.execute(windowCompletedRunnable);
+	}
 
-	// Ignore.
+	/**
+	 * Closes the current window, if it has the configured sample count. 
+	 * <p>
+	 * In streaming mode the window is closed every hop sample count and covers the newest window sample count. The first 
+	 * window is closed only when it is full, so no window reaches back before the start of the recording. 
+	 * 
+	 */
 
-	@Override
-	public void onProviderDisabled(String providerStringIncoming) {}
+	private void closeWindowIfFull() {
+		if (!isRecording()) {
+			return;
+		}
 
-	// Ignore.
+		long writeCountLong = accelerometerRingBuffer.getWriteCount();
 
-	@Override
-	public void onProviderEnabled(String providerStringIncoming) {}
+		if (writeCountLong >= windowDueSequenceLong) {
+			windowDueSequenceLong += isStreaming() ? hopSampleCountInteger : windowSampleCountInteger;
 
-	@Override
-	public void onSensorChanged(SensorEvent sensorEventIncoming) {
-		int typeInteger = sensorEventIncoming.sensor.getType();
+			closeWindow(writeCountLong);
+		}
+	}
 
-		if (Sensor.TYPE_ACCELEROMETER == typeInteger) {
-			float[] valuesFloatArray = sensorEventIncoming.values;
+	/**
+	 * Closes the current window, if the incoming sample timestamp is past the window duration. 
+	 * <p>
+	 * Used instead of the timer, if the windows are closed by the sample timestamps. The incoming sample is not yet 
+	 * in the ring buffer, so it belongs to the next window. 
+	 * 
+	 * @param  timeLongIncoming  The incoming sample timestamp in microseconds. 
+	 * 
+	 */
 
-			float xFloat = valuesFloatArray[0];
-			float yFloat = valuesFloatArray[1];
-			float zFloat = valuesFloatArray[2];
+	private void closeWindowIfDue(long timeLongIncoming) {
+		if (!isRecording()) {
+			return;
+		}
 
-			long timeStampLong = sensorEventIncoming.timestamp / 1000;
+		long intervalLong = (isStreaming() ? hopLengthLong : ACCELEROMETER_TIMER_TIMER_DELAY) * 1000;
 
-			AccelerometerReadings accelerometerReadings = new AccelerometerReadings();
-			accelerometerReadings.setX(xFloat);
-			accelerometerReadings.setY(yFloat);
-			accelerometerReadings.setZ(zFloat);
+		if (windowDueTimeLong < 0) {
+			windowDueTimeLong = timeLongIncoming + intervalLong;
+		}
+		else if (timeLongIncoming >= windowDueTimeLong) {
+			windowDueTimeLong = isStreaming() ? windowDueTimeLong + intervalLong : -1;
 
-			accelerometerReadingsArrayList.add(accelerometerReadings);
+			closeWindow(accelerometerRingBuffer.getWriteCount());
+		}
+	}
 
-			xFloatArrayList.add(xFloat);
-			yFloatArrayList.add(yFloat);
-			zFloatArrayList.add(zFloat);
+	/**
+	 * Ends the idle period and starts recording the snapshot. 
+	 * 
+	 */
+
+	private void endIdle() {
+		isIdleBoolean = false;
+		idleEndTimeLong = -1;
 
-			timeLongArrayList.add(timeStampLong);
+		resetWindow();
 
+		if (!isDataDrivenBoolean) {
+			executor.execute(startWindowTimerRunnable);
 		}
-		else if (Sensor.TYPE_LIGHT == typeInteger) {
-			lightValue = sensorEventIncoming.values[0];
+	}
+
+	/**
+	 * Ends the idle period, if the incoming sample timestamp is past the idle length. 
+	 * 
+	 * @param  timeLongIncoming  The incoming sample timestamp in microseconds. 
+	 * 
+	 */
+
+	private void endIdleIfDue(long timeLongIncoming) {
+		if (idleEndTimeLong < 0) {
+			idleEndTimeLong = timeLongIncoming + idleLengthLong;
 		}
-		else if (Sensor.TYPE_PROXIMITY == typeInteger) {
-			proximityValue = sensorEventIncoming.values[0];
+		else if (timeLongIncoming >= idleEndTimeLong) {
+			endIdle();
 		}
 	}
 
-	// Ignore.
+	@Override
+	public void lightChanged(float lightFloatIncoming) {
+		lightValue = lightFloatIncoming;
+	}
+
+	@Override
+	public void proximityChanged(float proximityFloatIncoming) {
+		proximityValue = proximityFloatIncoming;
+	}
 
 	@Override
-	public void onStatusChanged(String providerStringIncoming, int statusIntegerIncoming, Bundle bundleIncoming) {}
+	public void sensorFailed(int errorCodeIntegerIncoming) {
+		informListenersDataCollectionFailed(errorCodeIntegerIncoming);
+	}
 
 	/**
 	 * Record snapshot data from all the sensors. 
@@ -325,59 +743,198 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 	 */
 
 	public void recordSnapshot() {
-		if (!isRecording()) {
-			writeLock.lock();
+		recordSnapshot(0);
+	}
 
+	/**
+	 * Record snapshot data from all the sensors after an idle period. 
+	 * <p>
+	 * The sensors are started right away, but the samples of the idle period are not part of the snapshot. 
+	 * 
+	 * @param  idleLongIncoming  The idle period in milliseconds, 0 to start recording right away. 
+	 * 
+	 */
+
+	public void recordSnapshot(long idleLongIncoming) {
+		if (!isRecording()) {
+			isStreamingBoolean = false;
 			isRecordingBoolean = true;
 
-			writeLock.unlock();
+			applyWindowClosure(ACCELEROMETER_TIMER_TIMER_DELAY, ACCELEROMETER_TIMER_TIMER_DELAY);
 
-			collectedDataMap.clear();
+			prepareRingBuffer(ACCELEROMETER_TIMER_TIMER_DELAY);
 
-			xFloatArrayList.clear();
-			yFloatArrayList.clear();
-			zFloatArrayList.clear();
+			resetWindow();
 
-			timeLongArrayList.clear();
+			idleLengthLong = idleLongIncoming * 1000;
+			idleEndTimeLong = -1;
+			isIdleBoolean = idleLongIncoming > 0;
 
-			// Enable accelerometer data:
-			collectedDataMap.put(DataSourceID.ID_ACCELEROMETER, false);
+			registerSensors();
 
-			accelerometerReadingsArrayList.clear();
+			if (!isIdleBoolean) {
+				startTimer(ACCELEROMETER_TIMER_TIMER_DELAY);
+			}
+		}
+	}
 
-			sensorManager = (SensorManager)context.getSystemService(Context.SENSOR_SERVICE);
+	/**
+	 * Sets how the windows are closed. 
+	 * <p>
+	 * Takes effect on the next recordSnapshot() or startStreaming(). A sensor source that does not deliver the samples in 
+	 * real time is always closed by the samples, by the timestamps unless WINDOW_CLOSURE_SAMPLE_COUNT is set. 
+	 * 
+	 * @param  windowClosureIntegerIncoming  WINDOW_CLOSURE_TIMER, WINDOW_CLOSURE_TIMESTAMP or WINDOW_CLOSURE_SAMPLE_COUNT. 
+	 * @param  sampleCountIntegerIncoming  The samples per window for WINDOW_CLOSURE_SAMPLE_COUNT, otherwise ignored. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary 
+	 * 
+	 */
 
-			Sensor accelerometerSensor = sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+	public void setWindowClosure(int windowClosureIntegerIncoming, int sampleCountIntegerIncoming) {
+		windowClosureInteger = windowClosureIntegerIncoming;
+		windowClosureSampleCountInteger = sampleCountIntegerIncoming;
+	}
 
-			boolean successBoolean = sensorManager.registerListener(this, accelerometerSensor, SensorManager.SENSOR_DELAY_FASTEST);
+	/**
+	 * Applies the window closure mode to the recording that is about to start. 
+	 * <p>
+	 * With the sample count, the hop sample count is scaled from the window sample count by the hop and window lengths. 
+	 * 
+	 * @param  windowLengthLongIncoming  The window length in milliseconds. 
+	 * @param  hopLengthLongIncoming  The interval between two windows in milliseconds. 
+	 * 
+	 */
 
-			if (!successBoolean) {
-				informListenersDataCollectionFailed(VTTPhysicalActivityLibrary.ERROR_NO_ACCELEROMETER_DATA_AVAILABLE);
-			}
+	private void applyWindowClosure(long windowLengthLongIncoming, long hopLengthLongIncoming) {
+		isDataDrivenBoolean = !sensorSource.isRealTime() || (windowClosureInteger != VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMER);
 
-			// Enable proximity data:
+		if (windowClosureInteger == VTTPhysicalActivityLibrary.WINDOW_CLOSURE_SAMPLE_COUNT) {
+			windowSampleCountInteger = windowClosureSampleCountInteger;
+			hopSampleCountInteger = (int)Math.max(1, Math.round((double)windowClosureSampleCountInteger * hopLengthLongIncoming / windowLengthLongIncoming));
+		}
+		else {
+			windowSampleCountInteger = 0;
+			hopSampleCountInteger = 0;
+		}
+	}
 
-			Sensor proximitySensor = sensorManager.getDefaultSensor(Sensor.TYPE_PROXIMITY);
+	/**
+	 * Starts a new window at the next sample. 
+	 * 
+	 */
 
-			successBoolean = sensorManager.registerListener(this, proximitySensor, SensorManager.SENSOR_DELAY_NORMAL);
+	private void resetWindow() {
+		windowStartSequenceLong = accelerometerRingBuffer.getWriteCount();
+		windowEndSequenceLong = windowStartSequenceLong;
+		windowDueTimeLong = -1;
+		windowDueSequenceLong = windowStartSequenceLong + windowSampleCountInteger; // Also when streaming, the hops start from a full window. 
+		closedWindowEndSequenceLong = -1;
+	}
 
-			if (!successBoolean) {
-				informListenersDataCollectionFailed(VTTPhysicalActivityLibrary.ERROR_NO_PROXIMITY_SENSOR_AVAILABLE);
-			}
+	/**
+	 * Sets the delay between two accelerometer samples. 
+	 * 
+	 * @param  delayIntegerIncoming  The delay in microseconds, 0 for the fastest rate. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+	 * 
+	 */
 
-			// Enable light data:
+	public void setAccelerometerDelay(int delayIntegerIncoming) {
+		sensorSource.setAccelerometerDelay(delayIntegerIncoming);
+	}
 
-			Sensor lightSensor = sensorManager.getDefaultSensor(Sensor.TYPE_LIGHT);
+	/**
+	 * Sets the motion wake threshold. 
+	 * <p>
+	 * When the acceleration magnitude deviates from gravity more than the threshold, an idle period ends and the listeners 
+	 * are informed with motionDetected(). The threshold is then cleared, so the motion is reported once. 
+	 * 
+	 * @param  thresholdDoubleIncoming  The threshold in m/s^2, 0 to disable. 
+	 * 
+	 */
 
-			successBoolean = sensorManager.registerListener(this, lightSensor, SensorManager.SENSOR_DELAY_NORMAL);
+	public void setMotionWakeThreshold(double thresholdDoubleIncoming) {
+		motionWakeThresholdDouble = thresholdDoubleIncoming;
+	}
 
-			if (!successBoolean) {
-				informListenersDataCollectionFailed(VTTPhysicalActivityLibrary.ERROR_NO_LIGHT_SENSOR_AVAILABLE);
-			}
+	/**
+	 * Allocates the ring buffer, if there is none or it is too small. 
+	 * 
+	 * @param  windowMillisLongIncoming  The longest window the ring buffer must hold in milliseconds. 
+	 * 
+	 */
 
-			myTimer = new MyTimer();
-			myTimer.setListener(this);
-			myTimer.start(ACCELEROMETER_TIMER_TIMER_DELAY);
+	private void prepareRingBuffer(long windowMillisLongIncoming) {
+		int capacityInteger = AccelerometerRingBuffer.capacityFor(sensorSource.getAccelerometerMinDelay(), windowMillisLongIncoming);
+
+		capacityInteger = Math.max(capacityInteger, windowSampleCountInteger * 2);
+
+		if (accelerometerRingBuffer == null || accelerometerRingBuffer.getCapacity() < capacityInteger) {
+			accelerometerRingBuffer = new AccelerometerRingBuffer(capacityInteger);
+		}
+	}
+
+	/**
+	 * Starts the accelerometer, proximity and light data from the sensor source. 
+	 * 
+	 */
+
+	private void registerSensors() {
+		collectedDataMap.clear();
+
+		// Enable accelerometer data:
+		collectedDataMap.put(DataSourceID.ID_ACCELEROMETER, false);
+
+		sensorSource.start(this);
+	}
+
+	/**
+	 * Starts the window timer, if the windows are not closed by the samples. 
+	 * 
+	 * @param  intervalLongIncoming  The timer interval in milliseconds. 
+	 * 
+	 */
+
+	private void startTimer(long intervalLongIncoming) {
+		if (!isDataDrivenBoolean) {
+			myTimer.start(intervalLongIncoming);
+		}
+		else {
+			myTimer.cancel();
+		}
+	}
+
+	/**
+	 * Starts recording in streaming mode. 
+	 * <p>
+	 * The sensors are registered once and stay registered until stopRecording() is called. 
+	 * Every hop the listeners are informed about a window that covers the newest samples within the window length, 
+	 * so consecutive windows overlap and no samples are lost between them. 
+	 * 
+	 * @param  windowLengthLongIncoming  The window length in milliseconds. 
+	 * @param  hopLengthLongIncoming  The interval between two windows in milliseconds. 
+	 * 
+	 */
+
+	public void startStreaming(long windowLengthLongIncoming, long hopLengthLongIncoming) {
+		if (!isRecording()) {
+			isStreamingBoolean = true;
+			isRecordingBoolean = true;
+
+			windowLengthLong = windowLengthLongIncoming;
+			hopLengthLong = hopLengthLongIncoming;
+
+			applyWindowClosure(windowLengthLong, hopLengthLong);
+
+			prepareRingBuffer(windowLengthLong);
+
+			resetWindow();
+
+			registerSensors();
+
+			startTimer(hopLengthLong);
 		}
 	}
 
@@ -388,15 +945,16 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 
 	public void stopRecording() {
 		if (isRecording()) {
-			writeLock.lock();
-
 			isRecordingBoolean = false;
-
-			writeLock.unlock();
+			isIdleBoolean = false;
 
 			myTimer.cancel();
 
-			sensorManager.unregisterListener(this);
+			sensorSource.stop();
+
+			if (!isStreamingBoolean) {
+				windowEndSequenceLong = (closedWindowEndSequenceLong >= 0) ? closedWindowEndSequenceLong : accelerometerRingBuffer.getWriteCount();
+			}
 		}
 	}
 
@@ -409,7 +967,7 @@ public final class DataCollector implements LocationListener, MyTimerListener, S
 
 	@Override
 	public void timeout() {
-		handler.sendEmptyMessage(0);
+		executor.execute(windowCompletedRunnable);
 	}
 
 }
\ No newline at end of file
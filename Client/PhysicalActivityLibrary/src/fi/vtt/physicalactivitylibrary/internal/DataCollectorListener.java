@@ -49,6 +49,43 @@ public interface DataCollectorListener {
 
 	public abstract void dataCollectionCompleted();
 
+	/**
+	 * Method to implemented by InternalClass. 
+	 * <p> 
+	 * Called between windows, when a streaming detection changes its value. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * @param  valueDoubleIncoming  The new detection value. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+	 * 
+	 */
+
+	public abstract void detectionChanged(int typeIntegerIncoming, double valueDoubleIncoming);
+
+	/**
+	 * Method to implemented by InternalClass. 
+	 * <p> 
+	 * Called on the sensor thread as soon as the fall trigger detects a fall, before detectionChanged() and without 
+	 * waiting for the executor. Must not block. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.FallTrigger 
+	 * 
+	 */
+
+	public abstract void fallDetected();
+
+	/**
+	 * Method to implemented by InternalClass. 
+	 * <p> 
+	 * Called when the motion wake threshold is exceeded, see DataCollector.setMotionWakeThreshold(). 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the sample in microseconds. 
+	 * 
+	 */
+
+	public abstract void motionDetected(long timeLongIncoming);
+
 	/**
 	 * Method to implemented by InternalClass. 
 	 * <p> 
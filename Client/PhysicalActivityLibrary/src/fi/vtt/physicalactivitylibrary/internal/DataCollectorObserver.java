@@ -39,6 +39,7 @@ package fi.vtt.physicalactivitylibrary.internal;
  * @see  fi.vtt.physicalactivitylibrary.internal.OrientationDetection 
  * @see  fi.vtt.physicalactivitylibrary.internal.ProximityDetection 
  * @see  fi.vtt.physicalactivitylibrary.internal.RunAndWalkDetection 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RunAndWalkObserver 
  * @see  fi.vtt.physicalactivitylibrary.internal.RunDetection 
  * @see  fi.vtt.physicalactivitylibrary.internal.StabilityDetection 
  * @see  fi.vtt.physicalactivitylibrary.internal.WalkDetection 
@@ -74,6 +75,24 @@ public interface DataCollectorObserver {
 
 	public abstract String getTag();
 
+	/**
+	 * Method to be implemented in all detection classes. 
+	 * 
+	 * @return  The lowest sampling rate this detection needs in Hz, 0 for all the samples. The window is decimated to it. 
+	 * 
+	 */
+
+	public abstract int getMinimumRate();
+
+	/**
+	 * Method to be implemented in all detection classes. 
+	 * 
+	 * @return  The length of the newest part of the window this detection needs in milliseconds, 0 for the whole window. 
+	 * 
+	 */
+
+	public abstract long getWindowDuration();
+
 	/**
 	 * Virtual callback to be implemented in all detection classes. 
 	 * 
@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Interface for detections that are updated with every accelerometer sample. 
+ * <p>
+ * The samples are delivered on the sensor thread, so implementations must be fast and must not allocate or block. 
+ * Window results are still delivered through dataCollectedNotify(). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
+ * @see  fi.vtt.physicalactivitylibrary.internal.StabilityDetection 
+ * 
+ */
+
+public interface DataCollectorSampleObserver extends DataCollectorObserver {
+
+	/**
+	 * Callback to be implemented in streaming detection classes, called on the sensor thread. 
+	 * 
+	 * @param  xFloatIncoming  Acceleration along the x axis. 
+	 * @param  yFloatIncoming  Acceleration along the y axis. 
+	 * @param  zFloatIncoming  Acceleration along the z axis. 
+	 * @param  timeLongIncoming  The sample timestamp in microseconds. 
+	 * 
+	 * @return  True, if the detection value changed and should be reported immediately, otherwise false. 
+	 * 
+	 */
+
+	public abstract boolean sampleCollectedNotify(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming);
+
+	/**
+	 * Method to be implemented in streaming detection classes, called on the sensor thread. 
+	 * 
+	 * @return  The value reported by the last sampleCollectedNotify() that returned true. It may differ from getValue(), 
+	 *          which is the result of the window. 
+	 * 
+	 */
+
+	public abstract double getStreamingValue();
+
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import java.util.ArrayList;
+
+/**
+ * The set of requested detections and the detections that are actually run for them. 
+ * <p>
+ * The requested detection types are kept in a bitmask, so enabling a detection twice has no effect. compile() turns the 
+ * requests into the list of observers to run: overlapping requests share one observer, e.g. run and walk (requested 
+ * separately or as DETECTION_RUN_AND_WALK) are computed by one RunAndWalkDetection pass, which puts both values into the map. 
+ * <p>
+ * Observers are reused between compilations when their detection and implementation do not change, so their state is kept. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * 
+ */
+
+final class DetectionPlan {
+
+	// Detection types in the order they are run, one bit per type in the masks. 
+
+	private static final int[] DETECTION_TYPES_INTEGER_ARRAY = {
+		VTTPhysicalActivityLibrary.DETECTION_WALK,
+		VTTPhysicalActivityLibrary.DETECTION_RUN,
+		VTTPhysicalActivityLibrary.DETECTION_FALL,
+		VTTPhysicalActivityLibrary.DETECTION_STABILITY,
+		VTTPhysicalActivityLibrary.DETECTION_ORIENTATION,
+		VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK,
+		VTTPhysicalActivityLibrary.DETECTION_PROXIMITY,
+		VTTPhysicalActivityLibrary.DETECTION_LIGHT
+	};
+
+	private static final int SUPPORTED_MASK_INTEGER = maskOf(DETECTION_TYPES_INTEGER_ARRAY);
+
+	private static final int IMPLEMENTATION_MASK_INTEGER = bit(VTTPhysicalActivityLibrary.DETECTION_FALL) | bit(VTTPhysicalActivityLibrary.DETECTION_RUN) | bit(VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK) | bit(VTTPhysicalActivityLibrary.DETECTION_WALK);
+
+	private int requestedMaskInteger = 0;
+
+	// Detection types for which the Java implementation has been selected. 
+
+	private int javaMaskInteger = 0;
+
+	static int bit(int typeIntegerIncoming) {
+		return 1 << typeIntegerIncoming;
+	}
+
+	private static int maskOf(int[] typesIntegerArrayIncoming) {
+		int maskInteger = 0;
+
+		for (int i = 0; i < typesIntegerArrayIncoming.length; i++) {
+			maskInteger |= bit(typesIntegerArrayIncoming[i]);
+		}
+
+		return maskInteger;
+	}
+
+	/**
+	 * Returns the observers to run for the requested detections. 
+	 * 
+	 * @param  currentObserversArrayListIncoming  The observers of the previous compilation, reused where possible. 
+	 * 
+	 * @return  The observers in the order they are run. 
+	 */
+
+	ArrayList<DataCollectorObserver> compile(ArrayList<DataCollectorObserver> currentObserversArrayListIncoming) {
+		int runMaskInteger = requestedMaskInteger;
+
+		int runAndWalkBitInteger = bit(VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK);
+		int runBitInteger = bit(VTTPhysicalActivityLibrary.DETECTION_RUN);
+		int walkBitInteger = bit(VTTPhysicalActivityLibrary.DETECTION_WALK);
+
+		if ((runMaskInteger & runAndWalkBitInteger) != 0) {
+			// Computes both run and walk: 
+			runMaskInteger &= ~(runBitInteger | walkBitInteger);
+		}
+		else if (((runMaskInteger & runBitInteger) != 0) && ((runMaskInteger & walkBitInteger) != 0) && (isJavaImplementation(VTTPhysicalActivityLibrary.DETECTION_RUN) == isJavaImplementation(VTTPhysicalActivityLibrary.DETECTION_WALK))) {
+			// One combined pass instead of two: 
+			runMaskInteger &= ~(runBitInteger | walkBitInteger);
+			runMaskInteger |= runAndWalkBitInteger;
+		}
+
+		ArrayList<DataCollectorObserver> observersArrayList = new ArrayList<DataCollectorObserver>(DETECTION_TYPES_INTEGER_ARRAY.length);
+
+		for (int i = 0; i < DETECTION_TYPES_INTEGER_ARRAY.length; i++) {
+			int typeInteger = DETECTION_TYPES_INTEGER_ARRAY[i];
+
+			if ((runMaskInteger & bit(typeInteger)) == 0) {
+				continue;
+			}
+
+			boolean javaBoolean = isJavaImplementation(typeInteger);
+
+			if ((typeInteger == VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK) && ((requestedMaskInteger & runAndWalkBitInteger) == 0)) {
+				javaBoolean = isJavaImplementation(VTTPhysicalActivityLibrary.DETECTION_RUN); // Merged from run and walk. 
+			}
+
+			DataCollectorObserver dataCollectorObserver = findObserver(currentObserversArrayListIncoming, typeInteger, javaBoolean);
+
+			if (dataCollectorObserver == null) {
+				dataCollectorObserver = createObserver(typeInteger, javaBoolean);
+			}
+
+			observersArrayList.add(dataCollectorObserver);
+		}
+
+		return observersArrayList;
+	}
+
+	/**
+	 * Creates the observer for a detection type. 
+	 * 
+	 */
+
+	private static DataCollectorObserver createObserver(int typeIntegerIncoming, boolean javaBooleanIncoming) {
+		switch (typeIntegerIncoming) {
+
+			case VTTPhysicalActivityLibrary.DETECTION_FALL:
+				return javaBooleanIncoming ? new JavaFallDetection() : new FallDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_LIGHT:
+				return new LightDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_ORIENTATION:
+				return new OrientationDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_PROXIMITY:
+				return new ProximityDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_RUN:
+				return javaBooleanIncoming ? new JavaRunDetection() : new RunDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK:
+				return javaBooleanIncoming ? new JavaRunAndWalkDetection() : new RunAndWalkDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_STABILITY:
+				return new StabilityDetection();
+
+			case VTTPhysicalActivityLibrary.DETECTION_WALK:
+				return javaBooleanIncoming ? new JavaWalkDetection() : new WalkDetection();
+
+			default:
+				return null;
+		}
+	}
+
+	/**
+	 * Disables a detection. 
+	 * 
+	 * @return  True, if the detection was enabled, otherwise false. 
+	 */
+
+	boolean disable(int typeIntegerIncoming) {
+		if (!isEnabled(typeIntegerIncoming)) {
+			return false;
+		}
+
+		requestedMaskInteger &= ~bit(typeIntegerIncoming);
+
+		return true;
+	}
+
+	/**
+	 * Enables a detection, enabling an already enabled detection has no effect. 
+	 * 
+	 * @return  True, if the detection type is supported, otherwise false. 
+	 */
+
+	boolean enable(int typeIntegerIncoming) {
+		if (!isSupported(typeIntegerIncoming)) {
+			return false;
+		}
+
+		requestedMaskInteger |= bit(typeIntegerIncoming);
+
+		return true;
+	}
+
+	private static DataCollectorObserver findObserver(ArrayList<DataCollectorObserver> observersArrayListIncoming, int typeIntegerIncoming, boolean javaBooleanIncoming) {
+		for (int i = 0; i < observersArrayListIncoming.size(); i++) {
+			DataCollectorObserver dataCollectorObserver = observersArrayListIncoming.get(i);
+
+			if ((dataCollectorObserver.getIdentifier() == typeIntegerIncoming) && (isJavaObserver(dataCollectorObserver) == javaBooleanIncoming)) {
+				return dataCollectorObserver;
+			}
+		}
+
+		return null;
+	}
+
+	int getRequestedMask() {
+		return requestedMaskInteger;
+	}
+
+	boolean isEmpty() {
+		return requestedMaskInteger == 0;
+	}
+
+	boolean isEnabled(int typeIntegerIncoming) {
+		return isSupported(typeIntegerIncoming) && ((requestedMaskInteger & bit(typeIntegerIncoming)) != 0);
+	}
+
+	/**
+	 * Returns true if the Java implementation is used for a detection type: if it has been selected or if the native library is missing. 
+	 * 
+	 */
+
+	boolean isJavaImplementation(int typeIntegerIncoming) {
+		return ((javaMaskInteger & bit(typeIntegerIncoming)) != 0) || !NativeLibrary.isAvailable();
+	}
+
+	private static boolean isJavaObserver(DataCollectorObserver dataCollectorObserverIncoming) {
+		return (dataCollectorObserverIncoming instanceof JavaFallDetection) || (dataCollectorObserverIncoming instanceof JavaRunAndWalkDetection) || (dataCollectorObserverIncoming instanceof JavaRunDetection) || (dataCollectorObserverIncoming instanceof JavaWalkDetection);
+	}
+
+	static boolean isSupported(int typeIntegerIncoming) {
+		return (typeIntegerIncoming >= 0) && (typeIntegerIncoming < 32) && ((SUPPORTED_MASK_INTEGER & bit(typeIntegerIncoming)) != 0);
+	}
+
+	/**
+	 * Selects the native or the Java implementation of a detection. 
+	 * 
+	 * @return  True, if the detection has both implementations, otherwise false. 
+	 */
+
+	boolean setJavaImplementation(int typeIntegerIncoming, boolean javaBooleanIncoming) {
+		if (!isSupported(typeIntegerIncoming) || ((IMPLEMENTATION_MASK_INTEGER & bit(typeIntegerIncoming)) == 0)) {
+			return false;
+		}
+
+		if (javaBooleanIncoming) {
+			javaMaskInteger |= bit(typeIntegerIncoming);
+		}
+		else {
+			javaMaskInteger &= ~bit(typeIntegerIncoming);
+		}
+
+		return true;
+	}
+
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs one detection on a window and measures how long it takes, implements Callable. 
+ * <p>
+ * Created once per enabled detection and reused for every window. A task that missed the deadline may still be running 
+ * when the next window completes, in which case isRunning() returns true and the detection is left out of that window. 
+ * <p>
+ * A parallel run holds its RawData from holdRawData() until the run ends, or until abandonRawData() if it never starts, 
+ * so the buffer is not reused for a later window while the detection may still read it. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * 
+ */
+
+final class DetectionTask implements Callable<Void> {
+
+	private final DataCollectorObserver dataCollectorObserver;
+
+	private final AtomicBoolean runningAtomicBoolean = new AtomicBoolean(false);
+
+	private RawData rawData;
+
+	private static final int HOLD_NONE_INTEGER = 0;
+	private static final int HOLD_HELD_INTEGER = 1;
+	private static final int HOLD_ABANDONED_INTEGER = 2;
+
+	// Who releases the held RawData: the run, or abandonRawData() if the run did not start before the deadline. 
+
+	private final AtomicInteger holdStateAtomicInteger = new AtomicInteger(HOLD_NONE_INTEGER);
+
+	// Duration of the last completed run in nanoseconds, -1 before the first run. 
+
+	private volatile long lastRunTimeLong = -1;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  dataCollectorObserverIncoming  The detection to run. 
+	 * 
+	 */
+
+	DetectionTask(DataCollectorObserver dataCollectorObserverIncoming) {
+		dataCollectorObserver = dataCollectorObserverIncoming;
+	}
+
+	/**
+	 * Releases the held RawData, if the run has not started, and keeps the run from starting. 
+	 * <p>
+	 * Called for a task cancelled at the deadline. A run that has already started releases the RawData itself. 
+	 * 
+	 */
+
+	void abandonRawData() {
+		if (holdStateAtomicInteger.compareAndSet(HOLD_HELD_INTEGER, HOLD_ABANDONED_INTEGER)) {
+			rawData.release();
+		}
+	}
+
+	@Override
+	public Void call() {
+		runningAtomicBoolean.set(true);
+
+		RawData rawData = this.rawData;
+
+		boolean holdingBoolean = false;
+
+		try {
+			if (holdStateAtomicInteger.get() != HOLD_NONE_INTEGER) {
+				if (!holdStateAtomicInteger.compareAndSet(HOLD_HELD_INTEGER, HOLD_NONE_INTEGER)) {
+					return null; // Abandoned, the RawData may have been reused already. 
+				}
+
+				holdingBoolean = true;
+			}
+
+			long startTimeLong = System.nanoTime();
+
+			dataCollectorObserver.dataCollectedNotify(rawData);
+
+			lastRunTimeLong = System.nanoTime() - startTimeLong;
+		}
+		finally {
+			runningAtomicBoolean.set(false);
+
+			if (holdingBoolean) {
+				rawData.release();
+			}
+		}
+
+		return null;
+	}
+
+	DataCollectorObserver getDataCollectorObserver() {
+		return dataCollectorObserver;
+	}
+
+	long getLastRunTime() {
+		return lastRunTimeLong;
+	}
+
+	/**
+	 * Holds the RawData for a parallel run, released when the run ends or by abandonRawData(). 
+	 * 
+	 */
+
+	void holdRawData() {
+		rawData.hold();
+
+		holdStateAtomicInteger.set(HOLD_HELD_INTEGER);
+	}
+
+	boolean isRunning() {
+		return runningAtomicBoolean.get();
+	}
+
+	void setRawData(RawData rawDataIncoming) {
+		rawData = rawDataIncoming;
+
+		holdStateAtomicInteger.set(HOLD_NONE_INTEGER);
+	}
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Per-sample fall trigger, implements DataCollectorSampleObserver. 
+ * <p>
+ * Watches the acceleration magnitude for a free fall followed by an impact, with the thresholds of JavaFallDetection. 
+ * On an impact the preceding samples are evaluated: repeated impacts before the free fall mean running or jumping, 
+ * and the trigger is not fired. Otherwise sampleCollectedNotify() returns true and the fall is reported right away, 
+ * without waiting for the window to close. The window detection still runs as usual. 
+ * <p>
+ * The recent magnitudes are kept in a preallocated history, the trigger does not allocate. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaFallDetection 
+ *
+ */
+
+final class FallTrigger implements DataCollectorSampleObserver {
+
+	// Length of the history, a power of two, about 2.5 s at 200 Hz. 
+
+	private static final int HISTORY_LENGTH_INTEGER = 512;
+
+	// How far before the impact the samples are evaluated and the shortest time between two alerts, in microseconds. 
+
+	static final long EVALUATION_PERIOD_LONG = 2000000;
+	static final long REFRACTORY_PERIOD_LONG = 2000000;
+
+	// Number of earlier impacts in the evaluation period, from which the motion is considered periodic (not a fall). 
+
+	static final int PERIODIC_IMPACT_COUNT_INTEGER = 2;
+
+	private final float[] magnitudeFloatArray = new float[HISTORY_LENGTH_INTEGER];
+	private final long[] timeLongArray = new long[HISTORY_LENGTH_INTEGER];
+
+	private long sampleCountLong = 0;
+
+	// Start of the current free fall, -1 if not falling, and the start and end of the last long enough free fall, -1 if none. 
+
+	private long freeFallStartTimeLong = -1;
+
+	private long lastFreeFallStartTimeLong = -1;
+	private long lastFreeFallEndTimeLong = -1;
+
+	private volatile long impactTimeLong = -1;
+
+	private volatile double fallValueDouble = 0.0;
+
+	@Override
+	public double getValue() {
+		return fallValueDouble;
+	}
+
+	@Override
+	public double getStreamingValue() {
+		return fallValueDouble;
+	}
+
+	@Override
+	public int getIdentifier() {
+		return VTTPhysicalActivityLibrary.DETECTION_FALL;
+	}
+
+	@Override
+	public int getMinimumRate() {
+		return 0;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
+	/**
+	 * Returns the timestamp of the impact of the last detected fall in microseconds, or -1 if none. 
+	 * 
+	 */
+
+	long getImpactTime() {
+		return impactTimeLong;
+	}
+
+	@Override
+	public String getTag() {
+		return "FallTrigger";
+	}
+
+	@Override
+	public void dataCollectedNotify(RawData rawDataIncoming) {
+		// Works on the samples only. 
+	}
+
+	/**
+	 * From DataCollectorSampleObserver, called on the sensor thread. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+	 * 
+	 */
+
+	@Override
+	public boolean sampleCollectedNotify(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming) {
+		float magnitudeFloat = (float)Math.sqrt(xFloatIncoming * xFloatIncoming + yFloatIncoming * yFloatIncoming + zFloatIncoming * zFloatIncoming);
+
+		int indexInteger = (int)(sampleCountLong & (HISTORY_LENGTH_INTEGER - 1));
+
+		magnitudeFloatArray[indexInteger] = magnitudeFloat;
+		timeLongArray[indexInteger] = timeLongIncoming;
+
+		sampleCountLong++;
+
+		fallValueDouble = 0.0;
+
+		if (magnitudeFloat < JavaFallDetection.FREE_FALL_THRESHOLD_DOUBLE) {
+			if (freeFallStartTimeLong < 0) {
+				freeFallStartTimeLong = timeLongIncoming;
+			}
+
+			if (timeLongIncoming - freeFallStartTimeLong >= JavaFallDetection.FREE_FALL_DURATION_LONG) {
+				lastFreeFallStartTimeLong = freeFallStartTimeLong;
+				lastFreeFallEndTimeLong = timeLongIncoming;
+			}
+
+			return false;
+		}
+
+		freeFallStartTimeLong = -1;
+
+		if ((lastFreeFallEndTimeLong < 0) || (magnitudeFloat <= JavaFallDetection.IMPACT_THRESHOLD_DOUBLE)) {
+			return false;
+		}
+
+		long fallStartTimeLong = lastFreeFallStartTimeLong;
+
+		boolean inTimeBoolean = timeLongIncoming - lastFreeFallEndTimeLong <= JavaFallDetection.IMPACT_DELAY_LONG;
+
+		lastFreeFallEndTimeLong = -1;
+
+		if (!inTimeBoolean) {
+			return false; // Too late for the free fall. 
+		}
+
+		long lastImpactTimeLong = impactTimeLong;
+
+		if ((lastImpactTimeLong >= 0) && (timeLongIncoming >= lastImpactTimeLong) && (timeLongIncoming - lastImpactTimeLong < REFRACTORY_PERIOD_LONG)) {
+			return false; // Already reported. 
+		}
+
+		if (isPeriodic(fallStartTimeLong, timeLongIncoming)) {
+			return false;
+		}
+
+		impactTimeLong = timeLongIncoming;
+
+		fallValueDouble = 1.0;
+
+		return true;
+	}
+
+	/**
+	 * Counts the impacts in the history before the free fall. 
+	 * 
+	 * @param  fallStartTimeLongIncoming  The start of the free fall. 
+	 * @param  impactTimeLongIncoming  The time of the impact. 
+	 * 
+	 * @return  True, if the motion before the free fall was periodic (running, jumping). 
+	 */
+
+	private boolean isPeriodic(long fallStartTimeLongIncoming, long impactTimeLongIncoming) {
+		long oldestSequenceLong = Math.max(0, sampleCountLong - HISTORY_LENGTH_INTEGER);
+
+		int impactCountInteger = 0;
+
+		boolean aboveBoolean = false;
+
+		for (long sequenceLong = oldestSequenceLong; sequenceLong < sampleCountLong; sequenceLong++) {
+			int indexInteger = (int)(sequenceLong & (HISTORY_LENGTH_INTEGER - 1));
+
+			long timeLong = timeLongArray[indexInteger];
+
+			if ((timeLong < impactTimeLongIncoming - EVALUATION_PERIOD_LONG) || (timeLong > impactTimeLongIncoming)) {
+				continue; // Outside of the evaluation period (or from before a restart). 
+			}
+
+			if (timeLong >= fallStartTimeLongIncoming) {
+				break;
+			}
+
+			boolean impactBoolean = magnitudeFloatArray[indexInteger] > JavaFallDetection.IMPACT_THRESHOLD_DOUBLE;
+
+			if (impactBoolean && !aboveBoolean) {
+				impactCountInteger++;
+			}
+
+			aboveBoolean = impactBoolean;
+		}
+
+		return impactCountInteger >= PERIODIC_IMPACT_COUNT_INTEGER;
+	}
+
+}
@@ -30,20 +30,37 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import android.content.Context;
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryBatchCallback;
 import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryErrorCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryFallCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryPublisher;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback;
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import fi.vtt.physicalactivitylibrary.internal.utils.Clock;
+import fi.vtt.physicalactivitylibrary.internal.utils.DirectExecutor;
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 /**
- * InternalClass, runs the library internal functions, implements DataCollectorListener. 
+ * InternalClass, runs the library internal functions, implements DataCollectorListener and CallbackDispatcherListener. 
  * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcherListener 
  * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorListener 
  *
  */
 
-public class InternalClass implements DataCollectorListener {
+public class InternalClass implements DataCollectorListener, CallbackDispatcherListener {
 
 	private ArrayList<DataCollectorObserver> dataCollectorObserversArrayList;
 
@@ -51,6 +68,115 @@ public class InternalClass implements DataCollectorListener {
 
 	private PhysicalActivityLibraryCallback physicalActivityLibraryCallback = null;
 
+	private PhysicalActivityLibraryErrorCallback physicalActivityLibraryErrorCallback = null;
+
+	private volatile PhysicalActivityLibraryFallCallback physicalActivityLibraryFallCallback = null;
+
+	private PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallback = null;
+
+	// Reused for every window and for every immediately reported change. The Map callback is served from the window only. 
+
+	private final WritableActivitySnapshot windowActivitySnapshot = new WritableActivitySnapshot();
+	private final WritableActivitySnapshot changeActivitySnapshot = new WritableActivitySnapshot();
+
+	// Change-only delivery: the values last delivered, and the end of the window they were delivered for in microseconds. 
+
+	private boolean changeOnlyDeliveryBoolean = false;
+
+	private double numericDeltaDouble = 0.0;
+
+	private long heartbeatLong = 0; // Milliseconds, 0 if no heartbeat. 
+
+	private final WritableActivitySnapshot deliveredActivitySnapshot = new WritableActivitySnapshot();
+
+	private long deliveredWindowEndTimeLong = -1;
+
+	// Batched delivery: the results are collected into the batch, until it is full, the batch delay has passed (sample 
+	// timestamps in microseconds from the start of the first window, or on the clock from the arrival of the first result) 
+	// or a fall is detected. 
+
+	private volatile PhysicalActivityLibraryBatchCallback physicalActivityLibraryBatchCallback = null;
+
+	private WritableActivityBatch activityBatch = null;
+
+	private long batchDelayLong = 0; // Milliseconds, 0 to deliver full batches only. 
+
+	private long batchStartTimeLong = -1;
+
+	// Delivers the batch, if no result arrives before the batch delay. The generation tells a stale flush from a current one. 
+
+	private Future<?> batchFlushFuture = null;
+
+	private long batchGenerationLong = 0;
+
+	// The subscribers, that receive the results of their detections in addition to the callbacks above. 
+
+	private final ResultBus resultBus = new ResultBus();
+
+	// The subscriptions of the publishers created by createResultPublisher(). 
+
+	private final ResultPublisher resultPublisher = new ResultPublisher();
+
+	// Delivers the callbacks on its own thread, null if the callbacks are called on the recognition thread. 
+
+	private volatile CallbackDispatcher callbackDispatcher = null;
+
+	// Reports falls from the samples, registered while fall detection is enabled. 
+
+	private final FallTrigger fallTrigger = new FallTrigger();
+
+	private boolean fallTriggerRegisteredBoolean = false;
+
+	// Duty cycling of the accelerometer in snapshot mode, null if disabled. 
+
+	private AdaptiveDutyCycle adaptiveDutyCycle = null;
+
+	// Sliding window length and hop in milliseconds, hop 0 means snapshot mode. 
+
+	private long windowLengthLong = 0;
+	private long hopLengthLong = 0;
+
+	// The requested detections, compiled into dataCollectorObserversArrayList. 
+
+	private DetectionPlan detectionPlan = new DetectionPlan();
+
+	// One task per enabled detection, rebuilt when the detections change. 
+
+	private ArrayList<DetectionTask> detectionTasksArrayList = new ArrayList<DetectionTask>();
+
+	private boolean detectionTasksValidBoolean = false;
+
+	// Resamples the windows onto an even grid, null if disabled. 
+
+	private WindowResampler windowResampler = null;
+
+	// Cuts the part of the window each detection needs. 
+
+	private final RawDataSlicer rawDataSlicer = new RawDataSlicer();
+
+	// Parallel execution of the detections, the worker pool is created on the first window. 
+
+	private boolean parallelDetectionsBoolean = false;
+
+	private long detectionDeadlineLong = 0;
+
+	private ExecutorService detectionExecutorService = null;
+
+	private static final ThreadFactory DETECTION_THREAD_FACTORY = new ThreadFactory() {
+
+		private int threadNumberInteger = 0;
+
+		@Override
+		public synchronized Thread newThread(Runnable runnableIncoming) {
+			Thread thread = new Thread(runnableIncoming, "PhysicalActivityLibrary detection thread " + (++threadNumberInteger));
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	};
+
 	/**
 	 * Disable a specific detection method. 
 	 * 
@@ -60,18 +186,10 @@ public class InternalClass implements DataCollectorListener {
 	 */
 
 	public boolean disableDetectionMethod(int typeIntegerIncoming) {
-		boolean returnBoolean = false;
-
-		for (int i = 0; i < dataCollectorObserversArrayList.size(); i++) {
-			DataCollectorObserver dataCollectorObserver = dataCollectorObserversArrayList.get(i);
-
-			if (dataCollectorObserver.getIdentifier() == typeIntegerIncoming) {
-				dataCollectorObserversArrayList.remove(i);
+		boolean returnBoolean = detectionPlan.disable(typeIntegerIncoming);
 
-				returnBoolean = true;
-
-				break;
-			}
+		if (returnBoolean) {
+			compileDetectionPlan();
 		}
 
 		return returnBoolean;
@@ -79,6 +197,8 @@ public class InternalClass implements DataCollectorListener {
 
 	/**
 	 * Enable a specific detection method. 
+	 * <p>
+	 * Enabling an already enabled detection has no effect. 
 	 * 
 	 * @param  typeIntegerIncoming  The detection method type integer. 
 	 * 
@@ -86,71 +206,129 @@ public class InternalClass implements DataCollectorListener {
 	 */
 
 	public boolean enableDetectionMethod(int typeIntegerIncoming) {
-		boolean returnBoolean = false;
-
-		switch (typeIntegerIncoming) {
+		boolean returnBoolean = detectionPlan.enable(typeIntegerIncoming);
 
-			case VTTPhysicalActivityLibrary.DETECTION_FALL:
-				DataCollectorObserver fallDetection = new FallDetection();
+		if (returnBoolean) {
+			compileDetectionPlan();
+		}
 
-				returnBoolean = dataCollectorObserversArrayList.add(fallDetection);
+		return returnBoolean;
+	}
 
-				break;
+	/**
+	 * Sets the accelerometer rate and the motion wake threshold of the current power state. 
+	 * 
+	 */
 
-			case VTTPhysicalActivityLibrary.DETECTION_LIGHT:
-				DataCollectorObserver lightDetection = new LightDetection();
+	private void applyPowerState() {
+		if (adaptiveDutyCycle != null) {
+			dataCollector.setAccelerometerDelay(adaptiveDutyCycle.getAccelerometerDelay());
+			dataCollector.setMotionWakeThreshold(adaptiveDutyCycle.getMotionWakeThreshold());
+		}
+		else {
+			dataCollector.setAccelerometerDelay(0);
+			dataCollector.setMotionWakeThreshold(0.0);
+		}
+	}
 
-				returnBoolean = dataCollectorObserversArrayList.add(lightDetection);
+	/**
+	 * Compiles the requested detections into the observers to run. 
+	 * <p>
+	 * Observers that are no longer run are unregistered from the per-sample updates, new ones are registered. 
+	 * 
+	 */
 
-				break;
+	private void compileDetectionPlan() {
+		ArrayList<DataCollectorObserver> observersArrayList = detectionPlan.compile(dataCollectorObserversArrayList);
 
-			case VTTPhysicalActivityLibrary.DETECTION_ORIENTATION:
-				DataCollectorObserver orientationDetection = new OrientationDetection();
+		for (int i = 0; i < dataCollectorObserversArrayList.size(); i++) {
+			DataCollectorObserver dataCollectorObserver = dataCollectorObserversArrayList.get(i);
 
-				returnBoolean = dataCollectorObserversArrayList.add(orientationDetection);
+			if ((dataCollectorObserver instanceof DataCollectorSampleObserver) && !observersArrayList.contains(dataCollectorObserver)) {
+				dataCollector.unRegisterSampleObserver((DataCollectorSampleObserver)dataCollectorObserver);
+			}
+		}
 
-				break;
+		for (int i = 0; i < observersArrayList.size(); i++) {
+			DataCollectorObserver dataCollectorObserver = observersArrayList.get(i);
 
-			case VTTPhysicalActivityLibrary.DETECTION_PROXIMITY:
-				DataCollectorObserver proximityDetection = new ProximityDetection();
+			if ((dataCollectorObserver instanceof DataCollectorSampleObserver) && !dataCollectorObserversArrayList.contains(dataCollectorObserver)) {
+				// Updated with every sample, reports changes before the window closes: 
+				dataCollector.registerSampleObserver((DataCollectorSampleObserver)dataCollectorObserver);
+			}
+		}
 
-				returnBoolean = dataCollectorObserversArrayList.add(proximityDetection);
+		dataCollectorObserversArrayList = observersArrayList;
 
-				break;
+		detectionTasksValidBoolean = false;
 
-			case VTTPhysicalActivityLibrary.DETECTION_RUN:
-				DataCollectorObserver runDetection = new RunDetection();
+		boolean fallEnabledBoolean = detectionPlan.isEnabled(VTTPhysicalActivityLibrary.DETECTION_FALL);
 
-				returnBoolean = dataCollectorObserversArrayList.add(runDetection);
+		if (fallEnabledBoolean != fallTriggerRegisteredBoolean) {
+			if (fallEnabledBoolean) {
+				dataCollector.registerSampleObserver(fallTrigger);
+			}
+			else {
+				dataCollector.unRegisterSampleObserver(fallTrigger);
+			}
 
-				break;
+			fallTriggerRegisteredBoolean = fallEnabledBoolean;
+		}
+	}
 
-			case VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK:
-				DataCollectorObserver runAndWalkDetection = new RunAndWalkDetection();
+	/**
+	 * Returns the duration of the last run of a detection. 
+	 * <p>
+	 * Run and walk share the time of the combined detection, if they are computed together. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection method type integer. 
+	 * 
+	 * @return  The duration in nanoseconds, or -1 if the detection is not enabled or has not completed yet. 
+	 */
 
-				returnBoolean = dataCollectorObserversArrayList.add(runAndWalkDetection);
+	public long getDetectionTime(int typeIntegerIncoming) {
+		for (int i = 0; i < detectionTasksArrayList.size(); i++) {
+			DetectionTask detectionTask = detectionTasksArrayList.get(i);
 
-				break;
+			if (detectionTask.getDataCollectorObserver().getIdentifier() == typeIntegerIncoming) {
+				return detectionTask.getLastRunTime();
+			}
+		}
 
-			case VTTPhysicalActivityLibrary.DETECTION_STABILITY:
-				DataCollectorObserver stabilityDetection = new StabilityDetection();
+		if ((typeIntegerIncoming == VTTPhysicalActivityLibrary.DETECTION_RUN) || (typeIntegerIncoming == VTTPhysicalActivityLibrary.DETECTION_WALK)) {
+			return getDetectionTime(VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK);
+		}
 
-				returnBoolean = dataCollectorObserversArrayList.add(stabilityDetection);
+		return -1;
+	}
 
-				break;
+	/**
+	 * Returns the current power state, POWER_STATE_FULL_RATE if adaptive duty cycling is disabled. 
+	 * 
+	 */
 
-			case VTTPhysicalActivityLibrary.DETECTION_WALK:
-				DataCollectorObserver walkDetection = new WalkDetection();
+	public int getPowerState() {
+		return (adaptiveDutyCycle != null) ? adaptiveDutyCycle.getPowerState() : VTTPhysicalActivityLibrary.POWER_STATE_FULL_RATE;
+	}
 
-				returnBoolean = dataCollectorObserversArrayList.add(walkDetection);
+	/**
+	 * Returns the number of power state transitions since adaptive duty cycling was enabled. 
+	 * 
+	 */
 
-				break;
+	public int getPowerStateTransitionCount() {
+		return (adaptiveDutyCycle != null) ? adaptiveDutyCycle.getTransitionCount() : 0;
+	}
 
-			default:
-				break;
-		}
+	/**
+	 * Returns the time spent in a power state in milliseconds since adaptive duty cycling was enabled. 
+	 * 
+	 * @param  powerStateIntegerIncoming  The power state integer. 
+	 * 
+	 */
 
-		return returnBoolean;
+	public long getTimeInPowerState(int powerStateIntegerIncoming) {
+		return (adaptiveDutyCycle != null) ? adaptiveDutyCycle.getTimeInState(powerStateIntegerIncoming) : 0;
 	}
 
 	public boolean isRunning() {
@@ -165,7 +343,44 @@ public class InternalClass implements DataCollectorListener {
 	 */
 
 	public InternalClass(Context contextIncoming) {
-		dataCollector = new DataCollector(contextIncoming);
+		this(new DataCollector(contextIncoming));
+	}
+
+	/**
+	 * Constructor. 
+	 * <p>
+	 * Runs the detections without Android, for example on a recorded trace. The windows are completed 
+	 * and the callbacks are called on the thread that delivers the sensor data. 
+	 * 
+	 * @param  sensorSourceIncoming  The source of the sensor data. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.TraceReplaySensorSource 
+	 * 
+	 */
+
+	public InternalClass(SensorSource sensorSourceIncoming) {
+		this(new DataCollector(sensorSourceIncoming, new DirectExecutor()));
+	}
+
+	/**
+	 * Constructor. 
+	 * <p>
+	 * As InternalClass(SensorSource), but the window timer of a real time sensor source is scheduled on the given clock. 
+	 * With a ManualClock the windows are closed when the clock is advanced. 
+	 * 
+	 * @param  sensorSourceIncoming  The source of the sensor data. 
+	 * @param  clockIncoming  The clock of the window timer. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.utils.ManualClock 
+	 * 
+	 */
+
+	public InternalClass(SensorSource sensorSourceIncoming, Clock clockIncoming) {
+		this(new DataCollector(sensorSourceIncoming, new DirectExecutor(), clockIncoming));
+	}
+
+	private InternalClass(DataCollector dataCollectorIncoming) {
+		dataCollector = dataCollectorIncoming;
 		dataCollector.registerListener(this);
 		dataCollectorObserversArrayList = new ArrayList<DataCollectorObserver>();
 	}
@@ -177,102 +392,947 @@ public class InternalClass implements DataCollectorListener {
 
 	@Override
 	public void dataCollectionCompleted() {
-		ArrayList<Float> xBuffer = new ArrayList<Float>(dataCollector.getXBuffer());
-		ArrayList<Float> yBuffer = new ArrayList<Float>(dataCollector.getYBuffer());
-		ArrayList<Float> zBuffer = new ArrayList<Float>(dataCollector.getZBuffer());
+		RawData rawData = dataCollector.getRawData();
+
+		// The window has been handed over, so the next window can be recorded while the detections run: 
+
+		if (!dataCollector.isStreaming()) {
+			long idleLong = 0;
+
+			if (adaptiveDutyCycle != null) {
+				if (adaptiveDutyCycle.windowCompleted(rawData)) {
+					applyPowerState();
+				}
+
+				idleLong = adaptiveDutyCycle.getIdleLength();
+			}
+
+			dataCollector.recordSnapshot(idleLong);
+		}
 
-		ArrayList<Long> timeBuffer = new ArrayList<Long>(dataCollector.getTimeBuffer());
+		// A short window is not detected whichever callbacks are set, its timestamps may not even exist: 
 
-		if (timeBuffer.size() < 10 && physicalActivityLibraryCallback != null) {
-			physicalActivityLibraryCallback.error(VTTPhysicalActivityLibrary.ERROR_NO_ACCELEROMETER_DATA_AVAILABLE);
+		if (rawData.getAccelerometerSampleCount() < 10) {
+			deliverError(VTTPhysicalActivityLibrary.ERROR_NO_ACCELEROMETER_DATA_AVAILABLE);
 		}
 		else {
-			RawData rawData = new RawData();
-			rawData.setAccelerometerXBuffer(xBuffer);
-			rawData.setAccelerometerYBuffer(yBuffer);
-			rawData.setAccelerometerZBuffer(zBuffer);
-			rawData.setAccelerometerTimeBuffer(timeBuffer);
+			windowActivitySnapshot.clear(rawData.getAccelerometerTime(0), rawData.getAccelerometerTime(rawData.getAccelerometerSampleCount() - 1));
 
-			Map<Integer, Double> recognitionsIntegerDoubleMap = new HashMap<Integer, Double>();
+			if (!detectionTasksValidBoolean) {
+				updateDetectionTasks();
+			}
+
+			if (windowResampler != null) {
+				rawData = windowResampler.resample(rawData);
+			}
 
-			for (int i = 0; i < dataCollectorObserversArrayList.size(); i++) {
-				DataCollectorObserver dataCollectorObserver = dataCollectorObserversArrayList.get(i);
-				dataCollectorObserver.dataCollectedNotify(rawData);
+			rawDataSlicer.beginWindow(rawData);
 
-				int typeInteger = dataCollectorObserver.getIdentifier();
+			if (parallelDetectionsBoolean && detectionTasksArrayList.size() > 1) {
+				runDetectionsInParallel(windowActivitySnapshot);
+			}
+			else {
+				for (int i = 0; i < detectionTasksArrayList.size(); i++) {
+					DetectionTask detectionTask = detectionTasksArrayList.get(i);
 
-				double valueDouble = dataCollectorObserver.getValue();
+					detectionTask.setRawData(rawDataSlicer.getRawData(detectionTask.getDataCollectorObserver()));
+					detectionTask.call();
 
-				if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_LIGHT) {
-					recognitionsIntegerDoubleMap.put(VTTPhysicalActivityLibrary.DETECTION_LIGHT, (double)dataCollector.getLightValue());
-				}
-				else if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_PROXIMITY) {
-					recognitionsIntegerDoubleMap.put(VTTPhysicalActivityLibrary.DETECTION_PROXIMITY, (double)dataCollector.getProximityValue());
+					putDetectionValue(detectionTask.getDataCollectorObserver(), windowActivitySnapshot);
 				}
-				else if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK) {
-					// Special case, because this detector calculates 2 values instead of just one:
-					RunAndWalkDetection runAndWalkDetection = (RunAndWalkDetection)dataCollectorObserver;
+			}
+
+			if (!changeOnlyDeliveryBoolean) {
+				windowActivitySnapshot.setChangeMask(windowActivitySnapshot.getPresenceMask());
+
+				deliverActivitySnapshot(windowActivitySnapshot);
+			}
+			else if (markChangedValues(windowActivitySnapshot)) {
+				deliverActivitySnapshot(windowActivitySnapshot);
+			}
+		}
+	}
+
+	/**
+	 * Called when a streaming detection changes its value between windows. 
+	 * <p>
+	 * The change is delivered immediately to the snapshot callback, the subscribers, the publishers and the batch, the 
+	 * snapshot contains only the changed detection. The Map callback gets only the window results. A fall has already 
+	 * been reported to the fall callback by fallDetected(). 
+	 * <p>
+	 * The streaming value is decided differently from the window value, so it is not recorded as delivered: change-only 
+	 * delivery compares a window with the last delivered window, and does not flip between the two near the threshold. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection type integer value. 
+	 * @param  valueDoubleIncoming  The new detection value. 
+	 * 
+	 */
 
-					double walkValue = runAndWalkDetection.getWalkValue();
+	@Override
+	public void detectionChanged(int typeIntegerIncoming, double valueDoubleIncoming) {
+		changeActivitySnapshot.clear(0, 0);
+		changeActivitySnapshot.putValue(typeIntegerIncoming, valueDoubleIncoming);
+		changeActivitySnapshot.setChangeMask(changeActivitySnapshot.getPresenceMask());
 
-					recognitionsIntegerDoubleMap.put(VTTPhysicalActivityLibrary.DETECTION_WALK, walkValue);
+		deliverActivitySnapshot(changeActivitySnapshot);
+	}
 
-					double runValue = runAndWalkDetection.getRunValue();
+	/**
+	 * Called on the sensor thread, when the fall trigger detects a fall. 
+	 * <p>
+	 * The fall is reported to the fall callback, if set, ahead of the queued window completions and results. 
+	 * 
+	 */
 
-					recognitionsIntegerDoubleMap.put(VTTPhysicalActivityLibrary.DETECTION_RUN, runValue);
+	@Override
+	public void fallDetected() {
+		if (physicalActivityLibraryFallCallback != null) {
+			deliverFall(fallTrigger.getImpactTime());
+		}
+	}
 
-				}
-				else {
-					recognitionsIntegerDoubleMap.put(typeInteger, valueDouble);
-				}
+	/**
+	 * Marks the values, that changed since the last delivery, and decides if the snapshot is delivered. 
+	 * <p>
+	 * A categorical value changes when it differs from the delivered one, a numeric value (light, proximity) when it differs 
+	 * more than the numeric delta. A detection that appears or disappears is a change too. Without changes the snapshot is 
+	 * still delivered, if the heartbeat interval has passed since the last delivered window. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results of the window. 
+	 * 
+	 * @return  True, if the snapshot is to be delivered, otherwise false. 
+	 * 
+	 */
+
+	private boolean markChangedValues(WritableActivitySnapshot activitySnapshotIncoming) {
+		int changeMaskInteger = activitySnapshotIncoming.getPresenceMask() ^ deliveredActivitySnapshot.getPresenceMask();
+
+		for (int i = 0; i < ActivitySnapshot.DETECTION_TYPE_COUNT; i++) {
+			if (!activitySnapshotIncoming.hasValue(i) || !deliveredActivitySnapshot.hasValue(i)) {
+				continue;
 			}
 
-			if (physicalActivityLibraryCallback != null) {
-				physicalActivityLibraryCallback.newActivityInfo(recognitionsIntegerDoubleMap);
+			double differenceDouble = Math.abs(activitySnapshotIncoming.getValue(i) - deliveredActivitySnapshot.getValue(i));
+
+			boolean numericBoolean = (i == VTTPhysicalActivityLibrary.DETECTION_LIGHT) || (i == VTTPhysicalActivityLibrary.DETECTION_PROXIMITY);
+
+			if (numericBoolean ? (differenceDouble > numericDeltaDouble) : (differenceDouble != 0.0)) {
+				changeMaskInteger |= 1 << i;
 			}
 		}
-		dataCollector.recordSnapshot();
+
+		activitySnapshotIncoming.setChangeMask(changeMaskInteger);
+
+		long windowEndTimeLong = activitySnapshotIncoming.getWindowEndTime();
+
+		boolean heartbeatBoolean = (deliveredWindowEndTimeLong < 0) || ((heartbeatLong > 0) && (windowEndTimeLong - deliveredWindowEndTimeLong >= heartbeatLong * 1000));
+
+		if ((changeMaskInteger == 0) && !heartbeatBoolean) {
+			return false;
+		}
+
+		// Numeric values are compared against the last delivered value, so a slow drift is delivered once it exceeds the delta: 
+
+		activitySnapshotIncoming.copyTo(deliveredActivitySnapshot);
+
+		deliveredWindowEndTimeLong = windowEndTimeLong;
+
+		return true;
 	}
 
 	/**
-	 * Called if data collection fails. 
+	 * Delivers the results to the snapshot callback, and through a new map to the Map callback. 
+	 * <p>
+	 * With asynchronous dispatch the results are queued, and delivered on the dispatcher thread. 
 	 * 
-	 * @param  errorCodeIntegerIncoming  The error type inteer value. 
+	 * @param  activitySnapshotIncoming  The results. 
 	 * 
 	 */
 
-	@Override
-	public void dataCollectionFailed(int errorCodeIntegerIncoming) {
-		if (physicalActivityLibraryCallback != null) {
-			physicalActivityLibraryCallback.error(errorCodeIntegerIncoming);
+	private void deliverActivitySnapshot(ActivitySnapshot activitySnapshotIncoming) {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		if (callbackDispatcher != null) {
+			callbackDispatcher.dispatchActivitySnapshot(activitySnapshotIncoming);
+		}
+		else {
+			activitySnapshotDispatched(activitySnapshotIncoming);
 		}
 	}
 
-	public void setCallback(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming) {
-		physicalActivityLibraryCallback = physicalActivityLibraryCallbackIncoming;
+	/**
+	 * Delivers an error to the Map and error callbacks, queued with asynchronous dispatch. 
+	 * 
+	 * @param  errorCodeIntegerIncoming  The error code. 
+	 * 
+	 */
+
+	private void deliverError(int errorCodeIntegerIncoming) {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		if (callbackDispatcher != null) {
+			callbackDispatcher.dispatchError(errorCodeIntegerIncoming);
+		}
+		else {
+			errorDispatched(errorCodeIntegerIncoming);
+		}
 	}
 
 	/**
-	 * Starts recording. 
+	 * Delivers a fall to the fall callback, ahead of the queued results with asynchronous dispatch, otherwise ahead 
+	 * of the queued window completions on the executor. 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the impact in microseconds. 
 	 * 
 	 */
 
-	public void start() {
-		if ((dataCollectorObserversArrayList.isEmpty()) && (physicalActivityLibraryCallback != null)) {
-			physicalActivityLibraryCallback.error(VTTPhysicalActivityLibrary.ERROR_NO_DETECTIONS_ENABLED);
+	private void deliverFall(final long timeLongIncoming) {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		if (callbackDispatcher != null) {
+			callbackDispatcher.dispatchFall(timeLongIncoming);
 		}
 		else {
-			dataCollector.recordSnapshot();
+			dataCollector.executeAtFront(new Runnable() {
+				public void run() {
+					fallDispatched(timeLongIncoming);
+				}
+			});
 		}
 	}
 
 	/**
-	 * Stops recording. 
+	 * From CallbackDispatcherListener, also called directly without asynchronous dispatch. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcherListener 
 	 * 
 	 */
 
-	public void stop() {
-		dataCollector.stopRecording();
+	@Override
+	public void activitySnapshotDispatched(ActivitySnapshot activitySnapshotIncoming) {
+		// An immediately reported change has no window timestamps, newActivityInfo() keeps getting complete windows only: 
+
+		if ((physicalActivityLibraryCallback != null) && (activitySnapshotIncoming.getWindowEndTime() != 0)) {
+			Map<Integer, Double> recognitionsIntegerDoubleMap = new HashMap<Integer, Double>();
+
+			activitySnapshotIncoming.putInto(recognitionsIntegerDoubleMap);
+
+			physicalActivityLibraryCallback.newActivityInfo(recognitionsIntegerDoubleMap);
+		}
+
+		if (!resultBus.isEmpty()) {
+			resultBus.publish(activitySnapshotIncoming);
+		}
+
+		if (!resultPublisher.isEmpty()) {
+			resultPublisher.publish(activitySnapshotIncoming);
+		}
+
+		if (physicalActivityLibraryBatchCallback != null) {
+			batchActivitySnapshot(activitySnapshotIncoming);
+		}
+
+		// Last, so the other consumers have their values even if the application changes the snapshot: 
+
+		if (physicalActivityLibrarySnapshotCallback != null) {
+			physicalActivityLibrarySnapshotCallback.newActivitySnapshot(activitySnapshotIncoming);
+		}
+	}
+
+	/**
+	 * Adds the results to the batch, and delivers the batch if it is complete. 
+	 * <p>
+	 * A fall is urgent: the batch is delivered right away, including the fall. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results. 
+	 * 
+	 */
+
+	private synchronized void batchActivitySnapshot(ActivitySnapshot activitySnapshotIncoming) {
+		if (physicalActivityLibraryBatchCallback == null) {
+			return; // Disabled meanwhile. 
+		}
+
+		if (!activityBatch.add(activitySnapshotIncoming)) {
+			// Full, the collected results are delivered first: 
+
+			flushActivityBatch();
+
+			activityBatch.add(activitySnapshotIncoming);
+		}
+
+		if ((batchFlushFuture == null) && (batchDelayLong > 0)) {
+			final long generationLong = batchGenerationLong;
+
+			batchFlushFuture = dataCollector.schedule(new Runnable() {
+				public void run() {
+					flushActivityBatch(generationLong);
+				}
+			}, batchDelayLong);
+		}
+
+		if ((batchStartTimeLong < 0) && (activitySnapshotIncoming.getWindowStartTime() > 0)) {
+			batchStartTimeLong = activitySnapshotIncoming.getWindowStartTime();
+		}
+
+		boolean urgentBoolean = activitySnapshotIncoming.getValue(VTTPhysicalActivityLibrary.DETECTION_FALL) > 0.0; // False for NaN. 
+
+		boolean dueBoolean = (batchDelayLong > 0) && (batchStartTimeLong >= 0) && (activitySnapshotIncoming.getWindowEndTime() - batchStartTimeLong >= batchDelayLong * 1000);
+
+		if (activityBatch.isFull() || urgentBoolean || dueBoolean) {
+			flushActivityBatch();
+		}
+	}
+
+	/**
+	 * Delivers the collected results to the batch callback, if there are any. 
+	 * 
+	 */
+
+	private synchronized void flushActivityBatch() {
+		if (batchFlushFuture != null) {
+			batchFlushFuture.cancel(false);
+
+			batchFlushFuture = null;
+		}
+
+		batchGenerationLong++;
+
+		if ((physicalActivityLibraryBatchCallback == null) || activityBatch.isEmpty()) {
+			return;
+		}
+
+		physicalActivityLibraryBatchCallback.newActivityBatch(activityBatch);
+
+		activityBatch.clear();
+
+		batchStartTimeLong = -1;
+	}
+
+	/**
+	 * Delivers the batch, when the batch delay has passed on the clock without a result completing the batch. 
+	 * 
+	 * @param  generationLongIncoming  The generation of the batch, that scheduled the flush. 
+	 * 
+	 */
+
+	private synchronized void flushActivityBatch(long generationLongIncoming) {
+		if (generationLongIncoming == batchGenerationLong) {
+			flushActivityBatch();
+		}
+	}
+
+	/**
+	 * Called when motion was detected in the low rate power state, returns to the full rate. 
+	 * 
+	 * @param  timeLongIncoming  The timestamp of the sample in microseconds. 
+	 * 
+	 */
+
+	@Override
+	public void motionDetected(long timeLongIncoming) {
+		if ((adaptiveDutyCycle != null) && adaptiveDutyCycle.motionDetected(timeLongIncoming)) {
+			applyPowerState();
+		}
+	}
+
+	/**
+	 * Called if data collection fails. 
+	 * 
+	 * @param  errorCodeIntegerIncoming  The error type inteer value. 
+	 * 
+	 */
+
+	@Override
+	public void dataCollectionFailed(int errorCodeIntegerIncoming) {
+		deliverError(errorCodeIntegerIncoming);
+	}
+
+	/**
+	 * From CallbackDispatcherListener, also called directly without asynchronous dispatch. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcherListener 
+	 * 
+	 */
+
+	@Override
+	public void errorDispatched(int errorCodeIntegerIncoming) {
+		if (physicalActivityLibraryCallback != null) {
+			physicalActivityLibraryCallback.error(errorCodeIntegerIncoming);
+		}
+
+		if (physicalActivityLibraryErrorCallback != null) {
+			physicalActivityLibraryErrorCallback.error(errorCodeIntegerIncoming);
+		}
+	}
+
+	/**
+	 * From CallbackDispatcherListener, also called directly without asynchronous dispatch. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcherListener 
+	 * 
+	 */
+
+	@Override
+	public void fallDispatched(long timeLongIncoming) {
+		if (physicalActivityLibraryFallCallback != null) {
+			physicalActivityLibraryFallCallback.fallDetected(timeLongIncoming);
+		}
+	}
+
+	/**
+	 * Sets the sliding window parameters used by start(). 
+	 * 
+	 * @param  windowLengthLongIncoming  The window length in milliseconds. 
+	 * @param  hopLengthLongIncoming  The interval between two windows in milliseconds, 0 to use snapshot mode. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setSlidingWindow(long windowLengthLongIncoming, long hopLengthLongIncoming) {
+		if (hopLengthLongIncoming == 0) {
+			windowLengthLong = 0;
+			hopLengthLong = 0;
+
+			return true;
+		}
+
+		if ((windowLengthLongIncoming <= 0) || (hopLengthLongIncoming < 0) || (hopLengthLongIncoming > windowLengthLongIncoming)) {
+			return false;
+		}
+
+		windowLengthLong = windowLengthLongIncoming;
+		hopLengthLong = hopLengthLongIncoming;
+
+		return true;
+	}
+
+	/**
+	 * Puts the value of a detection into the result snapshot. 
+	 * 
+	 * @param  dataCollectorObserverIncoming  The detection, which has processed the window. 
+	 * @param  activitySnapshotIncoming  The result snapshot. 
+	 * 
+	 */
+
+	private void putDetectionValue(DataCollectorObserver dataCollectorObserverIncoming, WritableActivitySnapshot activitySnapshotIncoming) {
+		int typeInteger = dataCollectorObserverIncoming.getIdentifier();
+
+		double valueDouble = dataCollectorObserverIncoming.getValue();
+
+		if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_LIGHT) {
+			activitySnapshotIncoming.putValue(VTTPhysicalActivityLibrary.DETECTION_LIGHT, (double)dataCollector.getLightValue());
+		}
+		else if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_PROXIMITY) {
+			activitySnapshotIncoming.putValue(VTTPhysicalActivityLibrary.DETECTION_PROXIMITY, (double)dataCollector.getProximityValue());
+		}
+		else if (typeInteger == VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK) {
+			// Special case, because this detector calculates 2 values instead of just one:
+			RunAndWalkObserver runAndWalkObserver = (RunAndWalkObserver)dataCollectorObserverIncoming;
+
+			double walkValue = runAndWalkObserver.getWalkValue();
+
+			activitySnapshotIncoming.putValue(VTTPhysicalActivityLibrary.DETECTION_WALK, walkValue);
+
+			double runValue = runAndWalkObserver.getRunValue();
+
+			activitySnapshotIncoming.putValue(VTTPhysicalActivityLibrary.DETECTION_RUN, runValue);
+
+		}
+		else {
+			activitySnapshotIncoming.putValue(typeInteger, valueDouble);
+		}
+	}
+
+	/**
+	 * Runs the detections on the worker pool and waits for them until the deadline. 
+	 * <p>
+	 * The detections read their slices of the current window. The values are put into the snapshot in the order the detections 
+	 * were enabled. A detection that misses the deadline, or is still running from an earlier window, is left out of the snapshot. 
+	 * 
+	 * @param  activitySnapshotIncoming  The result snapshot. 
+	 * 
+	 */
+
+	private void runDetectionsInParallel(WritableActivitySnapshot activitySnapshotIncoming) {
+		if (detectionExecutorService == null) {
+			int threadCountInteger = Math.min(Runtime.getRuntime().availableProcessors(), detectionTasksArrayList.size());
+
+			detectionExecutorService = new ThreadPoolExecutor(threadCountInteger, threadCountInteger, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), DETECTION_THREAD_FACTORY);
+		}
+
+		ArrayList<DetectionTask> runnableTasksArrayList = new ArrayList<DetectionTask>(detectionTasksArrayList.size());
+
+		for (int i = 0; i < detectionTasksArrayList.size(); i++) {
+			DetectionTask detectionTask = detectionTasksArrayList.get(i);
+
+			if (!detectionTask.isRunning()) {
+				detectionTask.setRawData(rawDataSlicer.getRawData(detectionTask.getDataCollectorObserver()));
+				detectionTask.holdRawData();
+
+				runnableTasksArrayList.add(detectionTask);
+			}
+		}
+
+		List<Future<Void>> futuresList;
+
+		try {
+			if (detectionDeadlineLong > 0) {
+				futuresList = detectionExecutorService.invokeAll(runnableTasksArrayList, detectionDeadlineLong, TimeUnit.MILLISECONDS);
+			}
+			else {
+				futuresList = detectionExecutorService.invokeAll(runnableTasksArrayList);
+			}
+		}
+		catch (InterruptedException interruptedExceptionIncoming) {
+			Thread.currentThread().interrupt();
+
+			for (int i = 0; i < runnableTasksArrayList.size(); i++) {
+				runnableTasksArrayList.get(i).abandonRawData();
+			}
+
+			return; // Stopped, no results for this window. 
+		}
+
+		for (int i = 0; i < futuresList.size(); i++) {
+			Future<Void> future = futuresList.get(i);
+
+			if (future.isCancelled()) {
+				runnableTasksArrayList.get(i).abandonRawData(); // A started run keeps its RawData until it returns. 
+
+				continue; // Missed the deadline. 
+			}
+
+			try {
+				future.get();
+			}
+			catch (Exception exceptionIncoming) {
+				continue; // The detection failed. 
+			}
+
+			putDetectionValue(runnableTasksArrayList.get(i).getDataCollectorObserver(), activitySnapshotIncoming);
+		}
+	}
+
+	/**
+	 * Enables or disables running the detections in parallel. 
+	 * <p>
+	 * By default the detections run one after another on the thread that completes the window. In parallel mode they run on 
+	 * a worker pool with one thread per detection, at most one per processor core, and the results are delivered together 
+	 * once all the detections have completed or the deadline has passed. 
+	 * 
+	 * @param  parallelBooleanIncoming  True to run the detections in parallel. 
+	 * @param  deadlineLongIncoming  The maximum time to wait for the detections in milliseconds, 0 to wait until all have completed. 
+	 * 
+	 */
+
+	public void setParallelDetections(boolean parallelBooleanIncoming, long deadlineLongIncoming) {
+		parallelDetectionsBoolean = parallelBooleanIncoming;
+		detectionDeadlineLong = Math.max(0, deadlineLongIncoming);
+
+		shutdownDetectionExecutor();
+	}
+
+	private void shutdownDetectionExecutor() {
+		if (detectionExecutorService != null) {
+			detectionExecutorService.shutdown();
+
+			detectionExecutorService = null;
+		}
+	}
+
+	/**
+	 * Creates a task for each enabled detection, keeping the tasks (and their timings) of the detections that are still enabled. 
+	 * 
+	 */
+
+	private void updateDetectionTasks() {
+		ArrayList<DetectionTask> updatedTasksArrayList = new ArrayList<DetectionTask>(dataCollectorObserversArrayList.size());
+
+		for (int i = 0; i < dataCollectorObserversArrayList.size(); i++) {
+			DataCollectorObserver dataCollectorObserver = dataCollectorObserversArrayList.get(i);
+
+			DetectionTask detectionTask = null;
+
+			for (int j = 0; j < detectionTasksArrayList.size(); j++) {
+				if (detectionTasksArrayList.get(j).getDataCollectorObserver() == dataCollectorObserver) {
+					detectionTask = detectionTasksArrayList.get(j);
+
+					break;
+				}
+			}
+
+			if (detectionTask == null) {
+				detectionTask = new DetectionTask(dataCollectorObserver);
+			}
+
+			updatedTasksArrayList.add(detectionTask);
+		}
+
+		if (detectionTasksArrayList.size() != updatedTasksArrayList.size()) {
+			// The pool is sized by the number of detections: 
+			shutdownDetectionExecutor();
+		}
+
+		detectionTasksArrayList = updatedTasksArrayList;
+		detectionTasksValidBoolean = true;
+	}
+
+	/**
+	 * Selects the native or the Java implementation of a detection, replacing the observer if the detection is enabled. 
+	 * 
+	 * @param  typeIntegerIncoming  The detection method type integer (fall, run, run and walk or walk). 
+	 * @param  implementationIntegerIncoming  The implementation integer, IMPLEMENTATION_NATIVE or IMPLEMENTATION_JAVA. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setDetectionImplementation(int typeIntegerIncoming, int implementationIntegerIncoming) {
+		if (implementationIntegerIncoming == VTTPhysicalActivityLibrary.IMPLEMENTATION_NATIVE) {
+			if (!NativeLibrary.isAvailable()) {
+				return false;
+			}
+		}
+		else if (implementationIntegerIncoming != VTTPhysicalActivityLibrary.IMPLEMENTATION_JAVA) {
+			return false;
+		}
+
+		boolean returnBoolean = detectionPlan.setJavaImplementation(typeIntegerIncoming, implementationIntegerIncoming == VTTPhysicalActivityLibrary.IMPLEMENTATION_JAVA);
+
+		if (returnBoolean) {
+			compileDetectionPlan();
+		}
+
+		return returnBoolean;
+	}
+
+	/**
+	 * Enables or disables adaptive duty cycling of the accelerometer in snapshot mode. 
+	 * 
+	 * @param  stableWindowCountIntegerIncoming  Number of consecutive stable snapshots before the low rate state, 0 to disable. 
+	 * @param  idleLengthLongIncoming  The idle period between two snapshots in the low rate state in milliseconds. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setAdaptiveDutyCycle(int stableWindowCountIntegerIncoming, long idleLengthLongIncoming) {
+		if ((stableWindowCountIntegerIncoming < 0) || (idleLengthLongIncoming < 0)) {
+			return false;
+		}
+
+		if (stableWindowCountIntegerIncoming == 0) {
+			adaptiveDutyCycle = null;
+		}
+		else {
+			adaptiveDutyCycle = new AdaptiveDutyCycle(stableWindowCountIntegerIncoming, idleLengthLongIncoming);
+		}
+
+		applyPowerState();
+
+		return true;
+	}
+
+	/**
+	 * Enables or disables resampling the windows onto an even grid before the detections run. 
+	 * 
+	 * @param  rateIntegerIncoming  The rate of the grid in Hz, 0 to disable. 
+	 * @param  interpolationIntegerIncoming  The interpolation integer, INTERPOLATION_LINEAR or INTERPOLATION_CUBIC. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setResampling(int rateIntegerIncoming, int interpolationIntegerIncoming) {
+		if ((rateIntegerIncoming < 0) || (rateIntegerIncoming > 1000)) {
+			return false;
+		}
+
+		if ((interpolationIntegerIncoming != VTTPhysicalActivityLibrary.INTERPOLATION_LINEAR) && (interpolationIntegerIncoming != VTTPhysicalActivityLibrary.INTERPOLATION_CUBIC)) {
+			return false;
+		}
+
+		if (rateIntegerIncoming == 0) {
+			windowResampler = null;
+		}
+		else {
+			windowResampler = new WindowResampler(rateIntegerIncoming, interpolationIntegerIncoming == VTTPhysicalActivityLibrary.INTERPOLATION_CUBIC);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Sets how the windows are closed, takes effect on the next start. 
+	 * 
+	 * @param  windowClosureIntegerIncoming  WINDOW_CLOSURE_TIMER, WINDOW_CLOSURE_TIMESTAMP or WINDOW_CLOSURE_SAMPLE_COUNT. 
+	 * @param  sampleCountIntegerIncoming  The samples per window for WINDOW_CLOSURE_SAMPLE_COUNT. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setWindowClosure(int windowClosureIntegerIncoming, int sampleCountIntegerIncoming) {
+		switch (windowClosureIntegerIncoming) {
+			case VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMER:
+			case VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMESTAMP:
+				break;
+
+			case VTTPhysicalActivityLibrary.WINDOW_CLOSURE_SAMPLE_COUNT:
+				if (sampleCountIntegerIncoming <= 0) {
+					return false;
+				}
+
+				break;
+
+			default:
+				return false;
+		}
+
+		dataCollector.setWindowClosure(windowClosureIntegerIncoming, sampleCountIntegerIncoming);
+
+		return true;
+	}
+
+	public void setCallback(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming) {
+		physicalActivityLibraryCallback = physicalActivityLibraryCallbackIncoming;
+	}
+
+	public void setErrorCallback(PhysicalActivityLibraryErrorCallback physicalActivityLibraryErrorCallbackIncoming) {
+		physicalActivityLibraryErrorCallback = physicalActivityLibraryErrorCallbackIncoming;
+	}
+
+	public void setFallCallback(PhysicalActivityLibraryFallCallback physicalActivityLibraryFallCallbackIncoming) {
+		physicalActivityLibraryFallCallback = physicalActivityLibraryFallCallbackIncoming;
+	}
+
+	/**
+	 * Creates a publisher of the results with backpressure. 
+	 * 
+	 * @param  backpressurePolicyIntegerIncoming  BACKPRESSURE_LATEST or BACKPRESSURE_DROP. 
+	 * 
+	 * @return  The publisher, or null if the policy is not valid. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.ResultSubscription 
+	 * 
+	 */
+
+	public PhysicalActivityLibraryPublisher<ActivitySnapshot> createResultPublisher(int backpressurePolicyIntegerIncoming) {
+		if ((backpressurePolicyIntegerIncoming != VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST) && (backpressurePolicyIntegerIncoming != VTTPhysicalActivityLibrary.BACKPRESSURE_DROP)) {
+			return null;
+		}
+
+		return resultPublisher.createPublisher(backpressurePolicyIntegerIncoming);
+	}
+
+	/**
+	 * Enables or disables delivering the callbacks on a dedicated dispatcher thread. 
+	 * 
+	 * @param  queueCapacityIntegerIncoming  The queue capacity in events, 0 to call the callbacks on the recognition thread. 
+	 * @param  overflowPolicyIntegerIncoming  DISPATCH_OVERFLOW_COALESCE, DISPATCH_OVERFLOW_DROP_OLDEST or DISPATCH_OVERFLOW_BLOCK. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setAsyncDispatch(int queueCapacityIntegerIncoming, int overflowPolicyIntegerIncoming) {
+		if (queueCapacityIntegerIncoming < 0) {
+			return false;
+		}
+
+		if ((overflowPolicyIntegerIncoming != VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_COALESCE) && (overflowPolicyIntegerIncoming != VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_DROP_OLDEST) && (overflowPolicyIntegerIncoming != VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_BLOCK)) {
+			return false;
+		}
+
+		if (callbackDispatcher != null) {
+			callbackDispatcher.shutdown();
+		}
+
+		callbackDispatcher = (queueCapacityIntegerIncoming > 0) ? new CallbackDispatcher(this, queueCapacityIntegerIncoming, overflowPolicyIntegerIncoming) : null;
+
+		return true;
+	}
+
+	/**
+	 * Returns the number of events replaced by newer results in the dispatcher queue, 0 without asynchronous dispatch. 
+	 * 
+	 */
+
+	public long getDispatchCoalesceCount() {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		return (callbackDispatcher != null) ? callbackDispatcher.getCoalesceCount() : 0;
+	}
+
+	/**
+	 * Returns the number of events dropped from the dispatcher queue, 0 without asynchronous dispatch. 
+	 * 
+	 */
+
+	public long getDispatchDropCount() {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		return (callbackDispatcher != null) ? callbackDispatcher.getDropCount() : 0;
+	}
+
+	/**
+	 * Returns the number of events waiting in the dispatcher queue, 0 without asynchronous dispatch. 
+	 * 
+	 */
+
+	public int getDispatchQueueDepth() {
+		CallbackDispatcher callbackDispatcher = this.callbackDispatcher;
+
+		return (callbackDispatcher != null) ? callbackDispatcher.getQueueDepth() : 0;
+	}
+
+	/**
+	 * Enables or disables change-only delivery of the window results. 
+	 * 
+	 * @param  changeOnlyBooleanIncoming  True to deliver a window only if a value changed or the heartbeat is due. 
+	 * @param  numericDeltaDoubleIncoming  The change of a numeric value (light, proximity), that is delivered. 
+	 * @param  heartbeatLongIncoming  The longest time between two delivered windows in milliseconds, 0 for no heartbeat. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean setChangeOnlyDelivery(boolean changeOnlyBooleanIncoming, double numericDeltaDoubleIncoming, long heartbeatLongIncoming) {
+		if ((numericDeltaDoubleIncoming < 0.0) || (heartbeatLongIncoming < 0)) {
+			return false;
+		}
+
+		changeOnlyDeliveryBoolean = changeOnlyBooleanIncoming;
+		numericDeltaDouble = numericDeltaDoubleIncoming;
+		heartbeatLong = heartbeatLongIncoming;
+
+		deliveredActivitySnapshot.clear(0, 0);
+		deliveredWindowEndTimeLong = -1;
+
+		return true;
+	}
+
+	/**
+	 * Sets the batch callback, the results collected for the previous batch callback are delivered first. 
+	 * 
+	 * @param  physicalActivityLibraryBatchCallbackIncoming  The batch callback, null to disable batched delivery. 
+	 * @param  windowCountIntegerIncoming  The number of results in a full batch. 
+	 * @param  batchDelayLongIncoming  The longest time covered by a batch in milliseconds, 0 to deliver full batches only. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public synchronized boolean setBatchCallback(PhysicalActivityLibraryBatchCallback physicalActivityLibraryBatchCallbackIncoming, int windowCountIntegerIncoming, long batchDelayLongIncoming) {
+		if ((physicalActivityLibraryBatchCallbackIncoming != null) && ((windowCountIntegerIncoming <= 0) || (batchDelayLongIncoming < 0))) {
+			return false;
+		}
+
+		flushActivityBatch();
+
+		physicalActivityLibraryBatchCallback = physicalActivityLibraryBatchCallbackIncoming;
+
+		if (physicalActivityLibraryBatchCallbackIncoming == null) {
+			activityBatch = null;
+		}
+		else {
+			if ((activityBatch == null) || (activityBatch.getCapacity() != windowCountIntegerIncoming)) {
+				activityBatch = new WritableActivityBatch(windowCountIntegerIncoming);
+			}
+
+			batchDelayLong = batchDelayLongIncoming;
+		}
+
+		return true;
+	}
+
+	/**
+	 * Subscribes a Map callback to the results of the given detections. 
+	 * 
+	 * @param  physicalActivityLibraryCallbackIncoming  The subscriber, its error() is not called. 
+	 * @param  detectionMaskIntegerIncoming  Bit (1 << type) is set for each detection of interest. 
+	 * @param  executorIncoming  Delivers the results, null to deliver on the thread that delivers the callbacks. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean subscribe(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+		if ((physicalActivityLibraryCallbackIncoming == null) || (detectionMaskIntegerIncoming == 0)) {
+			return false;
+		}
+
+		resultBus.subscribe(physicalActivityLibraryCallbackIncoming, null, detectionMaskIntegerIncoming, executorIncoming);
+
+		return true;
+	}
+
+	/**
+	 * Subscribes a snapshot callback to the results of the given detections. 
+	 * 
+	 * @param  physicalActivityLibrarySnapshotCallbackIncoming  The subscriber. 
+	 * @param  detectionMaskIntegerIncoming  Bit (1 << type) is set for each detection of interest. 
+	 * @param  executorIncoming  Delivers the results, null to deliver on the thread that delivers the callbacks. 
+	 * 
+	 * @return  returnBoolean  True, if succeeded, otherwise false. 
+	 */
+
+	public boolean subscribe(PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+		if ((physicalActivityLibrarySnapshotCallbackIncoming == null) || (detectionMaskIntegerIncoming == 0)) {
+			return false;
+		}
+
+		resultBus.subscribe(null, physicalActivityLibrarySnapshotCallbackIncoming, detectionMaskIntegerIncoming, executorIncoming);
+
+		return true;
+	}
+
+	/**
+	 * Removes a subscriber. 
+	 * 
+	 * @param  callbackIncoming  The Map or snapshot callback of the subscriber. 
+	 * 
+	 * @return  returnBoolean  True, if the subscriber was found, otherwise false. 
+	 */
+
+	public boolean unsubscribe(Object callbackIncoming) {
+		return resultBus.unsubscribe(callbackIncoming);
+	}
+
+	public void setSnapshotCallback(PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming) {
+		physicalActivityLibrarySnapshotCallback = physicalActivityLibrarySnapshotCallbackIncoming;
+	}
+
+	/**
+	 * Starts recording. 
+	 * 
+	 */
+
+	public void start() {
+		deliveredActivitySnapshot.clear(0, 0);
+		deliveredWindowEndTimeLong = -1;
+
+		if (detectionPlan.isEmpty()) {
+			errorDispatched(VTTPhysicalActivityLibrary.ERROR_NO_DETECTIONS_ENABLED);
+		}
+		else if (hopLengthLong > 0) {
+			dataCollector.startStreaming(windowLengthLong, hopLengthLong);
+		}
+		else {
+			if (adaptiveDutyCycle != null) {
+				adaptiveDutyCycle.restart();
+
+				applyPowerState();
+			}
+
+			dataCollector.recordSnapshot();
+		}
+	}
+
+	/**
+	 * Stops recording. 
+	 * 
+	 */
+
+	public void stop() {
+		dataCollector.stopRecording();
+
+		shutdownDetectionExecutor();
+
+		flushActivityBatch();
 	}
 
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Fall detection in Java, implements DataCollectorObserver. 
+ * <p>
+ * Does not need the native library. A fall is a free fall (the acceleration magnitude well under 1 g for at least 
+ * FREE_FALL_DURATION_LONG) followed by an impact (a magnitude spike over IMPACT_THRESHOLD_DOUBLE) within 
+ * IMPACT_DELAY_LONG. Does not allocate. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorObserver 
+ *
+ */
+
+public final class JavaFallDetection implements DataCollectorObserver {
+
+	// Magnitude thresholds in m/s^2: 0.6 g for free fall, 2.5 g for the impact. 
+
+	static final double FREE_FALL_THRESHOLD_DOUBLE = 0.6 * 9.81;
+	static final double IMPACT_THRESHOLD_DOUBLE = 2.5 * 9.81;
+
+	// Minimum free fall duration and maximum delay from the free fall to the impact in microseconds. 
+
+	static final long FREE_FALL_DURATION_LONG = 80000;
+	static final long IMPACT_DELAY_LONG = 1000000;
+
+	private double fallValueDouble = 0.0;
+
+	@Override
+	public double getValue() {
+		return fallValueDouble;
+	}
+
+	@Override
+	public int getIdentifier() {
+		return VTTPhysicalActivityLibrary.DETECTION_FALL;
+	}
+
+	@Override
+	public int getMinimumRate() {
+		return 0;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
+	@Override
+	public String getTag() {
+		return "FallDetection";
+	}
+
+	@Override
+	public void dataCollectedNotify(RawData rawDataIncoming) {
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
+
+		if (sampleCountInteger < 16) {
+			fallValueDouble = 0.0; // No data. 
+			return; // Too few data points, cannot continue. 
+		}
+
+		fallValueDouble = 0.0;
+
+		float[] magnitudeFloatArray = rawDataIncoming.getFeatures().getMagnitudeArray();
+
+		long freeFallStartTimeLong = -1; // Start of the current free fall, -1 if not falling. 
+		long freeFallEndTimeLong = -1; // End of the last long enough free fall, -1 if none. 
+
+		for (int i = 0; i < sampleCountInteger; i++) {
+			float magnitudeFloat = magnitudeFloatArray[i];
+
+			long timeLong = rawDataIncoming.getAccelerometerTime(i);
+
+			if (magnitudeFloat < FREE_FALL_THRESHOLD_DOUBLE) {
+				if (freeFallStartTimeLong < 0) {
+					freeFallStartTimeLong = timeLong;
+				}
+
+				if (timeLong - freeFallStartTimeLong >= FREE_FALL_DURATION_LONG) {
+					freeFallEndTimeLong = timeLong;
+				}
+			}
+			else {
+				freeFallStartTimeLong = -1;
+
+				if ((freeFallEndTimeLong >= 0) && (magnitudeFloat > IMPACT_THRESHOLD_DOUBLE)) {
+					if (timeLong - freeFallEndTimeLong <= IMPACT_DELAY_LONG) {
+						fallValueDouble = 1.0; // Free fall followed by an impact. 
+						return;
+					}
+
+					freeFallEndTimeLong = -1; // Too late for the free fall. 
+				}
+			}
+		}
+	}
+
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Run and walk detection in Java, implements RunAndWalkObserver. 
+ * <p>
+ * Does not need the native library, both values come from one StepDetector pass over the window. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RunAndWalkObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.StepDetector 
+ *
+ */
+
+public final class JavaRunAndWalkDetection implements RunAndWalkObserver {
+
+	private final StepDetector stepDetector = new StepDetector();
+
+	private double runValueDouble = 0.0;
+	private double walkValueDouble = 0.0;
+
+	@Override
+	public double getValue() {
+		return -1;
+	}
+
+	@Override
+	public int getIdentifier() {
+		return VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK;
+	}
+
+	@Override
+	public String getTag() {
+		return "RunAndWalkDetection";
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
+	// Steps are found reliably at 50 Hz. 
+
+	@Override
+	public int getMinimumRate() {
+		return 50;
+	}
+
+	@Override
+	public double getRunValue() {
+		return runValueDouble;
+	}
+
+	@Override
+	public double getWalkValue() {
+		return walkValueDouble;
+	}
+
+	@Override
+	public void dataCollectedNotify(RawData rawDataIncoming) {
+		if (rawDataIncoming.getAccelerometerSampleCount() < 16) {
+			runValueDouble = 0.0; // No data. 
+			walkValueDouble = 0.0;
+			return; // Cannot continue with too few data points. 
+		}
+
+		stepDetector.analyze(rawDataIncoming);
+
+		runValueDouble = stepDetector.isRunning() ? 1.0 : 0.0;
+		walkValueDouble = stepDetector.isWalking() ? 1.0 : 0.0;
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Run detection in Java, implements DataCollectorObserver. 
+ * <p>
+ * Does not need the native library: the steps are found with a StepDetector and the window is classified by the cadence 
+ * and the step intensity. Does not allocate. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.StepDetector 
+ *
+ */
+
+public final class JavaRunDetection implements DataCollectorObserver {
+
+	private final StepDetector stepDetector = new StepDetector();
+
+	private double runValueDouble = 0.0;
+
+	@Override
+	public double getValue() {
+		return runValueDouble;
+	}
+
+	@Override
+	public int getIdentifier() {
+		return VTTPhysicalActivityLibrary.DETECTION_RUN;
+	}
+
+	// Steps are found reliably at 50 Hz. 
+
+	@Override
+	public int getMinimumRate() {
+		return 50;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
+	@Override
+	public String getTag() {
+		return "RunDetection";
+	}
+
+	@Override
+	public void dataCollectedNotify(RawData rawDataIncoming) {
+		if (rawDataIncoming.getAccelerometerSampleCount() < 16) {
+			runValueDouble = 0.0; // No data. 
+			return; // Cannot continue with too few data points. 
+		}
+
+		stepDetector.analyze(rawDataIncoming);
+
+		runValueDouble = stepDetector.isRunning() ? 1.0 : 0.0;
+	}
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Loads the native physical activity library (libphysicalactivitylibrary.so) once. 
+ * <p>
+ * The library is built for ARM only, so it is missing on x86 emulators and on plain Java VMs. In that case the Java 
+ * implementations of the walk, run and fall detections are used. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaFallDetection 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaRunAndWalkDetection 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaRunDetection 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaWalkDetection 
+ * 
+ */
+
+public final class NativeLibrary {
+
+	private static final boolean AVAILABLE_BOOLEAN;
+
+	static {
+		boolean availableBoolean;
+
+		try {
+			System.loadLibrary("physicalactivitylibrary");
+
+			availableBoolean = true;
+		}
+		catch (UnsatisfiedLinkError unsatisfiedLinkErrorIncoming) {
+			availableBoolean = false;
+		}
+		catch (SecurityException securityExceptionIncoming) {
+			availableBoolean = false;
+		}
+
+		AVAILABLE_BOOLEAN = availableBoolean;
+	}
+
+	private NativeLibrary() {
+	}
+
+	/**
+	 * Returns true if the native library was loaded, otherwise false. 
+	 * 
+	 */
+
+	public static boolean isAvailable() {
+		return AVAILABLE_BOOLEAN;
+	}
+
+}
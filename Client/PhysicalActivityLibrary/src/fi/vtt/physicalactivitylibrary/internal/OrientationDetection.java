@@ -30,7 +30,6 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
-import java.util.ArrayList;
 
 /**
  * Orientation detection, implements DataCollectorObserver. 
@@ -53,6 +52,18 @@ public class OrientationDetection implements DataCollectorObserver {
 		return VTTPhysicalActivityLibrary.DETECTION_ORIENTATION;
 	}
 
+	// The mean of the newest second at 10 Hz is enough for the orientation. 
+
+	@Override
+	public int getMinimumRate() {
+		return 10;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 1000;
+	}
+
 	@Override
 	public String getTag() {
 		return "OrientationDetection";
@@ -69,42 +80,30 @@ public class OrientationDetection implements DataCollectorObserver {
 			return;
 		}
 
-		ArrayList<Float> xFloatArrayList = rawDataIncoming.getAccelerometerXBuffer();
-		ArrayList<Float> yFloatArrayList = rawDataIncoming.getAccelerometerYBuffer();
-		ArrayList<Float> zFloatArrayList = rawDataIncoming.getAccelerometerZBuffer();
-
-		float xMeanFloat = 0.0f;
-		float yMeanFloat = 0.0f;
-		float zMeanFloat = 0.0f;
-
-		for (int i = 0; i < xFloatArrayList.size(); i++) {
-			xMeanFloat += xFloatArrayList.get(i);
-			yMeanFloat += yFloatArrayList.get(i);
-			zMeanFloat += zFloatArrayList.get(i);
-		}
+		WindowFeatures windowFeatures = rawDataIncoming.getFeatures();
 
-		xMeanFloat = xMeanFloat / xFloatArrayList.size();
-		yMeanFloat = yMeanFloat / yFloatArrayList.size();
-		zMeanFloat = zMeanFloat / zFloatArrayList.size();
+		double xMeanDouble = windowFeatures.getMean(WindowFeatures.AXIS_X);
+		double yMeanDouble = windowFeatures.getMean(WindowFeatures.AXIS_Y);
+		double zMeanDouble = windowFeatures.getMean(WindowFeatures.AXIS_Z);
 
 		double orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_UNDEFINED;
 
-		if (xMeanFloat > 7.35) {
+		if (xMeanDouble > 7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_RIGHT_UP;
 		}
-		else if (xMeanFloat < -7.35) {
+		else if (xMeanDouble < -7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_LEFT_UP;
 		}
-		else if (yMeanFloat > 7.35) {
+		else if (yMeanDouble > 7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_TOP_UP;
 		}
-		else if (yMeanFloat < -7.35) {
+		else if (yMeanDouble < -7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_TOP_DOWN;
 		}
-		else if (zMeanFloat > 7.35) {
+		else if (zMeanDouble > 7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_FACE_UP;
 		}
-		else if (zMeanFloat < -7.35) {
+		else if (zMeanDouble < -7.35) {
 			orientationDouble = VTTPhysicalActivityLibrary.ORIENTATION_FACE_DOWN;
 		}
 
@@ -50,6 +50,16 @@ public class ProximityDetection implements DataCollectorObserver {
 		return VTTPhysicalActivityLibrary.DETECTION_PROXIMITY;
 	}
 
+	@Override
+	public int getMinimumRate() {
+		return 0;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
 	@Override
 	public String getTag() {
 		return "ProximityDetection";
@@ -29,39 +29,282 @@
 
 package fi.vtt.physicalactivitylibrary.internal;
 
-import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * A simple container class for collected raw data with getters and setters. 
+ * A simple container class for collected raw data with getters. 
+ * <p>
+ * The samples are stored in preallocated primitive arrays, which DataCollector reuses (double buffering): while the detections 
+ * read one RawData, the next window is copied into the other one. For the detections the RawData is read-only. A RawData 
+ * held by a parallel detection, that may outlive its window, is not reused: the buffer owner allocates a new one instead. 
+ * <p>
+ * The shared arrays and features are created lazily under the RawData lock, so detections running in parallel can request them. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
  * 
  */
 
 public final class RawData {
 
-	private ArrayList<Float> xFloatArrayList;
-	private ArrayList<Float> yFloatArrayList;
-	private ArrayList<Float> zFloatArrayList;
+	private final float[] xFloatArray;
+	private final float[] yFloatArray;
+	private final float[] zFloatArray;
+
+	private final long[] timeLongArray;
+
+	private int sampleCountInteger;
+
+	// Resampled windows: the interval between the samples in microseconds (0 if not evenly spaced) and the samples 
+	// interpolated over a gap in the original data. 
+
+	private long samplePeriodLong = 0;
+
+	private final boolean[] gapBooleanArray;
+
+	private int gapCountInteger = 0;
+
+	// Exact length copies of the sample arrays for the native detections, materialized once per window. The prebuilt 
+	// native library takes the sample count from the array length, so the arrays of the recent lengths are cached. 
+
+	private static final int EXACT_ARRAY_CACHE_SIZE_INTEGER = 8;
+
+	private final float[][] xExactFloatArrayCache = new float[EXACT_ARRAY_CACHE_SIZE_INTEGER][];
+	private final float[][] yExactFloatArrayCache = new float[EXACT_ARRAY_CACHE_SIZE_INTEGER][];
+	private final float[][] zExactFloatArrayCache = new float[EXACT_ARRAY_CACHE_SIZE_INTEGER][];
+
+	private final long[][] timeExactLongArrayCache = new long[EXACT_ARRAY_CACHE_SIZE_INTEGER][];
+
+	private int exactArrayCacheNextInteger = 0; // The entry replaced next, round robin. 
+
+	private float[] xExactFloatArray;
+	private float[] yExactFloatArray;
+	private float[] zExactFloatArray;
+
+	private long[] timeExactLongArray;
+
+	private boolean exactArraysValidBoolean = false;
+
+	// Features of this window, computed once on the first request. 
+
+	private final WindowFeatures windowFeatures;
 
-	private ArrayList<Long> timeLongArrayList;
+	private boolean featuresValidBoolean = false;
 
-	public ArrayList<Float> getAccelerometerXBuffer() {
-		return xFloatArrayList;
+	// Spectral features of this window, created and computed on the first request. 
+
+	private SpectralFeatures spectralFeatures;
+
+	private boolean spectralFeaturesValidBoolean = false;
+
+	// Number of parallel detections holding this RawData, see DetectionTask. 
+
+	private final AtomicInteger holderCountAtomicInteger = new AtomicInteger(0);
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  capacityIntegerIncoming  The maximum number of accelerometer samples. 
+	 * 
+	 */
+
+	RawData(int capacityIntegerIncoming) {
+		xFloatArray = new float[capacityIntegerIncoming];
+		yFloatArray = new float[capacityIntegerIncoming];
+		zFloatArray = new float[capacityIntegerIncoming];
+
+		timeLongArray = new long[capacityIntegerIncoming];
+
+		gapBooleanArray = new boolean[capacityIntegerIncoming];
+
+		windowFeatures = new WindowFeatures(capacityIntegerIncoming);
 	}
 
-	public ArrayList<Float> getAccelerometerYBuffer() {
-		return yFloatArrayList;
+	public float getAccelerometerX(int indexIntegerIncoming) {
+		return xFloatArray[indexIntegerIncoming];
 	}
 
-	public ArrayList<Float> getAccelerometerZBuffer() {
-		return zFloatArrayList;
+	public float getAccelerometerY(int indexIntegerIncoming) {
+		return yFloatArray[indexIntegerIncoming];
+	}
+
+	public float getAccelerometerZ(int indexIntegerIncoming) {
+		return zFloatArray[indexIntegerIncoming];
+	}
+
+	public long getAccelerometerTime(int indexIntegerIncoming) {
+		return timeLongArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the accelerometer x values of this window in an array, whose length is the sample count. 
+	 * <p>
+	 * The array is created at most once per window and shared by all detections, so it must not be modified. 
+	 * 
+	 */
+
+	public synchronized float[] getAccelerometerXArray() {
+		materializeExactArrays();
+
+		return xExactFloatArray;
 	}
 
-	public ArrayList<Long> getAccelerometerTimeBuffer() {
-		return timeLongArrayList;
+	/**
+	 * Returns the accelerometer y values of this window in an array, whose length is the sample count. 
+	 * <p>
+	 * The array is created at most once per window and shared by all detections, so it must not be modified. 
+	 * 
+	 */
+
+	public synchronized float[] getAccelerometerYArray() {
+		materializeExactArrays();
+
+		return yExactFloatArray;
+	}
+
+	/**
+	 * Returns the accelerometer z values of this window in an array, whose length is the sample count. 
+	 * <p>
+	 * The array is created at most once per window and shared by all detections, so it must not be modified. 
+	 * 
+	 */
+
+	public synchronized float[] getAccelerometerZArray() {
+		materializeExactArrays();
+
+		return zExactFloatArray;
+	}
+
+	/**
+	 * Returns the accelerometer timestamps of this window in an array, whose length is the sample count. 
+	 * <p>
+	 * The array is created at most once per window and shared by all detections, so it must not be modified. 
+	 * 
+	 */
+
+	public synchronized long[] getAccelerometerTimeArray() {
+		materializeExactArrays();
+
+		return timeExactLongArray;
+	}
+
+	/**
+	 * Returns the features of this window, computed on the first call and shared by all detections. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.WindowFeatures 
+	 * 
+	 */
+
+	public synchronized WindowFeatures getFeatures() {
+		if (!featuresValidBoolean) {
+			windowFeatures.compute(xFloatArray, yFloatArray, zFloatArray, sampleCountInteger);
+
+			featuresValidBoolean = true;
+		}
+
+		return windowFeatures;
+	}
+
+	/**
+	 * Returns the number of samples interpolated over a gap in the original data, always 0 if the window is not resampled. 
+	 * 
+	 */
+
+	public int getGapCount() {
+		return gapCountInteger;
+	}
+
+	/**
+	 * Returns the interval between two samples in microseconds, if the window has been resampled onto an even grid, otherwise 0. 
+	 * 
+	 */
+
+	public long getSamplePeriod() {
+		return samplePeriodLong;
+	}
+
+	/**
+	 * Returns true if the sample was interpolated over a gap in the original data, otherwise false. 
+	 * 
+	 */
+
+	public boolean isGap(int indexIntegerIncoming) {
+		return (gapCountInteger > 0) && gapBooleanArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the spectral features of the acceleration magnitude of this window, computed on the first call and shared by all detections. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SpectralFeatures 
+	 * 
+	 */
+
+	public synchronized SpectralFeatures getSpectralFeatures() {
+		if (!spectralFeaturesValidBoolean) {
+			WindowFeatures windowFeatures = getFeatures();
+
+			if (spectralFeatures == null) {
+				spectralFeatures = new SpectralFeatures(xFloatArray.length);
+			}
+
+			double sampleRateDouble = 0.0;
+
+			if (samplePeriodLong > 0) {
+				sampleRateDouble = 1000000.0 / samplePeriodLong;
+			}
+			else if ((sampleCountInteger > 1) && (timeLongArray[sampleCountInteger - 1] > timeLongArray[0])) {
+				sampleRateDouble = (sampleCountInteger - 1) * 1000000.0 / (timeLongArray[sampleCountInteger - 1] - timeLongArray[0]);
+			}
+
+			spectralFeatures.compute(windowFeatures.getMagnitudeArray(), sampleCountInteger, windowFeatures.getMean(WindowFeatures.AXIS_MAGNITUDE), sampleRateDouble);
+
+			spectralFeaturesValidBoolean = true;
+		}
+
+		return spectralFeatures;
+	}
+
+	/**
+	 * Returns the number of accelerometer samples in this window. 
+	 * 
+	 */
+
+	public int getAccelerometerSampleCount() {
+		return sampleCountInteger;
+	}
+
+	int getCapacity() {
+		return xFloatArray.length;
+	}
+
+	/**
+	 * Marks this RawData as held by a detection, it must not be reused until released. 
+	 * 
+	 */
+
+	void hold() {
+		holderCountAtomicInteger.incrementAndGet();
+	}
+
+	/**
+	 * Returns true, if a detection still holds this RawData. 
+	 * 
+	 */
+
+	boolean isHeld() {
+		return holderCountAtomicInteger.get() > 0;
+	}
+
+	/**
+	 * Releases a hold() of a detection. 
+	 * 
+	 */
+
+	void release() {
+		holderCountAtomicInteger.decrementAndGet();
 	}
 
 	public boolean hasAccelerometerData() {
-		return xFloatArrayList.size() > 0;
+		return sampleCountInteger > 0;
 	}
 
 	public boolean hasCellIDData() {
@@ -80,20 +323,217 @@ public final class RawData {
 		return false;
 	}
 
-	public void setAccelerometerTimeBuffer(ArrayList<Long> timeLongArrayListIncoming) {
-		timeLongArrayList = timeLongArrayListIncoming;
+	/**
+	 * Creates the exact length arrays, unless they are already valid for this window. 
+	 * <p>
+	 * If the window fills the whole buffer, the buffer arrays are used as such. Otherwise the cached arrays of the same 
+	 * length are reused, and new arrays replace the oldest cache entry only for a length not seen recently. 
+	 * 
+	 */
+
+	private void materializeExactArrays() {
+		if (exactArraysValidBoolean) {
+			return;
+		}
+
+		if (sampleCountInteger == xFloatArray.length) {
+			xExactFloatArray = xFloatArray;
+			yExactFloatArray = yFloatArray;
+			zExactFloatArray = zFloatArray;
+
+			timeExactLongArray = timeLongArray;
+		}
+		else {
+			int entryInteger = -1;
+
+			for (int i = 0; i < EXACT_ARRAY_CACHE_SIZE_INTEGER; i++) {
+				if ((xExactFloatArrayCache[i] != null) && (xExactFloatArrayCache[i].length == sampleCountInteger)) {
+					entryInteger = i;
+
+					break;
+				}
+			}
+
+			if (entryInteger < 0) {
+				entryInteger = exactArrayCacheNextInteger;
+
+				exactArrayCacheNextInteger = (exactArrayCacheNextInteger + 1) % EXACT_ARRAY_CACHE_SIZE_INTEGER;
+
+				xExactFloatArrayCache[entryInteger] = new float[sampleCountInteger];
+				yExactFloatArrayCache[entryInteger] = new float[sampleCountInteger];
+				zExactFloatArrayCache[entryInteger] = new float[sampleCountInteger];
+
+				timeExactLongArrayCache[entryInteger] = new long[sampleCountInteger];
+			}
+
+			xExactFloatArray = xExactFloatArrayCache[entryInteger];
+			yExactFloatArray = yExactFloatArrayCache[entryInteger];
+			zExactFloatArray = zExactFloatArrayCache[entryInteger];
+
+			timeExactLongArray = timeExactLongArrayCache[entryInteger];
+
+			System.arraycopy(xFloatArray, 0, xExactFloatArray, 0, sampleCountInteger);
+			System.arraycopy(yFloatArray, 0, yExactFloatArray, 0, sampleCountInteger);
+			System.arraycopy(zFloatArray, 0, zExactFloatArray, 0, sampleCountInteger);
+			System.arraycopy(timeLongArray, 0, timeExactLongArray, 0, sampleCountInteger);
+		}
+
+		exactArraysValidBoolean = true;
+	}
+
+	/**
+	 * Copies a slice of another RawData into this RawData, replacing the previous contents. 
+	 * <p>
+	 * Every stepIntegerIncoming'th sample is taken, starting from fromIndexIntegerIncoming up to the end of the window. 
+	 * 
+	 * @param  rawDataIncoming  The RawData to copy from, its capacity must not exceed the capacity of this RawData. 
+	 * @param  fromIndexIntegerIncoming  Index of the first sample. 
+	 * @param  stepIntegerIncoming  The decimation step, 1 for all the samples. 
+	 * 
+	 */
+
+	synchronized void readFrom(RawData rawDataIncoming, int fromIndexIntegerIncoming, int stepIntegerIncoming) {
+		exactArraysValidBoolean = false;
+		featuresValidBoolean = false;
+		spectralFeaturesValidBoolean = false;
+
+		int countInteger = 0;
+		int gapCountInteger = 0;
+
+		for (int i = fromIndexIntegerIncoming; i < rawDataIncoming.sampleCountInteger; i += stepIntegerIncoming) {
+			xFloatArray[countInteger] = rawDataIncoming.xFloatArray[i];
+			yFloatArray[countInteger] = rawDataIncoming.yFloatArray[i];
+			zFloatArray[countInteger] = rawDataIncoming.zFloatArray[i];
+
+			timeLongArray[countInteger] = rawDataIncoming.timeLongArray[i];
+
+			boolean gapBoolean = rawDataIncoming.isGap(i);
+
+			gapBooleanArray[countInteger] = gapBoolean;
+
+			if (gapBoolean) {
+				gapCountInteger++;
+			}
+
+			countInteger++;
+		}
+
+		sampleCountInteger = countInteger;
+
+		this.gapCountInteger = gapCountInteger;
+
+		samplePeriodLong = rawDataIncoming.samplePeriodLong * stepIntegerIncoming;
 	}
 
-	public void setAccelerometerXBuffer(ArrayList<Float> xFloatArrayListIncoming) {
-		xFloatArrayList = xFloatArrayListIncoming;
+	/**
+	 * Resamples another RawData onto an even grid into this RawData, replacing the previous contents. 
+	 * <p>
+	 * The grid starts at the first sample of the window and covers the whole window. Samples between two original samples 
+	 * further apart than gapLongIncoming are interpolated linearly and marked as gaps. 
+	 * 
+	 * @param  rawDataIncoming  The RawData to resample, at least 2 samples. 
+	 * @param  periodLongIncoming  The interval of the grid in microseconds. 
+	 * @param  cubicBooleanIncoming  True for cubic (Catmull-Rom) interpolation, false for linear interpolation. 
+	 * @param  gapLongIncoming  The longest interval between two original samples, that is not a gap, in microseconds. 
+	 * 
+	 */
+
+	synchronized void resampleFrom(RawData rawDataIncoming, long periodLongIncoming, boolean cubicBooleanIncoming, long gapLongIncoming) {
+		exactArraysValidBoolean = false;
+		featuresValidBoolean = false;
+		spectralFeaturesValidBoolean = false;
+
+		float[] xSourceFloatArray = rawDataIncoming.xFloatArray;
+		float[] ySourceFloatArray = rawDataIncoming.yFloatArray;
+		float[] zSourceFloatArray = rawDataIncoming.zFloatArray;
+
+		long[] timeSourceLongArray = rawDataIncoming.timeLongArray;
+
+		int sourceCountInteger = rawDataIncoming.sampleCountInteger;
+
+		long firstTimeLong = timeSourceLongArray[0];
+
+		int countInteger = (int)Math.min(xFloatArray.length, (timeSourceLongArray[sourceCountInteger - 1] - firstTimeLong) / periodLongIncoming + 1);
+
+		int gapCountInteger = 0;
+
+		int j = 0; // Original sample at or before the grid time. 
+
+		for (int i = 0; i < countInteger; i++) {
+			long timeLong = firstTimeLong + i * periodLongIncoming;
+
+			while ((j < sourceCountInteger - 2) && (timeSourceLongArray[j + 1] <= timeLong)) {
+				j++;
+			}
+
+			long intervalLong = timeSourceLongArray[j + 1] - timeSourceLongArray[j];
+
+			float uFloat = (intervalLong > 0) ? Math.min(1.0f, Math.max(0.0f, (float)(timeLong - timeSourceLongArray[j]) / intervalLong)) : 0.0f;
+
+			boolean gapBoolean = intervalLong > gapLongIncoming;
+
+			if (cubicBooleanIncoming && !gapBoolean) {
+				int previousInteger = Math.max(0, j - 1);
+				int nextInteger = Math.min(sourceCountInteger - 1, j + 2);
+
+				xFloatArray[i] = interpolateCubic(xSourceFloatArray[previousInteger], xSourceFloatArray[j], xSourceFloatArray[j + 1], xSourceFloatArray[nextInteger], uFloat);
+				yFloatArray[i] = interpolateCubic(ySourceFloatArray[previousInteger], ySourceFloatArray[j], ySourceFloatArray[j + 1], ySourceFloatArray[nextInteger], uFloat);
+				zFloatArray[i] = interpolateCubic(zSourceFloatArray[previousInteger], zSourceFloatArray[j], zSourceFloatArray[j + 1], zSourceFloatArray[nextInteger], uFloat);
+			}
+			else {
+				xFloatArray[i] = xSourceFloatArray[j] + (xSourceFloatArray[j + 1] - xSourceFloatArray[j]) * uFloat;
+				yFloatArray[i] = ySourceFloatArray[j] + (ySourceFloatArray[j + 1] - ySourceFloatArray[j]) * uFloat;
+				zFloatArray[i] = zSourceFloatArray[j] + (zSourceFloatArray[j + 1] - zSourceFloatArray[j]) * uFloat;
+			}
+
+			timeLongArray[i] = timeLong;
+
+			gapBooleanArray[i] = gapBoolean;
+
+			if (gapBoolean) {
+				gapCountInteger++;
+			}
+		}
+
+		sampleCountInteger = countInteger;
+
+		this.gapCountInteger = gapCountInteger;
+
+		samplePeriodLong = periodLongIncoming;
 	}
 
-	public void setAccelerometerYBuffer(ArrayList<Float> yFloatArrayListIncoming) {
-		yFloatArrayList = yFloatArrayListIncoming;
+	/**
+	 * Catmull-Rom interpolation between p1 and p2 at u in [0, 1]. 
+	 * 
+	 */
+
+	private static float interpolateCubic(float p0FloatIncoming, float p1FloatIncoming, float p2FloatIncoming, float p3FloatIncoming, float uFloatIncoming) {
+		float u2Float = uFloatIncoming * uFloatIncoming;
+		float u3Float = u2Float * uFloatIncoming;
+
+		return 0.5f * ((2.0f * p1FloatIncoming) + (p2FloatIncoming - p0FloatIncoming) * uFloatIncoming 
+				+ (2.0f * p0FloatIncoming - 5.0f * p1FloatIncoming + 4.0f * p2FloatIncoming - p3FloatIncoming) * u2Float 
+				+ (3.0f * p1FloatIncoming - p0FloatIncoming - 3.0f * p2FloatIncoming + p3FloatIncoming) * u3Float);
 	}
 
-	public void setAccelerometerZBuffer(ArrayList<Float> zFloatArrayListIncoming) {
-		zFloatArrayList = zFloatArrayListIncoming;
+	/**
+	 * Copies a window from the ring buffer into this RawData, replacing the previous contents. 
+	 * 
+	 * @param  accelerometerRingBufferIncoming  The ring buffer to copy from. 
+	 * @param  fromSequenceLongIncoming  Sequence number of the first sample (inclusive). 
+	 * @param  toSequenceLongIncoming  Sequence number of the last sample (exclusive). 
+	 * 
+	 */
+
+	synchronized void readFrom(AccelerometerRingBuffer accelerometerRingBufferIncoming, long fromSequenceLongIncoming, long toSequenceLongIncoming) {
+		exactArraysValidBoolean = false;
+		featuresValidBoolean = false;
+		spectralFeaturesValidBoolean = false;
+
+		gapCountInteger = 0;
+		samplePeriodLong = 0;
+
+		sampleCountInteger = accelerometerRingBufferIncoming.read(fromSequenceLongIncoming, toSequenceLongIncoming, xFloatArray, yFloatArray, zFloatArray, timeLongArray);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * A slice of the window for one window duration and minimum rate, double buffered like the windows of DataCollector. 
+ * A slice still held by a detection is not reused. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RawDataSlicer 
+ * 
+ */
+
+final class RawDataSlice {
+
+	private final long windowDurationLong;
+
+	private final int minimumRateInteger;
+
+	private RawData[] rawDataArray = new RawData[DataCollector.WINDOW_BUFFER_COUNT_INTEGER];
+
+	private int rawDataIndexInteger = 0;
+
+	// The slice of the current window, null until requested. 
+
+	private RawData currentRawData;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  windowDurationLongIncoming  The length of the newest part of the window in milliseconds, 0 for the whole window. 
+	 * @param  minimumRateIntegerIncoming  The minimum rate in Hz, 0 for all the samples. 
+	 * 
+	 */
+
+	RawDataSlice(long windowDurationLongIncoming, int minimumRateIntegerIncoming) {
+		windowDurationLong = windowDurationLongIncoming;
+		minimumRateInteger = minimumRateIntegerIncoming;
+	}
+
+	/**
+	 * Returns the slice of the given window, computed on the first call for the window. 
+	 * <p>
+	 * The window is decimated by taking every n'th sample, the largest n that keeps the rate at the minimum rate or above. 
+	 * If the slice would contain all the samples, the window itself is returned. 
+	 * 
+	 * @param  rawDataIncoming  The whole window. 
+	 * 
+	 */
+
+	RawData getRawData(RawData rawDataIncoming) {
+		if (currentRawData != null) {
+			return currentRawData;
+		}
+
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
+
+		int fromIndexInteger = 0;
+
+		if ((windowDurationLong > 0) && (sampleCountInteger > 0)) {
+			long startTimeLong = rawDataIncoming.getAccelerometerTime(sampleCountInteger - 1) - windowDurationLong * 1000;
+
+			// Binary search for the first sample at or after the start time: 
+
+			int lowInteger = 0;
+			int highInteger = sampleCountInteger - 1;
+
+			while (lowInteger < highInteger) {
+				int middleInteger = (lowInteger + highInteger) >>> 1;
+
+				if (rawDataIncoming.getAccelerometerTime(middleInteger) < startTimeLong) {
+					lowInteger = middleInteger + 1;
+				}
+				else {
+					highInteger = middleInteger;
+				}
+			}
+
+			fromIndexInteger = lowInteger;
+		}
+
+		int stepInteger = 1;
+
+		if ((minimumRateInteger > 0) && (sampleCountInteger - fromIndexInteger > 1)) {
+			long spanLong = rawDataIncoming.getAccelerometerTime(sampleCountInteger - 1) - rawDataIncoming.getAccelerometerTime(fromIndexInteger);
+
+			if (spanLong > 0) {
+				double rateDouble = (sampleCountInteger - 1 - fromIndexInteger) * 1000000.0 / spanLong;
+
+				stepInteger = Math.max(1, (int)(rateDouble / minimumRateInteger));
+			}
+		}
+
+		if ((fromIndexInteger == 0) && (stepInteger == 1)) {
+			currentRawData = rawDataIncoming;
+
+			return currentRawData;
+		}
+
+		rawDataIndexInteger = (rawDataIndexInteger + 1) % DataCollector.WINDOW_BUFFER_COUNT_INTEGER;
+
+		RawData rawData = rawDataArray[rawDataIndexInteger];
+
+		if (rawData == null || rawData.isHeld() || rawData.getCapacity() < rawDataIncoming.getCapacity()) {
+			rawData = new RawData(rawDataIncoming.getCapacity());
+
+			rawDataArray[rawDataIndexInteger] = rawData;
+		}
+
+		rawData.readFrom(rawDataIncoming, fromIndexInteger, stepInteger);
+
+		currentRawData = rawData;
+
+		return currentRawData;
+	}
+
+	int getMinimumRate() {
+		return minimumRateInteger;
+	}
+
+	long getWindowDuration() {
+		return windowDurationLong;
+	}
+
+	/**
+	 * Forgets the slice of the previous window. 
+	 * 
+	 */
+
+	void reset() {
+		currentRawData = null;
+	}
+
+}
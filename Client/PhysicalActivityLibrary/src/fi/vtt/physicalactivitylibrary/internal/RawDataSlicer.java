@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import java.util.ArrayList;
+
+/**
+ * Serves each detection the part of the window it needs, see DataCollectorObserver.getWindowDuration() and getMinimumRate(). 
+ * <p>
+ * All the slices are cut from the one window copied from the shared sample stream. Detections with the same window 
+ * duration and minimum rate share one slice, which is computed at most once per window and reused between windows. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RawDataSlice 
+ * 
+ */
+
+final class RawDataSlicer {
+
+	private ArrayList<RawDataSlice> rawDataSlicesArrayList = new ArrayList<RawDataSlice>();
+
+	private RawData rawData;
+
+	/**
+	 * Starts a new window, the slices are computed on request. 
+	 * 
+	 * @param  rawDataIncoming  The whole window. 
+	 * 
+	 */
+
+	void beginWindow(RawData rawDataIncoming) {
+		rawData = rawDataIncoming;
+
+		for (int i = 0; i < rawDataSlicesArrayList.size(); i++) {
+			rawDataSlicesArrayList.get(i).reset();
+		}
+	}
+
+	/**
+	 * Returns the part of the current window the given detection needs. 
+	 * 
+	 * @param  dataCollectorObserverIncoming  The detection. 
+	 * 
+	 */
+
+	RawData getRawData(DataCollectorObserver dataCollectorObserverIncoming) {
+		long windowDurationLong = dataCollectorObserverIncoming.getWindowDuration();
+
+		int minimumRateInteger = dataCollectorObserverIncoming.getMinimumRate();
+
+		if ((windowDurationLong <= 0) && (minimumRateInteger <= 0)) {
+			return rawData;
+		}
+
+		RawDataSlice rawDataSlice = null;
+
+		for (int i = 0; i < rawDataSlicesArrayList.size(); i++) {
+			RawDataSlice candidateRawDataSlice = rawDataSlicesArrayList.get(i);
+
+			if ((candidateRawDataSlice.getWindowDuration() == windowDurationLong) && (candidateRawDataSlice.getMinimumRate() == minimumRateInteger)) {
+				rawDataSlice = candidateRawDataSlice;
+
+				break;
+			}
+		}
+
+		if (rawDataSlice == null) {
+			rawDataSlice = new RawDataSlice(windowDurationLong, minimumRateInteger);
+
+			rawDataSlicesArrayList.add(rawDataSlice);
+		}
+
+		return rawDataSlice.getRawData(rawData);
+	}
+
+}
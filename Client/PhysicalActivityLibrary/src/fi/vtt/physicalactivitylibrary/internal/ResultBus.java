@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Routes the results to the subscribers, that are interested in them. 
+ * <p>
+ * Each subscriber registers with a bit mask of detection types and an optional executor. A result is routed to a subscriber 
+ * only if one of its detections changed (or, for a heartbeat without changes, is present), and the subscriber receives 
+ * only the values of its detections. Subscribers without an executor are called on the publishing thread with a snapshot 
+ * preallocated for them, so routing allocates nothing. With an executor, the snapshot is copied for each delivery. 
+ * A map is built only for a matching Map subscriber. As the Map callback, Map subscribers get the window results only, 
+ * not the changes reported between the windows. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * 
+ */
+
+final class ResultBus {
+
+	private static final class Subscriber {
+
+		private final PhysicalActivityLibraryCallback physicalActivityLibraryCallback;
+		private final PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallback;
+
+		private final int detectionMaskInteger;
+
+		private final Executor executor; // Null to deliver on the publishing thread. 
+
+		private final ActivitySnapshot activitySnapshot = new ActivitySnapshot();
+
+		private Subscriber(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming, PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+			physicalActivityLibraryCallback = physicalActivityLibraryCallbackIncoming;
+			physicalActivityLibrarySnapshotCallback = physicalActivityLibrarySnapshotCallbackIncoming;
+			detectionMaskInteger = detectionMaskIntegerIncoming;
+			executor = executorIncoming;
+		}
+
+		private boolean hasCallback(Object callbackIncoming) {
+			return (physicalActivityLibraryCallback == callbackIncoming) || (physicalActivityLibrarySnapshotCallback == callbackIncoming);
+		}
+
+		private void deliver(ActivitySnapshot activitySnapshotIncoming) {
+			if (physicalActivityLibrarySnapshotCallback != null) {
+				physicalActivityLibrarySnapshotCallback.newActivitySnapshot(activitySnapshotIncoming);
+			}
+			else {
+				Map<Integer, Double> recognitionsIntegerDoubleMap = new HashMap<Integer, Double>();
+
+				activitySnapshotIncoming.putInto(recognitionsIntegerDoubleMap);
+
+				physicalActivityLibraryCallback.newActivityInfo(recognitionsIntegerDoubleMap);
+			}
+		}
+
+	}
+
+	// Read by the publishing thread, replaced (copy on write) when a subscriber is added or removed. 
+
+	private volatile Subscriber[] subscribersArray = new Subscriber[0];
+
+	/**
+	 * Returns true, if there are no subscribers, otherwise false. 
+	 * 
+	 */
+
+	boolean isEmpty() {
+		return subscribersArray.length == 0;
+	}
+
+	/**
+	 * Routes the results to the interested subscribers. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results, not modified. 
+	 * 
+	 */
+
+	void publish(ActivitySnapshot activitySnapshotIncoming) {
+		Subscriber[] subscribersArray = this.subscribersArray;
+
+		int routeMaskInteger = activitySnapshotIncoming.getChangeMask();
+
+		if (routeMaskInteger == 0) {
+			routeMaskInteger = activitySnapshotIncoming.getPresenceMask(); // Heartbeat. 
+		}
+
+		for (int i = 0; i < subscribersArray.length; i++) {
+			final Subscriber subscriber = subscribersArray[i];
+
+			if ((routeMaskInteger & subscriber.detectionMaskInteger) == 0) {
+				continue;
+			}
+
+			if ((subscriber.physicalActivityLibrarySnapshotCallback == null) && (activitySnapshotIncoming.getWindowEndTime() == 0)) {
+				continue; // An immediately reported change, a Map subscriber keeps getting complete windows only. 
+			}
+
+			if (subscriber.executor == null) {
+				activitySnapshotIncoming.copyTo(subscriber.activitySnapshot, subscriber.detectionMaskInteger);
+
+				subscriber.deliver(subscriber.activitySnapshot);
+			}
+			else {
+				final ActivitySnapshot activitySnapshot = new ActivitySnapshot();
+
+				activitySnapshotIncoming.copyTo(activitySnapshot, subscriber.detectionMaskInteger);
+
+				subscriber.executor.execute(new Runnable() {
+					public void run() {
+						subscriber.deliver(activitySnapshot);
+					}
+				});
+			}
+		}
+	}
+
+	/**
+	 * Adds a subscriber, replaces the earlier subscription of the same callback. 
+	 * 
+	 * @param  physicalActivityLibraryCallbackIncoming  The Map callback, or null if a snapshot callback is given. 
+	 * @param  physicalActivityLibrarySnapshotCallbackIncoming  The snapshot callback, or null if a Map callback is given. 
+	 * @param  detectionMaskIntegerIncoming  Bit (1 << type) is set for each detection of interest. 
+	 * @param  executorIncoming  Delivers the results, null to deliver on the publishing thread. 
+	 * 
+	 */
+
+	synchronized void subscribe(PhysicalActivityLibraryCallback physicalActivityLibraryCallbackIncoming, PhysicalActivityLibrarySnapshotCallback physicalActivityLibrarySnapshotCallbackIncoming, int detectionMaskIntegerIncoming, Executor executorIncoming) {
+		unsubscribe((physicalActivityLibraryCallbackIncoming != null) ? physicalActivityLibraryCallbackIncoming : physicalActivityLibrarySnapshotCallbackIncoming);
+
+		Subscriber[] oldArray = subscribersArray;
+		Subscriber[] newArray = new Subscriber[oldArray.length + 1];
+
+		System.arraycopy(oldArray, 0, newArray, 0, oldArray.length);
+
+		newArray[oldArray.length] = new Subscriber(physicalActivityLibraryCallbackIncoming, physicalActivityLibrarySnapshotCallbackIncoming, detectionMaskIntegerIncoming, executorIncoming);
+
+		subscribersArray = newArray;
+	}
+
+	/**
+	 * Removes a subscriber. 
+	 * 
+	 * @param  callbackIncoming  The Map or snapshot callback of the subscriber. 
+	 * 
+	 * @return  True, if the subscriber was found, otherwise false. 
+	 * 
+	 */
+
+	synchronized boolean unsubscribe(Object callbackIncoming) {
+		Subscriber[] oldArray = subscribersArray;
+
+		for (int i = 0; i < oldArray.length; i++) {
+			if (oldArray[i].hasCallback(callbackIncoming)) {
+				Subscriber[] newArray = new Subscriber[oldArray.length - 1];
+
+				System.arraycopy(oldArray, 0, newArray, 0, i);
+				System.arraycopy(oldArray, i + 1, newArray, i, oldArray.length - i - 1);
+
+				subscribersArray = newArray;
+
+				return true;
+			}
+		}
+
+		return false;
+	}
+
+}
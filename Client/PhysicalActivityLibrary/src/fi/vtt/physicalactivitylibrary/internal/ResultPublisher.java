@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryPublisher;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySubscriber;
+
+/**
+ * Publishes the results to the subscriptions of all the publishers created by createPublisher(). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.ResultSubscription 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * 
+ */
+
+final class ResultPublisher {
+
+	// Read by the publishing thread, replaced (copy on write) when a subscription is added or cancelled. 
+
+	private volatile ResultSubscription[] resultSubscriptionsArray = new ResultSubscription[0];
+
+	/**
+	 * Creates a publisher, whose subscriptions use the given backpressure policy. 
+	 * 
+	 * @param  backpressurePolicyIntegerIncoming  BACKPRESSURE_LATEST or BACKPRESSURE_DROP. 
+	 * 
+	 */
+
+	PhysicalActivityLibraryPublisher<ActivitySnapshot> createPublisher(final int backpressurePolicyIntegerIncoming) {
+		return new PhysicalActivityLibraryPublisher<ActivitySnapshot>() {
+			@Override
+			public void subscribe(PhysicalActivityLibrarySubscriber<? super ActivitySnapshot> physicalActivityLibrarySubscriberIncoming) {
+				ResultSubscription resultSubscription = new ResultSubscription(ResultPublisher.this, physicalActivityLibrarySubscriberIncoming, backpressurePolicyIntegerIncoming);
+
+				add(resultSubscription);
+
+				physicalActivityLibrarySubscriberIncoming.onSubscribe(resultSubscription);
+			}
+		};
+	}
+
+	/**
+	 * Returns true, if there are no subscriptions, otherwise false. 
+	 * 
+	 */
+
+	boolean isEmpty() {
+		return resultSubscriptionsArray.length == 0;
+	}
+
+	/**
+	 * Offers the results to all the subscriptions. 
+	 * 
+	 * @param  activitySnapshotIncoming  The results, not modified. 
+	 * 
+	 */
+
+	void publish(ActivitySnapshot activitySnapshotIncoming) {
+		ResultSubscription[] resultSubscriptionsArray = this.resultSubscriptionsArray;
+
+		for (int i = 0; i < resultSubscriptionsArray.length; i++) {
+			resultSubscriptionsArray[i].offer(activitySnapshotIncoming);
+		}
+	}
+
+	private synchronized void add(ResultSubscription resultSubscriptionIncoming) {
+		ResultSubscription[] oldArray = resultSubscriptionsArray;
+		ResultSubscription[] newArray = new ResultSubscription[oldArray.length + 1];
+
+		System.arraycopy(oldArray, 0, newArray, 0, oldArray.length);
+
+		newArray[oldArray.length] = resultSubscriptionIncoming;
+
+		resultSubscriptionsArray = newArray;
+	}
+
+	/**
+	 * Removes a cancelled subscription. 
+	 * 
+	 * @param  resultSubscriptionIncoming  The subscription. 
+	 * 
+	 */
+
+	synchronized void remove(ResultSubscription resultSubscriptionIncoming) {
+		ResultSubscription[] oldArray = resultSubscriptionsArray;
+
+		for (int i = 0; i < oldArray.length; i++) {
+			if (oldArray[i] == resultSubscriptionIncoming) {
+				ResultSubscription[] newArray = new ResultSubscription[oldArray.length - 1];
+
+				System.arraycopy(oldArray, 0, newArray, 0, i);
+				System.arraycopy(oldArray, i + 1, newArray, i, oldArray.length - i - 1);
+
+				resultSubscriptionsArray = newArray;
+
+				return;
+			}
+		}
+	}
+
+}
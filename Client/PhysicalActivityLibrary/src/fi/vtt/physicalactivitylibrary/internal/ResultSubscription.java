@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySubscriber;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySubscription;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+
+/**
+ * Subscription of one subscriber, implements PhysicalActivityLibrarySubscription. 
+ * <p>
+ * Results are never queued: a result is kept in one preallocated pending slot until it is emitted. Without demand the slot 
+ * keeps the latest result (BACKPRESSURE_LATEST), or the results are dropped (BACKPRESSURE_DROP). The latest result is 
+ * merged into the pending one: the values of the detections missing from it, for example from an immediately reported 
+ * change, and the window of a pending window result are kept, and the change masks are combined. The subscriber receives a 
+ * copy of the result. The results are emitted on the publishing thread, or on the thread that calls request(), but never 
+ * concurrently. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.ResultPublisher 
+ * 
+ */
+
+final class ResultSubscription implements PhysicalActivityLibrarySubscription {
+
+	private final ResultPublisher resultPublisher;
+
+	private final PhysicalActivityLibrarySubscriber<? super ActivitySnapshot> physicalActivityLibrarySubscriber;
+
+	private final int backpressurePolicyInteger;
+
+	private long demandLong = 0;
+
+	private boolean cancelledBoolean = false;
+	private boolean emittingBoolean = false;
+	private boolean pendingBoolean = false;
+
+	private final WritableActivitySnapshot pendingActivitySnapshot = new WritableActivitySnapshot();
+
+	// The pending result while merging. 
+
+	private final WritableActivitySnapshot coalesceActivitySnapshot = new WritableActivitySnapshot();
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  resultPublisherIncoming  The publisher, the subscription is removed from it when cancelled. 
+	 * @param  physicalActivityLibrarySubscriberIncoming  The subscriber. 
+	 * @param  backpressurePolicyIntegerIncoming  BACKPRESSURE_LATEST or BACKPRESSURE_DROP. 
+	 * 
+	 */
+
+	ResultSubscription(ResultPublisher resultPublisherIncoming, PhysicalActivityLibrarySubscriber<? super ActivitySnapshot> physicalActivityLibrarySubscriberIncoming, int backpressurePolicyIntegerIncoming) {
+		resultPublisher = resultPublisherIncoming;
+		physicalActivityLibrarySubscriber = physicalActivityLibrarySubscriberIncoming;
+		backpressurePolicyInteger = backpressurePolicyIntegerIncoming;
+	}
+
+	@Override
+	public void cancel() {
+		synchronized (this) {
+			if (cancelledBoolean) {
+				return;
+			}
+
+			cancelledBoolean = true;
+			pendingBoolean = false;
+		}
+
+		resultPublisher.remove(this);
+	}
+
+	/**
+	 * Emits the pending result, as long as there is demand and no other thread is emitting. 
+	 * 
+	 */
+
+	private void drain() {
+		while (true) {
+			ActivitySnapshot activitySnapshot;
+
+			synchronized (this) {
+				if (emittingBoolean || cancelledBoolean || !pendingBoolean || (demandLong == 0)) {
+					return;
+				}
+
+				activitySnapshot = new ActivitySnapshot();
+
+				pendingActivitySnapshot.copyTo(activitySnapshot);
+
+				pendingBoolean = false;
+
+				if (demandLong != Long.MAX_VALUE) {
+					demandLong--;
+				}
+
+				emittingBoolean = true;
+			}
+
+			try {
+				physicalActivityLibrarySubscriber.onNext(activitySnapshot);
+			}
+			finally {
+				synchronized (this) {
+					emittingBoolean = false;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Offers a result, called on the publishing thread. 
+	 * 
+	 * @param  activitySnapshotIncoming  The result, copied before returning. 
+	 * 
+	 */
+
+	void offer(ActivitySnapshot activitySnapshotIncoming) {
+		synchronized (this) {
+			if (cancelledBoolean) {
+				return;
+			}
+
+			if ((demandLong == 0) && (backpressurePolicyInteger == VTTPhysicalActivityLibrary.BACKPRESSURE_DROP)) {
+				return;
+			}
+
+			if (pendingBoolean) {
+				pendingActivitySnapshot.coalesce(activitySnapshotIncoming, coalesceActivitySnapshot);
+			}
+			else {
+				activitySnapshotIncoming.copyTo(pendingActivitySnapshot);
+
+				pendingBoolean = true;
+			}
+		}
+
+		drain();
+	}
+
+	@Override
+	public void request(long countLongIncoming) {
+		if (countLongIncoming <= 0) {
+			cancel();
+
+			physicalActivityLibrarySubscriber.onError(new IllegalArgumentException("request() count must be positive: " + countLongIncoming));
+
+			return;
+		}
+
+		synchronized (this) {
+			demandLong += countLongIncoming;
+
+			if (demandLong < 0) {
+				demandLong = Long.MAX_VALUE; // Overflow, unbounded demand. 
+			}
+		}
+
+		drain();
+	}
+
+}
@@ -30,20 +30,20 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
-import java.util.ArrayList;
 
 /**
- * Run and walk detection, implements DataCollectorObserver. 
+ * Run and walk detection, implements RunAndWalkObserver. 
  * 
- * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RunAndWalkObserver 
  *
  */
 
-public class RunAndWalkDetection implements DataCollectorObserver {
+public class RunAndWalkDetection implements RunAndWalkObserver {
 
 	private double runValueDouble = 0.0;
 	private double walkValueDouble = 0.0;
 
+	@Override
 	public double getRunValue() {
 		return runValueDouble;
 	}
@@ -53,6 +53,7 @@ public class RunAndWalkDetection implements DataCollectorObserver {
 		return -1;
 	}
 
+	@Override
 	public double getWalkValue() {
 		return walkValueDouble;
 	}
@@ -62,6 +63,16 @@ public class RunAndWalkDetection implements DataCollectorObserver {
 		return VTTPhysicalActivityLibrary.DETECTION_RUN_AND_WALK;
 	}
 
+	@Override
+	public int getMinimumRate() {
+		return 0;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
 	public native double[] doRunAndWalkDetection(float[] xFloatArrayIncoming, float[] yFloatArrayIncoming, float[] zFloatArrayIncoming, long[] timeLongArrayIncoming);
 
 	public String getRunTag() {
@@ -84,38 +95,20 @@ public class RunAndWalkDetection implements DataCollectorObserver {
 			return; // No reason to continue without data. 
 		}
 
-		ArrayList<Float> xFloatArrayList = rawDataIncoming.getAccelerometerXBuffer();
-		ArrayList<Float> yFloatArrayList = rawDataIncoming.getAccelerometerYBuffer();
-		ArrayList<Float> zFloatArrayList = rawDataIncoming.getAccelerometerZBuffer();
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
 
-		ArrayList<Long> timeLongArrayList = rawDataIncoming.getAccelerometerTimeBuffer();
-
-		if (timeLongArrayList.size() < 16) {
+		if (sampleCountInteger < 16) {
 			runValueDouble = 0.0; // No data
 			return; // Cannot continue with too few data points. 
 		}
 
-		float[] xFloatArray = new float[xFloatArrayList.size()];
-		float[] yFloatArray = new float[yFloatArrayList.size()];
-		float[] zFloatArray = new float[zFloatArrayList.size()];
-
-		long[] timeLongArray = new long[timeLongArrayList.size()];
-
-		for (int i = 0; i < xFloatArrayList.size(); i++) {
-			xFloatArray[i] = xFloatArrayList.get(i);
-		}
-
-		for (int i = 0; i < yFloatArrayList.size(); i++) {
-			yFloatArray[i] = yFloatArrayList.get(i);
-		}
+		// Shared by all the native detections of this window: 
 
-		for (int i = 0; i < zFloatArrayList.size(); i++) {
-			zFloatArray[i] = zFloatArrayList.get(i);
-		}
+		float[] xFloatArray = rawDataIncoming.getAccelerometerXArray();
+		float[] yFloatArray = rawDataIncoming.getAccelerometerYArray();
+		float[] zFloatArray = rawDataIncoming.getAccelerometerZArray();
 
-		for (int i = 0; i < timeLongArrayList.size(); i++) {
-			timeLongArray[i] = timeLongArrayList.get(i);
-		}
+		long[] timeLongArray = rawDataIncoming.getAccelerometerTimeArray();
 
 		double[] valuesDoubleArray = doRunAndWalkDetection(xFloatArray, yFloatArray, zFloatArray, timeLongArray);
 
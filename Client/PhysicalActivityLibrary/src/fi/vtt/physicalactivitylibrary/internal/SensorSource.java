@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Interface for a source of sensor data (accelerometer, light and proximity). 
+ * <p>
+ * Consumed by DataCollector, so the detection pipeline does not depend on the Android sensor framework. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.AndroidSensorSource 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSourceListener 
+ * @see  fi.vtt.physicalactivitylibrary.internal.TraceReplaySensorSource 
+ * 
+ */
+
+public interface SensorSource {
+
+	/**
+	 * Method to be implemented in all sensor sources. 
+	 * 
+	 * @return  Minimum delay between two accelerometer samples in microseconds, 0 if not known. 
+	 * 
+	 */
+
+	public abstract int getAccelerometerMinDelay();
+
+	/**
+	 * Method to be implemented in all sensor sources. 
+	 * 
+	 * @return  True, if the samples are delivered in real time, otherwise false (for example a trace replayed as fast as possible). 
+	 * 
+	 */
+
+	public abstract boolean isRealTime();
+
+	/**
+	 * Sets the delay between two accelerometer samples, also while the source is started. 
+	 * <p>
+	 * Like on Android, the delay is only a hint: the samples may be delivered faster. 
+	 * 
+	 * @param  delayIntegerIncoming  The delay in microseconds, 0 for the fastest rate. 
+	 * 
+	 */
+
+	public abstract void setAccelerometerDelay(int delayIntegerIncoming);
+
+	/**
+	 * Starts delivering sensor data to the given listener. 
+	 * <p>
+	 * Sensors that are not available are reported with SensorSourceListener.sensorFailed(). 
+	 * 
+	 * @param  sensorSourceListenerIncoming  The listener that receives the data. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.SensorSourceListener 
+	 * 
+	 */
+
+	public abstract void start(SensorSourceListener sensorSourceListenerIncoming);
+
+	/**
+	 * Stops delivering sensor data. 
+	 * 
+	 */
+
+	public abstract void stop();
+
+}
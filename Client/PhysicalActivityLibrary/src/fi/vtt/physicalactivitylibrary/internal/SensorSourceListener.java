@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Interface for receiving data from a SensorSource. 
+ * <p>
+ * Implemented by DataCollector. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+ * 
+ */
+
+public interface SensorSourceListener {
+
+	/**
+	 * Called when a new accelerometer sample is available. 
+	 * 
+	 * @param  xFloatIncoming  Acceleration along the x axis in m/s^2. 
+	 * @param  yFloatIncoming  Acceleration along the y axis in m/s^2. 
+	 * @param  zFloatIncoming  Acceleration along the z axis in m/s^2. 
+	 * @param  timeLongIncoming  The sample timestamp in microseconds. 
+	 * 
+	 */
+
+	public abstract void accelerometerChanged(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming);
+
+	/**
+	 * Called when a new light value is available. 
+	 * 
+	 * @param  lightFloatIncoming  Ambient light level in SI lux units. 
+	 * 
+	 */
+
+	public abstract void lightChanged(float lightFloatIncoming);
+
+	/**
+	 * Called when a new proximity value is available. 
+	 * 
+	 * @param  proximityFloatIncoming  Proximity sensor distance measured in centimeters. 
+	 * 
+	 */
+
+	public abstract void proximityChanged(float proximityFloatIncoming);
+
+	/**
+	 * Called if a sensor is not available. 
+	 * 
+	 * @param  errorCodeIntegerIncoming  The error type integer value, see the error codes in VTTPhysicalActivityLibrary. 
+	 * 
+	 */
+
+	public abstract void sensorFailed(int errorCodeIntegerIncoming);
+
+}
@@ -0,0 +1,316 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Per-window spectral features of the acceleration magnitude, shared by all detections. 
+ * <p>
+ * Computed once per window by RawData.getSpectralFeatures(): the magnitude series (mean removed, Hann windowed, zero 
+ * padded to a power of two) is transformed with an in-place radix-2 FFT. The twiddle factors, the bit reversal 
+ * permutation and the work arrays are preallocated, computing the features does not allocate. 
+ * <p>
+ * The energies are the sums of |X(k)|^2 / n^2 over the frequency bins, so they are comparable between windows of the 
+ * same length. The frequency bands are given by BAND_EDGES_DOUBLE_ARRAY, see getBandLowerEdge() and getBandUpperEdge(). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RawData 
+ * @see  fi.vtt.physicalactivitylibrary.internal.WindowFeatures 
+ * 
+ */
+
+public final class SpectralFeatures {
+
+	// Band edges in Hz: still / slow movement, walking, brisk walking, running, vigorous motion. 
+
+	private static final double[] BAND_EDGES_DOUBLE_ARRAY = {0.3, 1.0, 2.0, 3.0, 5.0, 10.0};
+
+	public static final int BAND_COUNT = BAND_EDGES_DOUBLE_ARRAY.length - 1;
+
+	private final int sizeInteger;
+
+	private final double[] realDoubleArray;
+	private final double[] imaginaryDoubleArray;
+
+	private final double[] cosineDoubleArray;
+	private final double[] sineDoubleArray;
+
+	private final int[] bitReversedIntegerArray;
+
+	// Hann window for windowLengthInteger samples, recomputed only when the window length changes. 
+
+	private final double[] windowDoubleArray;
+
+	private int windowLengthInteger = -1;
+
+	private final double[] bandEnergyDoubleArray = new double[BAND_COUNT];
+
+	private double dominantFrequencyDouble;
+	private double frequencyResolutionDouble;
+	private double spectralEntropyDouble;
+	private double totalEnergyDouble;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  capacityIntegerIncoming  The maximum number of samples in a window. 
+	 * 
+	 */
+
+	SpectralFeatures(int capacityIntegerIncoming) {
+		int sizeInteger = 2;
+
+		while (sizeInteger < capacityIntegerIncoming) {
+			sizeInteger <<= 1;
+		}
+
+		this.sizeInteger = sizeInteger;
+
+		realDoubleArray = new double[sizeInteger];
+		imaginaryDoubleArray = new double[sizeInteger];
+
+		windowDoubleArray = new double[sizeInteger];
+
+		cosineDoubleArray = new double[sizeInteger / 2];
+		sineDoubleArray = new double[sizeInteger / 2];
+
+		for (int i = 0; i < sizeInteger / 2; i++) {
+			double angleDouble = -2.0 * Math.PI * i / sizeInteger;
+
+			cosineDoubleArray[i] = Math.cos(angleDouble);
+			sineDoubleArray[i] = Math.sin(angleDouble);
+		}
+
+		bitReversedIntegerArray = new int[sizeInteger];
+
+		int bitCountInteger = Integer.numberOfTrailingZeros(sizeInteger);
+
+		for (int i = 0; i < sizeInteger; i++) {
+			bitReversedIntegerArray[i] = Integer.reverse(i) >>> (32 - bitCountInteger);
+		}
+	}
+
+	/**
+	 * Computes the features for the given magnitude series. 
+	 * 
+	 * @param  magnitudeFloatArrayIncoming  The magnitude series. 
+	 * @param  sampleCountIntegerIncoming  Number of samples, at most the capacity. 
+	 * @param  meanDoubleIncoming  The mean of the magnitude series. 
+	 * @param  sampleRateDoubleIncoming  The sampling rate in Hz. 
+	 * 
+	 */
+
+	void compute(float[] magnitudeFloatArrayIncoming, int sampleCountIntegerIncoming, double meanDoubleIncoming, double sampleRateDoubleIncoming) {
+		for (int i = 0; i < BAND_COUNT; i++) {
+			bandEnergyDoubleArray[i] = 0.0;
+		}
+
+		dominantFrequencyDouble = 0.0;
+		spectralEntropyDouble = 0.0;
+		totalEnergyDouble = 0.0;
+
+		frequencyResolutionDouble = sampleRateDoubleIncoming / sizeInteger;
+
+		if ((sampleCountIntegerIncoming < 2) || (sampleRateDoubleIncoming <= 0.0)) {
+			return;
+		}
+
+		if (windowLengthInteger != sampleCountIntegerIncoming) {
+			for (int i = 0; i < sampleCountIntegerIncoming; i++) {
+				windowDoubleArray[i] = 0.5 - 0.5 * Math.cos(2.0 * Math.PI * i / (sampleCountIntegerIncoming - 1));
+			}
+
+			windowLengthInteger = sampleCountIntegerIncoming;
+		}
+
+		// Load in bit reversed order, so the transform can run in place: 
+
+		for (int i = 0; i < sizeInteger; i++) {
+			int sourceInteger = bitReversedIntegerArray[i];
+
+			realDoubleArray[i] = (sourceInteger < sampleCountIntegerIncoming) ? (magnitudeFloatArrayIncoming[sourceInteger] - meanDoubleIncoming) * windowDoubleArray[sourceInteger] : 0.0;
+			imaginaryDoubleArray[i] = 0.0;
+		}
+
+		transform();
+
+		// Power per bin from 1 (DC removed) to the Nyquist frequency: 
+
+		double scaleDouble = 1.0 / ((double)sampleCountIntegerIncoming * sampleCountIntegerIncoming);
+
+		int halfInteger = sizeInteger / 2;
+
+		double maximumPowerDouble = -1.0;
+
+		for (int k = 1; k <= halfInteger; k++) {
+			double powerDouble = (realDoubleArray[k] * realDoubleArray[k] + imaginaryDoubleArray[k] * imaginaryDoubleArray[k]) * scaleDouble;
+
+			realDoubleArray[k] = powerDouble; // Reused for the entropy. 
+
+			totalEnergyDouble += powerDouble;
+
+			double frequencyDouble = k * frequencyResolutionDouble;
+
+			if (powerDouble > maximumPowerDouble) {
+				maximumPowerDouble = powerDouble;
+
+				dominantFrequencyDouble = frequencyDouble;
+			}
+
+			for (int b = 0; b < BAND_COUNT; b++) {
+				if ((frequencyDouble >= BAND_EDGES_DOUBLE_ARRAY[b]) && (frequencyDouble < BAND_EDGES_DOUBLE_ARRAY[b + 1])) {
+					bandEnergyDoubleArray[b] += powerDouble;
+
+					break;
+				}
+			}
+		}
+
+		if (totalEnergyDouble > 0.0) {
+			double entropyDouble = 0.0;
+
+			for (int k = 1; k <= halfInteger; k++) {
+				double probabilityDouble = realDoubleArray[k] / totalEnergyDouble;
+
+				if (probabilityDouble > 0.0) {
+					entropyDouble -= probabilityDouble * Math.log(probabilityDouble);
+				}
+			}
+
+			spectralEntropyDouble = entropyDouble / Math.log(halfInteger);
+		}
+		else {
+			dominantFrequencyDouble = 0.0;
+		}
+	}
+
+	/**
+	 * Iterative radix-2 decimation in time FFT of the bit reversed work arrays. 
+	 * 
+	 */
+
+	private void transform() {
+		for (int lengthInteger = 2; lengthInteger <= sizeInteger; lengthInteger <<= 1) {
+			int halfLengthInteger = lengthInteger >> 1;
+			int strideInteger = sizeInteger / lengthInteger;
+
+			for (int startInteger = 0; startInteger < sizeInteger; startInteger += lengthInteger) {
+				for (int j = 0; j < halfLengthInteger; j++) {
+					double cosineDouble = cosineDoubleArray[j * strideInteger];
+					double sineDouble = sineDoubleArray[j * strideInteger];
+
+					int evenInteger = startInteger + j;
+					int oddInteger = evenInteger + halfLengthInteger;
+
+					double oddRealDouble = realDoubleArray[oddInteger] * cosineDouble - imaginaryDoubleArray[oddInteger] * sineDouble;
+					double oddImaginaryDouble = realDoubleArray[oddInteger] * sineDouble + imaginaryDoubleArray[oddInteger] * cosineDouble;
+
+					realDoubleArray[oddInteger] = realDoubleArray[evenInteger] - oddRealDouble;
+					imaginaryDoubleArray[oddInteger] = imaginaryDoubleArray[evenInteger] - oddImaginaryDouble;
+
+					realDoubleArray[evenInteger] += oddRealDouble;
+					imaginaryDoubleArray[evenInteger] += oddImaginaryDouble;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the energy of a frequency band. 
+	 * 
+	 * @param  bandIntegerIncoming  The band index, from 0 to BAND_COUNT - 1. 
+	 * 
+	 */
+
+	public double getBandEnergy(int bandIntegerIncoming) {
+		return bandEnergyDoubleArray[bandIntegerIncoming];
+	}
+
+	/**
+	 * Returns the share of a frequency band of the total energy, 0 if there is no energy. 
+	 * 
+	 */
+
+	public double getBandEnergyRatio(int bandIntegerIncoming) {
+		return (totalEnergyDouble > 0.0) ? bandEnergyDoubleArray[bandIntegerIncoming] / totalEnergyDouble : 0.0;
+	}
+
+	public static double getBandLowerEdge(int bandIntegerIncoming) {
+		return BAND_EDGES_DOUBLE_ARRAY[bandIntegerIncoming];
+	}
+
+	public static double getBandUpperEdge(int bandIntegerIncoming) {
+		return BAND_EDGES_DOUBLE_ARRAY[bandIntegerIncoming + 1];
+	}
+
+	/**
+	 * Returns the frequency of the strongest bin in Hz, 0 if there is no energy. 
+	 * 
+	 */
+
+	public double getDominantFrequency() {
+		return dominantFrequencyDouble;
+	}
+
+	/**
+	 * Returns the width of a frequency bin in Hz. 
+	 * 
+	 */
+
+	public double getFrequencyResolution() {
+		return frequencyResolutionDouble;
+	}
+
+	/**
+	 * Returns the FFT size, a power of two. 
+	 * 
+	 */
+
+	public int getSize() {
+		return sizeInteger;
+	}
+
+	/**
+	 * Returns the normalized spectral entropy in [0, 1]: near 0 for a single frequency, 1 for white noise. 
+	 * 
+	 */
+
+	public double getSpectralEntropy() {
+		return spectralEntropyDouble;
+	}
+
+	/**
+	 * Returns the total energy from the first bin to the Nyquist frequency. 
+	 * 
+	 */
+
+	public double getTotalEnergy() {
+		return totalEnergyDouble;
+	}
+
+}
@@ -30,38 +30,100 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
-import java.util.ArrayList;
 
 /**
- * Stability detection, implements DataCollectorObserver. 
+ * Stability detection, implements DataCollectorSampleObserver. 
+ * <p>
+ * The window result is decided from the population variance of the acceleration magnitude over the window, as before. 
+ * <p>
+ * Between the windows, an exponentially weighted variance is also updated with every sample, in constant time and memory. 
+ * Unlike Welford's algorithm over all the samples since the start, it forgets the old samples without keeping them, so it 
+ * follows the current motion. The streaming value changes as soon as the running variance crosses the threshold, with 
+ * hysteresis, so a change is reported without waiting for the window to close. 
+ * <p>
+ * The running variance starts from 0 and needs about a time constant to settle, the streaming value is seeded from the 
+ * first decision after WARM_UP_TIME_DOUBLE has passed, which is not reported as a change. The window and streaming values 
+ * are separate results, they can differ near the threshold. 
  * 
  * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorObserver 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
  *
  */
 
-public final class StabilityDetection implements DataCollectorObserver {
+public final class StabilityDetection implements DataCollectorSampleObserver {
 
-	private double currentStabilityValueDouble;
+	private volatile double currentStabilityValueDouble; // Decided from the window variance. 
 	private double lastVarianceValueDouble;
 
 	// Threshold value, if the variance is under this device is stabile, otherwise unstabile:
 
 	static final double THRESHOLD_VALUE_DOUBLE = 0.03;
 
+	// Hysteresis: once unstabile, the running variance must fall under THRESHOLD_VALUE_DOUBLE * HYSTERESIS_FACTOR_DOUBLE to become stabile again. 
+
+	static final double HYSTERESIS_FACTOR_DOUBLE = 0.5;
+
+	// Time constant of the running mean and variance in microseconds. 
+
+	static final double TIME_CONSTANT_DOUBLE = 1000000.0;
+
+	// Time from the first sample before the running variance is trusted in microseconds, two time constants settle 86 %. 
+
+	static final double WARM_UP_TIME_DOUBLE = 2.0 * TIME_CONSTANT_DOUBLE;
+
+	// Running state, touched only on the sensor thread. 
+
+	private double runningMeanDouble;
+	private double runningVarianceDouble;
+
+	private long previousTimeLong;
+	private long firstTimeLong;
+
+	private boolean startedBoolean = false;
+	private boolean warmedUpBoolean = false;
+
+	private double streamingStabilityValueDouble; // Valid after the warm-up. 
+
 	public double getLastVariance() {
 		return lastVarianceValueDouble;
 	}
 
+	/**
+	 * Returns the running (exponentially weighted) variance of the acceleration magnitude. 
+	 * 
+	 */
+
+	public double getRunningVariance() {
+		return runningVarianceDouble;
+	}
+
 	@Override
 	public double getValue() {
 		return currentStabilityValueDouble;
 	}
 
+	@Override
+	public double getStreamingValue() {
+		return streamingStabilityValueDouble;
+	}
+
 	@Override
 	public int getIdentifier() {
 		return VTTPhysicalActivityLibrary.DETECTION_STABILITY;
 	}
 
+	// The variance does not need the full rate. 
+
+	@Override
+	public int getMinimumRate() {
+		return 20;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
 	@Override
 	public String getTag() {
 		return "StabilityDetection";
@@ -74,40 +136,81 @@ public final class StabilityDetection implements DataCollectorObserver {
 			return; // Not able to continue. 
 		}
 
-		double meanDouble = 0.0;
+		double variance = rawDataIncoming.getFeatures().getVariance(WindowFeatures.AXIS_MAGNITUDE);
+		lastVarianceValueDouble = variance;
+
+		if (variance > THRESHOLD_VALUE_DOUBLE) {
+			currentStabilityValueDouble = 0.0; // Unstabile.
+		}
+		else {
+			currentStabilityValueDouble = 1.0; // Stabile.
+		}
+	}
+
+	/**
+	 * From DataCollectorSampleObserver, called on the sensor thread. 
+	 * 
+	 * @see  fi.vtt.physicalactivitylibrary.internal.DataCollectorSampleObserver 
+	 * 
+	 */
 
-		ArrayList<Double> valuesDoubleArrayList = new ArrayList<Double>(); // Total energy. 
+	@Override
+	public boolean sampleCollectedNotify(float xFloatIncoming, float yFloatIncoming, float zFloatIncoming, long timeLongIncoming) {
+		double magnitudeDouble = Math.sqrt(xFloatIncoming * xFloatIncoming + yFloatIncoming * yFloatIncoming + zFloatIncoming * zFloatIncoming);
 
-		ArrayList<Float> xFloatArrayList = rawDataIncoming.getAccelerometerXBuffer();
-		ArrayList<Float> yFloatArrayList = rawDataIncoming.getAccelerometerYBuffer();
-		ArrayList<Float> zFloatArrayList = rawDataIncoming.getAccelerometerZBuffer();
+		if (!startedBoolean || timeLongIncoming < previousTimeLong) {
+			// First sample or a restart: 
+			runningMeanDouble = magnitudeDouble;
+			runningVarianceDouble = 0.0;
 
-		int accelerometerElementCountInteger = xFloatArrayList.size();
+			previousTimeLong = timeLongIncoming;
+			firstTimeLong = timeLongIncoming;
 
-		for (int i = 0; i < accelerometerElementCountInteger; i++) {
-			double valueDouble = Math.sqrt(Math.pow(xFloatArrayList.get(i), 2) + Math.pow(yFloatArrayList.get(i), 2) + Math.pow(zFloatArrayList.get(i), 2));
-			meanDouble += valueDouble;
+			startedBoolean = true;
+			warmedUpBoolean = false;
 
-			valuesDoubleArrayList.add(valueDouble);
+			return false;
 		}
 
-		meanDouble = meanDouble / (double)accelerometerElementCountInteger;
-		double sumDouble = 0.0;
+		// Weight of the new sample from the time step, so the time constant does not depend on the sampling rate: 
+
+		double deltaTimeDouble = timeLongIncoming - previousTimeLong;
+		double alphaDouble = deltaTimeDouble / (TIME_CONSTANT_DOUBLE + deltaTimeDouble);
+
+		previousTimeLong = timeLongIncoming;
+
+		double deltaDouble = magnitudeDouble - runningMeanDouble;
 
-		for (int i = 0; i < valuesDoubleArrayList.size(); i++) {
-			double valueDouble = Math.pow(valuesDoubleArrayList.get(i) - meanDouble, 2);
-			sumDouble += valueDouble;
+		runningMeanDouble += alphaDouble * deltaDouble;
+		runningVarianceDouble = (1.0 - alphaDouble) * (runningVarianceDouble + alphaDouble * deltaDouble * deltaDouble);
+
+		if (!warmedUpBoolean) {
+			if (timeLongIncoming - firstTimeLong >= WARM_UP_TIME_DOUBLE) {
+				// The first decision only seeds the value, it is not a transition: 
+				streamingStabilityValueDouble = (runningVarianceDouble > THRESHOLD_VALUE_DOUBLE) ? 0.0 : 1.0;
+
+				warmedUpBoolean = true;
+			}
+
+			return false;
 		}
 
-		double variance = sumDouble / (double) valuesDoubleArrayList.size();
-		lastVarianceValueDouble = variance;
+		double stabilityValueDouble = streamingStabilityValueDouble;
 
-		if (variance > THRESHOLD_VALUE_DOUBLE) {
-			currentStabilityValueDouble = 0.0; // Unstabile.
+		if (runningVarianceDouble > THRESHOLD_VALUE_DOUBLE) {
+			stabilityValueDouble = 0.0; // Unstabile.
 		}
-		else {
-			currentStabilityValueDouble = 1.0; // Stabile.
+		else if (runningVarianceDouble < THRESHOLD_VALUE_DOUBLE * HYSTERESIS_FACTOR_DOUBLE) {
+			stabilityValueDouble = 1.0; // Stabile.
+		}
+
+		if (stabilityValueDouble != streamingStabilityValueDouble) {
+			streamingStabilityValueDouble = stabilityValueDouble;
+
+			return true;
 		}
+
+		return false;
 	}
 
-}
\ No newline at end of file
+}
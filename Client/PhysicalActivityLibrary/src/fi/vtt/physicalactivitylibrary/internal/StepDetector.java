@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Peak-based step detection on the acceleration magnitude, used by the Java walk and run detections. 
+ * <p>
+ * A step is a local maximum of the magnitude above the window mean plus half the standard deviation, at least 
+ * MINIMUM_STEP_INTERVAL_LONG after the previous step. The cadence is computed from the first and the last step. 
+ * Walking and running are told apart by the cadence and the standard deviation of the magnitude (the step intensity). 
+ * <p>
+ * Works on the shared window features, so analyzing a window does not allocate. Each detection has its own StepDetector. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaRunDetection 
+ * @see  fi.vtt.physicalactivitylibrary.internal.JavaWalkDetection 
+ * 
+ */
+
+final class StepDetector {
+
+	// Shortest time between two steps in microseconds (5 steps per second). 
+
+	static final long MINIMUM_STEP_INTERVAL_LONG = 200000;
+
+	// Standard deviation of the magnitude in m/s^2, under which the device is considered still. 
+
+	static final double MINIMUM_DEVIATION_DOUBLE = 0.6;
+
+	// Standard deviation of the magnitude in m/s^2, from which the steps are considered running. 
+
+	static final double RUN_DEVIATION_DOUBLE = 4.0;
+
+	// Number of steps needed for a decision. 
+
+	static final int MINIMUM_STEP_COUNT_INTEGER = 4;
+
+	// Cadence ranges in steps per second. 
+
+	static final double WALK_MINIMUM_CADENCE_DOUBLE = 1.0;
+	static final double WALK_MAXIMUM_CADENCE_DOUBLE = 2.5;
+
+	static final double RUN_MINIMUM_CADENCE_DOUBLE = 2.0;
+	static final double RUN_MAXIMUM_CADENCE_DOUBLE = 4.5;
+
+	private int stepCountInteger;
+
+	private double cadenceDouble;
+	private double deviationDouble;
+
+	/**
+	 * Finds the steps of a window. 
+	 * 
+	 * @param  rawDataIncoming  The window, at least 3 samples. 
+	 * 
+	 */
+
+	void analyze(RawData rawDataIncoming) {
+		WindowFeatures windowFeatures = rawDataIncoming.getFeatures();
+
+		int sampleCountInteger = windowFeatures.getSampleCount();
+
+		stepCountInteger = 0;
+		cadenceDouble = 0.0;
+		deviationDouble = Math.sqrt(windowFeatures.getVariance(WindowFeatures.AXIS_MAGNITUDE));
+
+		if (deviationDouble < MINIMUM_DEVIATION_DOUBLE) {
+			return; // Still, no steps. 
+		}
+
+		double thresholdDouble = windowFeatures.getMean(WindowFeatures.AXIS_MAGNITUDE) + 0.5 * deviationDouble;
+
+		float[] magnitudeFloatArray = windowFeatures.getMagnitudeArray();
+
+		long firstStepTimeLong = 0;
+		long lastStepTimeLong = 0;
+
+		for (int i = 1; i < sampleCountInteger - 1; i++) {
+			float magnitudeFloat = magnitudeFloatArray[i];
+
+			if ((magnitudeFloat > thresholdDouble) && (magnitudeFloat >= magnitudeFloatArray[i - 1]) && (magnitudeFloat > magnitudeFloatArray[i + 1])) {
+				long timeLong = rawDataIncoming.getAccelerometerTime(i);
+
+				if (stepCountInteger == 0) {
+					firstStepTimeLong = timeLong;
+				}
+				else if (timeLong - lastStepTimeLong < MINIMUM_STEP_INTERVAL_LONG) {
+					continue; // Second peak of the same step. 
+				}
+
+				lastStepTimeLong = timeLong;
+
+				stepCountInteger++;
+			}
+		}
+
+		if (stepCountInteger > 1 && lastStepTimeLong > firstStepTimeLong) {
+			cadenceDouble = (stepCountInteger - 1) * 1000000.0 / (lastStepTimeLong - firstStepTimeLong);
+		}
+	}
+
+	/**
+	 * Returns the number of steps per second in the last analyzed window. 
+	 * 
+	 */
+
+	double getCadence() {
+		return cadenceDouble;
+	}
+
+	int getStepCount() {
+		return stepCountInteger;
+	}
+
+	boolean isRunning() {
+		return (stepCountInteger >= MINIMUM_STEP_COUNT_INTEGER) && (deviationDouble >= RUN_DEVIATION_DOUBLE) && (cadenceDouble >= RUN_MINIMUM_CADENCE_DOUBLE) && (cadenceDouble <= RUN_MAXIMUM_CADENCE_DOUBLE);
+	}
+
+	boolean isWalking() {
+		return (stepCountInteger >= MINIMUM_STEP_COUNT_INTEGER) && !isRunning() && (cadenceDouble >= WALK_MINIMUM_CADENCE_DOUBLE) && (cadenceDouble <= WALK_MAXIMUM_CADENCE_DOUBLE);
+	}
+
+}
@@ -0,0 +1,396 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+
+/**
+ * SensorSource that replays recorded sensor traces from a file, implements Runnable. 
+ * <p>
+ * Does not depend on Android, so the whole detection pipeline can be run on a plain Java VM, for example: 
+ * <pre>
+ * <code>
+ * TraceReplaySensorSource traceReplaySensorSource = new TraceReplaySensorSource(new File("walk.csv"));
+ * traceReplaySensorSource.setRealTime(false);
+ * 
+ * InternalClass internalClass = new InternalClass(traceReplaySensorSource);
+ * internalClass.setCallback(callback);
+ * internalClass.enableDetectionMethod(VTTPhysicalActivityLibrary.DETECTION_STABILITY);
+ * internalClass.start();
+ * 
+ * traceReplaySensorSource.awaitCompletion();
+ * </code>
+ * </pre>
+ * Two trace formats are supported, the format is selected by the file name: 
+ * <ul>
+ * <li>".csv": one record per line, "a,time,x,y,z" for accelerometer, "l,time,lux" for light and "p,time,cm" for proximity samples. 
+ * Empty lines and lines starting with '#' are ignored.</li>
+ * <li>Any other name: binary records, written with DataOutputStream. Each record is a record type byte ('a', 'l' or 'p'), 
+ * a long timestamp and three floats for accelerometer records or one float for light and proximity records.</li>
+ * </ul>
+ * Timestamps are in microseconds. 
+ * <p>
+ * In real time mode the samples are delivered with the same spacing as they were recorded. Otherwise they are delivered 
+ * as fast as possible, and DataCollector closes the windows based on the sample timestamps. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SensorSource 
+ * 
+ */
+
+public final class TraceReplaySensorSource implements Runnable, SensorSource {
+
+	/**
+	 * Record type for accelerometer samples. 
+	 * 
+	 */
+
+	public static final byte RECORD_ACCELEROMETER = 'a';
+
+	/**
+	 * Record type for light samples. 
+	 * 
+	 */
+
+	public static final byte RECORD_LIGHT = 'l';
+
+	/**
+	 * Record type for proximity samples. 
+	 * 
+	 */
+
+	public static final byte RECORD_PROXIMITY = 'p';
+
+	private File traceFile;
+
+	private boolean realTimeBoolean = true;
+
+	private int accelerometerMinDelayInteger = 0;
+
+	// Requested delay between two accelerometer samples in microseconds, the trace is decimated to it. 
+
+	private volatile int accelerometerDelayInteger = 0;
+
+	private long lastAccelerometerTimeLong = -1;
+
+	private volatile boolean cancelledBoolean = false;
+
+	private volatile SensorSourceListener sensorSourceListener;
+
+	private Thread thread;
+
+	// Real time pacing: the first trace timestamp (microseconds) and the matching System.nanoTime(). 
+
+	private long firstTraceTimeLong = -1;
+	private long firstNanoTimeLong;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  traceFileIncoming  The trace file to replay. 
+	 * 
+	 */
+
+	public TraceReplaySensorSource(File traceFileIncoming) {
+		traceFile = traceFileIncoming;
+	}
+
+	/**
+	 * Waits until the whole trace has been replayed or the replay has been cancelled. 
+	 * 
+	 * @throws  InterruptedException  If the waiting thread is interrupted. 
+	 * 
+	 */
+
+	public void awaitCompletion() throws InterruptedException {
+		Thread thread;
+
+		synchronized (this) {
+			thread = this.thread;
+		}
+
+		if (thread != null) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * Cancels the replay. 
+	 * 
+	 */
+
+	public void cancel() {
+		cancelledBoolean = true;
+	}
+
+	@Override
+	public int getAccelerometerMinDelay() {
+		return accelerometerMinDelayInteger;
+	}
+
+	@Override
+	public boolean isRealTime() {
+		return realTimeBoolean;
+	}
+
+	/**
+	 * Sets the delay between two delivered accelerometer samples, the samples in between are skipped. 
+	 * 
+	 */
+
+	@Override
+	public void setAccelerometerDelay(int delayIntegerIncoming) {
+		accelerometerDelayInteger = delayIntegerIncoming;
+	}
+
+	/**
+	 * Sets the minimum delay between two accelerometer samples in the trace, used for sizing the buffers. 
+	 * 
+	 * @param  accelerometerMinDelayIntegerIncoming  The minimum delay in microseconds, 0 if not known. 
+	 * 
+	 */
+
+	public void setAccelerometerMinDelay(int accelerometerMinDelayIntegerIncoming) {
+		accelerometerMinDelayInteger = accelerometerMinDelayIntegerIncoming;
+	}
+
+	/**
+	 * Selects real time or as fast as possible replay, call before start(). 
+	 * 
+	 * @param  realTimeBooleanIncoming  True for real time replay (default), false for as fast as possible. 
+	 * 
+	 */
+
+	public void setRealTime(boolean realTimeBooleanIncoming) {
+		realTimeBoolean = realTimeBooleanIncoming;
+	}
+
+	/**
+	 * Starts delivering samples to the listener. 
+	 * <p>
+	 * The replay thread is started on the first call. After stop() the replay continues, but the samples are not delivered 
+	 * until start() is called again, like the sensor events between two snapshots on a phone. 
+	 * 
+	 */
+
+	@Override
+	public synchronized void start(SensorSourceListener sensorSourceListenerIncoming) {
+		sensorSourceListener = sensorSourceListenerIncoming;
+
+		if (thread == null) {
+			thread = new Thread(this, "TraceReplaySensorSource");
+			thread.start();
+		}
+	}
+
+	@Override
+	public void stop() {
+		sensorSourceListener = null;
+	}
+
+	/**
+	 * Run the replay thread. 
+	 * 
+	 */
+
+	@Override
+	public void run() {
+		try {
+			if (traceFile.getName().toLowerCase().endsWith(".csv")) {
+				replayCsv();
+			}
+			else {
+				replayBinary();
+			}
+		}
+		catch (IOException ioExceptionIncoming) {
+			SensorSourceListener sensorSourceListener = this.sensorSourceListener;
+
+			if (sensorSourceListener != null) {
+				sensorSourceListener.sensorFailed(VTTPhysicalActivityLibrary.ERROR_GENERAL);
+			}
+		}
+	}
+
+	private void replayBinary() throws IOException {
+		DataInputStream dataInputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(traceFile)));
+
+		try {
+			while (!cancelledBoolean) {
+				int typeInteger = dataInputStream.read();
+
+				if (typeInteger < 0) {
+					break; // End of trace. 
+				}
+
+				long timeLong = dataInputStream.readLong();
+
+				float firstFloat = dataInputStream.readFloat();
+				float secondFloat = 0.0f;
+				float thirdFloat = 0.0f;
+
+				if (typeInteger == RECORD_ACCELEROMETER) {
+					secondFloat = dataInputStream.readFloat();
+					thirdFloat = dataInputStream.readFloat();
+				}
+				else if (typeInteger != RECORD_LIGHT && typeInteger != RECORD_PROXIMITY) {
+					throw new IOException("Unknown record type: " + typeInteger);
+				}
+
+				deliver(typeInteger, timeLong, firstFloat, secondFloat, thirdFloat);
+			}
+		}
+		catch (EOFException eofExceptionIncoming) {
+			// Truncated last record, ignore. 
+		}
+		finally {
+			dataInputStream.close();
+		}
+	}
+
+	private void replayCsv() throws IOException {
+		BufferedReader bufferedReader = new BufferedReader(new FileReader(traceFile));
+
+		float[] valuesFloatArray = new float[3];
+
+		try {
+			String lineString;
+
+			while (!cancelledBoolean && (lineString = bufferedReader.readLine()) != null) {
+				lineString = lineString.trim();
+
+				if (lineString.length() == 0 || lineString.charAt(0) == '#') {
+					continue;
+				}
+
+				int typeInteger = lineString.charAt(0);
+
+				int beginInteger = lineString.indexOf(',') + 1;
+				int endInteger = lineString.indexOf(',', beginInteger);
+
+				if (beginInteger == 0 || endInteger < 0) {
+					throw new IOException("Malformed line: " + lineString);
+				}
+
+				long timeLong = Long.parseLong(lineString.substring(beginInteger, endInteger).trim());
+
+				int countInteger = (typeInteger == RECORD_ACCELEROMETER) ? 3 : 1;
+
+				try {
+					for (int i = 0; i < countInteger; i++) {
+						beginInteger = endInteger + 1;
+						endInteger = lineString.indexOf(',', beginInteger);
+
+						if (endInteger < 0) {
+							endInteger = lineString.length();
+						}
+
+						valuesFloatArray[i] = Float.parseFloat(lineString.substring(beginInteger, endInteger).trim());
+					}
+				}
+				catch (NumberFormatException numberFormatExceptionIncoming) {
+					throw new IOException("Malformed line: " + lineString);
+				}
+
+				if (typeInteger != RECORD_ACCELEROMETER && typeInteger != RECORD_LIGHT && typeInteger != RECORD_PROXIMITY) {
+					throw new IOException("Unknown record type: " + lineString);
+				}
+
+				deliver(typeInteger, timeLong, valuesFloatArray[0], valuesFloatArray[1], valuesFloatArray[2]);
+			}
+		}
+		finally {
+			bufferedReader.close();
+		}
+	}
+
+	/**
+	 * Delivers one record to the listener, waits first until the record is due in real time mode. 
+	 * 
+	 */
+
+	private void deliver(int typeIntegerIncoming, long timeLongIncoming, float firstFloatIncoming, float secondFloatIncoming, float thirdFloatIncoming) {
+		if (realTimeBoolean) {
+			waitUntilDue(timeLongIncoming);
+		}
+
+		SensorSourceListener sensorSourceListener = this.sensorSourceListener;
+
+		if (sensorSourceListener == null) {
+			return; // Stopped, the sample is lost. 
+		}
+
+		if (typeIntegerIncoming == RECORD_ACCELEROMETER) {
+			if ((lastAccelerometerTimeLong >= 0) && (timeLongIncoming >= lastAccelerometerTimeLong) && (timeLongIncoming - lastAccelerometerTimeLong < accelerometerDelayInteger)) {
+				return; // Decimated. 
+			}
+
+			lastAccelerometerTimeLong = timeLongIncoming;
+
+			sensorSourceListener.accelerometerChanged(firstFloatIncoming, secondFloatIncoming, thirdFloatIncoming, timeLongIncoming);
+		}
+		else if (typeIntegerIncoming == RECORD_LIGHT) {
+			sensorSourceListener.lightChanged(firstFloatIncoming);
+		}
+		else if (typeIntegerIncoming == RECORD_PROXIMITY) {
+			sensorSourceListener.proximityChanged(firstFloatIncoming);
+		}
+	}
+
+	private void waitUntilDue(long timeLongIncoming) {
+		if (firstTraceTimeLong < 0) {
+			firstTraceTimeLong = timeLongIncoming;
+			firstNanoTimeLong = System.nanoTime();
+
+			return;
+		}
+
+		long dueNanoTimeLong = firstNanoTimeLong + (timeLongIncoming - firstTraceTimeLong) * 1000;
+
+		long waitNanosLong = dueNanoTimeLong - System.nanoTime();
+
+		if (waitNanosLong > 0) {
+			try {
+				Thread.sleep(waitNanosLong / 1000000, (int)(waitNanosLong % 1000000));
+			}
+			catch (InterruptedException interruptedExceptionIncoming) {
+				cancelledBoolean = true;
+			}
+		}
+	}
+
+}
@@ -30,7 +30,6 @@
 package fi.vtt.physicalactivitylibrary.internal;
 
 import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
-import java.util.ArrayList;
 
 /**
  * Walk detection, implements DataCollectorObserver. 
@@ -53,6 +52,16 @@ public final class WalkDetection implements DataCollectorObserver {
 		return VTTPhysicalActivityLibrary.DETECTION_WALK;
 	}
 
+	@Override
+	public int getMinimumRate() {
+		return 0;
+	}
+
+	@Override
+	public long getWindowDuration() {
+		return 0;
+	}
+
 	public native double doWalkDetection(float[] xFloatArrayIncoming, float[] yFloatArrayIncoming, float[] zFloatArrayIncoming, long[] timeLongArrayIncoming);
 
 	@Override
@@ -67,38 +76,20 @@ public final class WalkDetection implements DataCollectorObserver {
 			return; // No reason to continue without data. 
 		}
 
-		ArrayList<Float> xFloatArrayList = rawDataIncoming.getAccelerometerXBuffer();
-		ArrayList<Float> yFloatArrayList = rawDataIncoming.getAccelerometerYBuffer();
-		ArrayList<Float> zFloatArrayList = rawDataIncoming.getAccelerometerZBuffer();
-
-		ArrayList<Long> timeLongArrayList = rawDataIncoming.getAccelerometerTimeBuffer();
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
 
-		if (timeLongArrayList.size() < 16) {
+		if (sampleCountInteger < 16) {
 			walkValueDouble = 0.0; // No data. 
 			return; // Cannot continue with too few data points. 
 		}
 
-		float[] xFloatArray = new float[xFloatArrayList.size()];
-		float[] yFloatArray = new float[yFloatArrayList.size()];
-		float[] zFloatArray = new float[zFloatArrayList.size()];
+		// Shared by all the native detections of this window: 
 
-		long[] timeLongArray = new long[timeLongArrayList.size()];
+		float[] xFloatArray = rawDataIncoming.getAccelerometerXArray();
+		float[] yFloatArray = rawDataIncoming.getAccelerometerYArray();
+		float[] zFloatArray = rawDataIncoming.getAccelerometerZArray();
 
-		for (int i = 0; i < xFloatArrayList.size(); i++) {
-			xFloatArray[i] = xFloatArrayList.get(i);
-		}
-
-		for (int i = 0; i < yFloatArrayList.size(); i++) {
-			yFloatArray[i] = yFloatArrayList.get(i);
-		}
-
-		for (int i = 0; i < zFloatArrayList.size(); i++) {
-			zFloatArray[i] = zFloatArrayList.get(i);
-		}
-
-		for (int i = 0; i < timeLongArrayList.size(); i++) {
-			timeLongArray[i] = timeLongArrayList.get(i);
-		}
+		long[] timeLongArray = rawDataIncoming.getAccelerometerTimeArray();
 
 		walkValueDouble = doWalkDetection(xFloatArray, yFloatArray, zFloatArray, timeLongArray);
 	}
@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Per-window features shared by all detections. 
+ * <p>
+ * Computed once per window by RawData.getFeatures(), so the detections do not have to loop over the samples themselves. 
+ * The magnitude series and all the statistics are stored in preallocated arrays, computing the features does not allocate. 
+ * <p>
+ * The statistics are indexed by axis: AXIS_X, AXIS_Y, AXIS_Z and AXIS_MAGNITUDE (the magnitude of the acceleration vector). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RawData 
+ * 
+ */
+
+public final class WindowFeatures {
+
+	public static final int AXIS_X = 0;
+	public static final int AXIS_Y = 1;
+	public static final int AXIS_Z = 2;
+	public static final int AXIS_MAGNITUDE = 3;
+
+	private static final int AXIS_COUNT_INTEGER = 4;
+
+	private final double[] meanDoubleArray = new double[AXIS_COUNT_INTEGER];
+	private final double[] varianceDoubleArray = new double[AXIS_COUNT_INTEGER];
+
+	private final float[] minimumFloatArray = new float[AXIS_COUNT_INTEGER];
+	private final float[] maximumFloatArray = new float[AXIS_COUNT_INTEGER];
+
+	private final int[] zeroCrossingCountIntegerArray = new int[AXIS_COUNT_INTEGER];
+
+	// Scratch sums, kept as fields to avoid allocating them for every window. 
+
+	private final double[] sumDoubleArray = new double[AXIS_COUNT_INTEGER];
+	private final double[] squareSumDoubleArray = new double[AXIS_COUNT_INTEGER];
+
+	private final float[] magnitudeFloatArray;
+
+	private double signalMagnitudeAreaDouble;
+
+	private int sampleCountInteger;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  capacityIntegerIncoming  The maximum number of samples in a window. 
+	 * 
+	 */
+
+	WindowFeatures(int capacityIntegerIncoming) {
+		magnitudeFloatArray = new float[capacityIntegerIncoming];
+	}
+
+	/**
+	 * Computes the features for the given samples. 
+	 * <p>
+	 * Means, variances, extremes, the magnitude series and the signal magnitude area are computed in one pass. 
+	 * The mean crossings need the means, so they are counted afterwards from the same (cached) values. 
+	 * 
+	 */
+
+	void compute(float[] xFloatArrayIncoming, float[] yFloatArrayIncoming, float[] zFloatArrayIncoming, int sampleCountIntegerIncoming) {
+		sampleCountInteger = sampleCountIntegerIncoming;
+
+		for (int axisInteger = 0; axisInteger < AXIS_COUNT_INTEGER; axisInteger++) {
+			sumDoubleArray[axisInteger] = 0.0;
+			squareSumDoubleArray[axisInteger] = 0.0;
+
+			minimumFloatArray[axisInteger] = Float.MAX_VALUE;
+			maximumFloatArray[axisInteger] = -Float.MAX_VALUE;
+
+			zeroCrossingCountIntegerArray[axisInteger] = 0;
+		}
+
+		double absoluteSumDouble = 0.0;
+
+		for (int i = 0; i < sampleCountInteger; i++) {
+			float xFloat = xFloatArrayIncoming[i];
+			float yFloat = yFloatArrayIncoming[i];
+			float zFloat = zFloatArrayIncoming[i];
+
+			float magnitudeFloat = (float)Math.sqrt(xFloat * xFloat + yFloat * yFloat + zFloat * zFloat);
+
+			magnitudeFloatArray[i] = magnitudeFloat;
+
+			accumulate(AXIS_X, xFloat);
+			accumulate(AXIS_Y, yFloat);
+			accumulate(AXIS_Z, zFloat);
+			accumulate(AXIS_MAGNITUDE, magnitudeFloat);
+
+			absoluteSumDouble += Math.abs(xFloat) + Math.abs(yFloat) + Math.abs(zFloat);
+		}
+
+		for (int axisInteger = 0; axisInteger < AXIS_COUNT_INTEGER; axisInteger++) {
+			if (sampleCountInteger == 0) {
+				meanDoubleArray[axisInteger] = 0.0;
+				varianceDoubleArray[axisInteger] = 0.0;
+
+				minimumFloatArray[axisInteger] = 0.0f;
+				maximumFloatArray[axisInteger] = 0.0f;
+
+				continue;
+			}
+
+			double meanDouble = sumDoubleArray[axisInteger] / sampleCountInteger;
+
+			meanDoubleArray[axisInteger] = meanDouble;
+
+			// Population variance, as used by the stability detection: 
+			varianceDoubleArray[axisInteger] = Math.max(squareSumDoubleArray[axisInteger] / sampleCountInteger - meanDouble * meanDouble, 0.0);
+		}
+
+		signalMagnitudeAreaDouble = (sampleCountInteger > 0) ? absoluteSumDouble / sampleCountInteger : 0.0;
+
+		countMeanCrossings(AXIS_X, xFloatArrayIncoming);
+		countMeanCrossings(AXIS_Y, yFloatArrayIncoming);
+		countMeanCrossings(AXIS_Z, zFloatArrayIncoming);
+		countMeanCrossings(AXIS_MAGNITUDE, magnitudeFloatArray);
+	}
+
+	private void accumulate(int axisIntegerIncoming, float valueFloatIncoming) {
+		sumDoubleArray[axisIntegerIncoming] += valueFloatIncoming;
+		squareSumDoubleArray[axisIntegerIncoming] += (double)valueFloatIncoming * valueFloatIncoming;
+
+		if (valueFloatIncoming < minimumFloatArray[axisIntegerIncoming]) {
+			minimumFloatArray[axisIntegerIncoming] = valueFloatIncoming;
+		}
+
+		if (valueFloatIncoming > maximumFloatArray[axisIntegerIncoming]) {
+			maximumFloatArray[axisIntegerIncoming] = valueFloatIncoming;
+		}
+	}
+
+	private void countMeanCrossings(int axisIntegerIncoming, float[] valuesFloatArrayIncoming) {
+		double meanDouble = meanDoubleArray[axisIntegerIncoming];
+
+		int countInteger = 0;
+
+		for (int i = 1; i < sampleCountInteger; i++) {
+			boolean previousAboveBoolean = valuesFloatArrayIncoming[i - 1] >= meanDouble;
+			boolean currentAboveBoolean = valuesFloatArrayIncoming[i] >= meanDouble;
+
+			if (previousAboveBoolean != currentAboveBoolean) {
+				countInteger++;
+			}
+		}
+
+		zeroCrossingCountIntegerArray[axisIntegerIncoming] = countInteger;
+	}
+
+	/**
+	 * Returns the magnitude of the acceleration vector of a sample. 
+	 * 
+	 * @param  indexIntegerIncoming  The sample index. 
+	 * 
+	 */
+
+	public float getMagnitude(int indexIntegerIncoming) {
+		return magnitudeFloatArray[indexIntegerIncoming];
+	}
+
+	/**
+	 * Returns the magnitude series, only the first getSampleCount() values are valid. Must not be modified. 
+	 * 
+	 */
+
+	public float[] getMagnitudeArray() {
+		return magnitudeFloatArray;
+	}
+
+	public float getMaximum(int axisIntegerIncoming) {
+		return maximumFloatArray[axisIntegerIncoming];
+	}
+
+	public double getMean(int axisIntegerIncoming) {
+		return meanDoubleArray[axisIntegerIncoming];
+	}
+
+	public float getMinimum(int axisIntegerIncoming) {
+		return minimumFloatArray[axisIntegerIncoming];
+	}
+
+	public int getSampleCount() {
+		return sampleCountInteger;
+	}
+
+	/**
+	 * Returns the signal magnitude area: the mean of |x| + |y| + |z| over the window. 
+	 * 
+	 */
+
+	public double getSignalMagnitudeArea() {
+		return signalMagnitudeAreaDouble;
+	}
+
+	/**
+	 * Returns the population variance of the given axis. 
+	 * 
+	 */
+
+	public double getVariance(int axisIntegerIncoming) {
+		return varianceDoubleArray[axisIntegerIncoming];
+	}
+
+	/**
+	 * Returns how many times the signal crosses its window mean. 
+	 * 
+	 */
+
+	public int getZeroCrossingCount(int axisIntegerIncoming) {
+		return zeroCrossingCountIntegerArray[axisIntegerIncoming];
+	}
+
+}
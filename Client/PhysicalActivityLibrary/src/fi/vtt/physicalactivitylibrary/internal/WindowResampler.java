@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+/**
+ * Optional pipeline stage, that resamples each window onto an even grid before the detections run. 
+ * <p>
+ * Android delivers the accelerometer events with irregular spacing. After resampling, the samples are evenly spaced at 
+ * RawData.getSamplePeriod(), so the detections can use fixed strides and precomputed filter coefficients. Gaps in the 
+ * original data (an interval longer than GAP_FACTOR_INTEGER times the grid interval or the typical original interval) 
+ * are interpolated linearly and marked, see RawData.isGap(). 
+ * <p>
+ * The output windows are double buffered like the windows of DataCollector, a window still held by a detection is not reused. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.RawData 
+ * 
+ */
+
+final class WindowResampler {
+
+	static final int GAP_FACTOR_INTEGER = 4;
+
+	private final long periodLong;
+
+	private final boolean cubicBoolean;
+
+	private RawData[] rawDataArray = new RawData[DataCollector.WINDOW_BUFFER_COUNT_INTEGER];
+
+	private int rawDataIndexInteger = 0;
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  rateIntegerIncoming  The rate of the grid in Hz. 
+	 * @param  cubicBooleanIncoming  True for cubic interpolation, false for linear interpolation. 
+	 * 
+	 */
+
+	WindowResampler(int rateIntegerIncoming, boolean cubicBooleanIncoming) {
+		periodLong = 1000000 / rateIntegerIncoming;
+		cubicBoolean = cubicBooleanIncoming;
+	}
+
+	/**
+	 * Returns the window resampled onto the grid, or the window itself if it has less than 2 samples. 
+	 * 
+	 * @param  rawDataIncoming  The window. 
+	 * 
+	 */
+
+	RawData resample(RawData rawDataIncoming) {
+		int sampleCountInteger = rawDataIncoming.getAccelerometerSampleCount();
+
+		if (sampleCountInteger < 2) {
+			return rawDataIncoming;
+		}
+
+		long spanLong = rawDataIncoming.getAccelerometerTime(sampleCountInteger - 1) - rawDataIncoming.getAccelerometerTime(0);
+
+		if (spanLong <= 0) {
+			return rawDataIncoming;
+		}
+
+		int capacityInteger = (int)(spanLong / periodLong) + 1;
+
+		rawDataIndexInteger = (rawDataIndexInteger + 1) % DataCollector.WINDOW_BUFFER_COUNT_INTEGER;
+
+		RawData rawData = rawDataArray[rawDataIndexInteger];
+
+		if (rawData == null || rawData.isHeld() || rawData.getCapacity() < capacityInteger) {
+			// Some headroom, so a slightly longer window does not allocate again: 
+			rawData = new RawData(capacityInteger + capacityInteger / 4);
+
+			rawDataArray[rawDataIndexInteger] = rawData;
+		}
+
+		long typicalIntervalLong = spanLong / (sampleCountInteger - 1);
+
+		long gapLong = GAP_FACTOR_INTEGER * Math.max(periodLong, typicalIntervalLong);
+
+		rawData.resampleFrom(rawDataIncoming, periodLong, cubicBoolean, gapLong);
+
+		return rawData;
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+
+/**
+ * ActivitySnapshot that the library fills, opens the protected setters to this package. 
+ * <p>
+ * The application gets these instances as read-only ActivitySnapshots, so it cannot change the values seen by the other 
+ * callbacks. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.ActivitySnapshot 
+ * 
+ */
+
+final class WritableActivitySnapshot extends ActivitySnapshot {
+
+	@Override
+	protected void clear(long windowStartTimeLongIncoming, long windowEndTimeLongIncoming) {
+		super.clear(windowStartTimeLongIncoming, windowEndTimeLongIncoming);
+	}
+
+	@Override
+	protected void putValue(int typeIntegerIncoming, double valueDoubleIncoming) {
+		super.putValue(typeIntegerIncoming, valueDoubleIncoming);
+	}
+
+	@Override
+	protected void setChangeMask(int changeMaskIntegerIncoming) {
+		super.setChangeMask(changeMaskIntegerIncoming);
+	}
+
+	/**
+	 * Merges newer results into these results. 
+	 * <p>
+	 * The newer values and window timestamps replace these. A detection missing from the newer results keeps its value 
+	 * here, and the window timestamps of an immediately reported change do not replace those of a window. The change 
+	 * masks are combined, so a change is not lost for a consumer that routes by it. 
+	 * 
+	 * @param  activitySnapshotIncoming  The newer results. 
+	 * @param  scratchActivitySnapshotIncoming  Holds a copy of these results during the merge. 
+	 * 
+	 */
+
+	void coalesce(ActivitySnapshot activitySnapshotIncoming, WritableActivitySnapshot scratchActivitySnapshotIncoming) {
+		WritableActivitySnapshot olderActivitySnapshot = scratchActivitySnapshotIncoming;
+
+		copyTo(olderActivitySnapshot);
+
+		if (activitySnapshotIncoming.getWindowEndTime() != 0) {
+			clear(activitySnapshotIncoming.getWindowStartTime(), activitySnapshotIncoming.getWindowEndTime());
+		}
+		else {
+			clear(olderActivitySnapshot.getWindowStartTime(), olderActivitySnapshot.getWindowEndTime());
+		}
+
+		for (int i = 0; i < DETECTION_TYPE_COUNT; i++) {
+			if (activitySnapshotIncoming.hasValue(i)) {
+				putValue(i, activitySnapshotIncoming.getValue(i));
+			}
+			else if (olderActivitySnapshot.hasValue(i)) {
+				putValue(i, olderActivitySnapshot.getValue(i));
+			}
+		}
+
+		setChangeMask(olderActivitySnapshot.getChangeMask() | activitySnapshotIncoming.getChangeMask());
+	}
+
+}
@@ -27,41 +27,20 @@
  * 
  */
 
-package fi.vtt.physicalactivitylibrary.internal;
+package fi.vtt.physicalactivitylibrary.internal.utils;
+
+import java.util.concurrent.Executor;
 
 /**
- * A simple container class for accelerometer readings with getters and setters for XYZ-values. 
+ * Executor that runs the tasks immediately on the calling thread. 
  * 
  */
 
-public final class AccelerometerReadings {
-
-	private double xDouble;
-	private double yDouble;
-	private double zDouble;
-
-	public double getX() {
-		return xDouble;
-	}
-
-	public double getY() {
-		return yDouble;
-	}
-
-	public double getZ() {
-		return zDouble;
-	}
-
-	public void setX(double xDoubleIncoming) {
-		xDouble = xDoubleIncoming;
-	}
-
-	public void setY(double yDoubleIncoming) {
-		yDouble = yDoubleIncoming;
-	}
+public final class DirectExecutor implements Executor {
 
-	public void setZ(double zDoubleIncoming) {
-		zDouble = zDoubleIncoming;
+	@Override
+	public void execute(Runnable runnableIncoming) {
+		runnableIncoming.run();
 	}
 
-}
\ No newline at end of file
+}
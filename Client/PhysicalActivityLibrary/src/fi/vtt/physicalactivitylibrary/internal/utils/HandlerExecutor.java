@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal.utils;
+
+import android.os.Handler;
+import java.util.concurrent.Executor;
+
+/**
+ * Executor that runs the tasks on the thread of an Android Handler. 
+ * <p>
+ * The Handler is created on the thread that calls the constructor, usually the application main thread. 
+ * 
+ * @see  android.os.Handler 
+ * 
+ */
+
+public final class HandlerExecutor implements Executor {
+
+	private Handler handler;
+
+	/**
+	 * Constructor. 
+	 * 
+	 */
+
+	public HandlerExecutor() {
+		handler = new Handler();
+	}
+
+	@Override
+	public void execute(Runnable runnableIncoming) {
+		handler.post(runnableIncoming);
+	}
+
+	/**
+	 * Runs the task before the other queued tasks, for example a fall alert that must not wait for a window completion. 
+	 * 
+	 * @param  runnableIncoming  The task. 
+	 * 
+	 */
+
+	public void executeAtFrontOfQueue(Runnable runnableIncoming) {
+		handler.postAtFrontOfQueue(runnableIncoming);
+	}
+
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal.utils;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that moves only when advance() is called, for running the timers deterministically without waiting. 
+ * <p>
+ * The due tasks are run on the thread that calls advance(), in the order of their due time. While a task runs, 
+ * currentTimeMillis() returns its due time. An exception thrown by a task is not caught, it propagates out of advance(). 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.utils.Clock 
+ * 
+ */
+
+public final class ManualClock implements Clock {
+
+	private long timeLong;
+
+	private long sequenceLong = 0; // Keeps the order of the tasks that are due at the same time. 
+
+	private final PriorityQueue<ScheduledTask> scheduledTasksPriorityQueue = new PriorityQueue<ScheduledTask>();
+
+	private static final class ScheduledTask implements Comparable<ScheduledTask>, Future<Object> {
+
+		private static final int STATE_PENDING = 0;
+		private static final int STATE_RUNNING = 1;
+		private static final int STATE_DONE = 2;
+		private static final int STATE_CANCELLED = 3;
+
+		private final long dueTimeLong;
+		private final long sequenceLong;
+
+		private final Runnable runnable;
+
+		private int stateInteger = STATE_PENDING;
+
+		private ScheduledTask(long dueTimeLongIncoming, long sequenceLongIncoming, Runnable runnableIncoming) {
+			dueTimeLong = dueTimeLongIncoming;
+			sequenceLong = sequenceLongIncoming;
+			runnable = runnableIncoming;
+		}
+
+		/**
+		 * Runs the task on the calling thread, unless it has been cancelled. Exceptions are not caught. 
+		 * 
+		 */
+
+		private void run() {
+			synchronized (this) {
+				if (stateInteger != STATE_PENDING) {
+					return;
+				}
+
+				stateInteger = STATE_RUNNING;
+			}
+
+			try {
+				runnable.run();
+			}
+			finally {
+				synchronized (this) {
+					stateInteger = STATE_DONE;
+
+					notifyAll();
+				}
+			}
+		}
+
+		@Override
+		public synchronized boolean cancel(boolean mayInterruptIfRunningBooleanIncoming) {
+			if (stateInteger != STATE_PENDING) {
+				return false;
+			}
+
+			stateInteger = STATE_CANCELLED;
+
+			notifyAll();
+
+			return true;
+		}
+
+		@Override
+		public synchronized Object get() throws InterruptedException {
+			while (stateInteger < STATE_DONE) {
+				wait();
+			}
+
+			if (stateInteger == STATE_CANCELLED) {
+				throw new CancellationException();
+			}
+
+			return null;
+		}
+
+		@Override
+		public synchronized Object get(long timeoutLongIncoming, TimeUnit timeUnitIncoming) throws InterruptedException {
+			long remainingLong = timeUnitIncoming.toMillis(timeoutLongIncoming);
+			long endTimeLong = System.currentTimeMillis() + remainingLong;
+
+			while (stateInteger < STATE_DONE && remainingLong > 0) {
+				wait(remainingLong);
+
+				remainingLong = endTimeLong - System.currentTimeMillis();
+			}
+
+			if (stateInteger == STATE_CANCELLED) {
+				throw new CancellationException();
+			}
+
+			return null;
+		}
+
+		@Override
+		public synchronized boolean isCancelled() {
+			return stateInteger == STATE_CANCELLED;
+		}
+
+		@Override
+		public synchronized boolean isDone() {
+			return stateInteger >= STATE_DONE;
+		}
+
+		@Override
+		public int compareTo(ScheduledTask scheduledTaskIncoming) {
+			if (dueTimeLong != scheduledTaskIncoming.dueTimeLong) {
+				return (dueTimeLong < scheduledTaskIncoming.dueTimeLong) ? -1 : 1;
+			}
+
+			return (sequenceLong < scheduledTaskIncoming.sequenceLong) ? -1 : ((sequenceLong == scheduledTaskIncoming.sequenceLong) ? 0 : 1);
+		}
+
+	}
+
+	/**
+	 * Constructor. 
+	 * 
+	 * @param  timeLongIncoming  The initial time in milliseconds. 
+	 * 
+	 */
+
+	public ManualClock(long timeLongIncoming) {
+		timeLong = timeLongIncoming;
+	}
+
+	/**
+	 * Moves the time forward and runs the tasks that become due. 
+	 * <p>
+	 * Tasks scheduled by the run tasks are run too, if they are due within the advanced time. If a task throws, 
+	 * the exception propagates to the caller and the time stays at the due time of that task. 
+	 * 
+	 * @param  deltaLongIncoming  The time to advance in milliseconds. 
+	 * 
+	 */
+
+	public void advance(long deltaLongIncoming) {
+		long targetTimeLong;
+
+		synchronized (this) {
+			targetTimeLong = timeLong + deltaLongIncoming;
+		}
+
+		while (true) {
+			ScheduledTask scheduledTask;
+
+			synchronized (this) {
+				scheduledTask = scheduledTasksPriorityQueue.peek();
+
+				if (scheduledTask == null || scheduledTask.dueTimeLong > targetTimeLong) {
+					timeLong = targetTimeLong;
+
+					return;
+				}
+
+				scheduledTasksPriorityQueue.poll();
+
+				timeLong = Math.max(timeLong, scheduledTask.dueTimeLong);
+			}
+
+			scheduledTask.run(); // Does nothing, if cancelled. 
+		}
+	}
+
+	@Override
+	public synchronized long currentTimeMillis() {
+		return timeLong;
+	}
+
+	/**
+	 * Returns the number of pending tasks, including the cancelled ones that have not been due yet. 
+	 * 
+	 */
+
+	public synchronized int getPendingTaskCount() {
+		return scheduledTasksPriorityQueue.size();
+	}
+
+	@Override
+	public synchronized Future<?> schedule(Runnable runnableIncoming, long delayLongIncoming) {
+		ScheduledTask scheduledTask = new ScheduledTask(timeLong + Math.max(0, delayLongIncoming), sequenceLong++, runnableIncoming);
+
+		scheduledTasksPriorityQueue.add(scheduledTask);
+
+		return scheduledTask;
+	}
+
+}
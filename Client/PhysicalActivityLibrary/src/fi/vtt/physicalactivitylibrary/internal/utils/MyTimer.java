@@ -30,6 +30,18 @@
 package fi.vtt.physicalactivitylibrary.internal.utils;
 
 import java.util.EventListener;
+import java.util.concurrent.Future;
+
+/**
+ * One shot timer, that informs the listener after the interval. 
+ * <p>
+ * The timeout is scheduled on a Clock, so no thread is woken up while the timer waits. With the default 
+ * RealTimeClock all the timers share one scheduler thread, with a ManualClock the time is advanced by the caller. 
+ * The listener is called on the scheduler thread. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.utils.Clock 
+ * 
+ */
 
 public class MyTimer implements Runnable {
 
@@ -37,10 +49,14 @@ public class MyTimer implements Runnable {
 
     private EventListener eventListener;
 
-    private long elapsedTimeLong;
+    private final Clock clock;
+
+    private long startTimeLong;
     private long intervalLong;
 
-    private Thread thread;
+    private Future<?> future;
+
+    private long generationLong = 0; // Incremented by every start, so a late timeout of an earlier start is ignored. 
 
     /**
      * Is the timer running or not. 
@@ -49,72 +65,108 @@ public class MyTimer implements Runnable {
      * 
      */
 
-    public boolean isRunning() {
+    public synchronized boolean isRunning() {
         return runningBoolean;
     }
 
     /**
      * Get the elapsed timer time. 
      * 
-     * @return  elapsedTimeLong  The elapsed time in milliseconds in a Long. 
+     * @return  elapsedTimeLong  The elapsed time in milliseconds in a Long, at most the interval. 
+     * 
+     */
+
+    public synchronized long elapsed() {
+        if (!runningBoolean) {
+            return 0;
+        }
+
+        return Math.min(clock.currentTimeMillis() - startTimeLong, intervalLong);
+    }
+
+    /**
+     * Constructor. 
      * 
      */
 
-    public long elapsed() {
-        return elapsedTimeLong;
+    public MyTimer() {
+        this(RealTimeClock.getInstance());
     }
 
     /**
      * Constructor. 
      * 
+     * @param  clockIncoming  The clock that schedules the timeout. 
+     * 
      */
 
-    public MyTimer() {}
+    public MyTimer(Clock clockIncoming) {
+        clock = clockIncoming;
+    }
 
     /**
      * Cancel the timer. 
      * 
      */
 
-    public void cancel() {
+    public synchronized void cancel() {
         runningBoolean = false;
+
+        if (future != null) {
+            future.cancel(false);
+            future = null;
+
+            if (clock instanceof RealTimeClock) {
+                ((RealTimeClock)clock).purge();
+            }
+        }
     }
 
     /**
-     * Run the timer thread. 
+     * Times out the timer now, if it is running. 
      * 
      */
 
     @Override
     public void run() {
-        long startTime = System.currentTimeMillis();
+        long generationLong;
 
-        while ((elapsedTimeLong < intervalLong) && isRunning()) {
-            elapsedTimeLong = System.currentTimeMillis() - startTime;
+        synchronized (this) {
+            generationLong = this.generationLong;
+        }
+
+        expired(generationLong);
+    }
 
-            try {
-                Thread.sleep(1);
+    /**
+     * Called by the clock, when the interval has passed. 
+     * 
+     * @param  generationLongIncoming  The generation of the start, that scheduled the timeout. 
+     * 
+     */
+
+    private void expired(long generationLongIncoming) {
+        synchronized (this) {
+            if (!runningBoolean || generationLongIncoming != generationLong) {
+                return; // Cancelled or restarted while the timeout was pending. 
             }
-            catch (InterruptedException interruptedExceptionIncoming) {}
-        }
 
-        if (isRunning()) {
             runningBoolean = false;
 
-            intervalLong = 0;
-
-            ((MyTimerListener)eventListener).timeout();
+            future = null;
         }
+
+        ((MyTimerListener)eventListener).timeout();
     }
 
     /**
-     * Set the interval time. 
+     * Set the interval time, used by the next start. 
      * 
      * @param  intervalLongIncoming  The interval in milliseconds in a Long. 
      * 
      */
 
-    public void setInterval(final long intervalLongIncoming) {
+    public synchronized void setInterval(final long intervalLongIncoming) {
         intervalLong = intervalLongIncoming;
     }
 
@@ -132,20 +184,29 @@ public class MyTimer implements Runnable {
     }
 
     /**
-     * Start the timer. 
+     * Start the timer, a pending timeout is cancelled. 
      * 
      * @param  intervalLong  The interval in milliseconds in a Long. 
      * 
      */
 
-    public void start(long intervalLongIncoming) {
-    	runningBoolean = true;
+    public synchronized void start(long intervalLongIncoming) {
+        if (future != null) {
+            future.cancel(false);
+        }
+
+        runningBoolean = true;
 
-    	elapsedTimeLong = Long.MIN_VALUE;
+        startTimeLong = clock.currentTimeMillis();
         intervalLong = intervalLongIncoming;
 
-        thread = new Thread(this);
-        thread.start();
+        final long generationLong = ++this.generationLong;
+
+        future = clock.schedule(new Runnable() {
+            public void run() {
+                expired(generationLong);
+            }
+        }, intervalLongIncoming);
     }
 
-}
\ No newline at end of file
+}
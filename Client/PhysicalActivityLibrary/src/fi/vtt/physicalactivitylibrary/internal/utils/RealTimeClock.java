@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal.utils;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock that follows the monotonic system time. 
+ * <p>
+ * All the tasks of the library share one daemon scheduler thread, that sleeps until the next task is due. 
+ * An exception thrown by a task is passed to the UncaughtExceptionHandler of the scheduler thread. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.utils.Clock 
+ * 
+ */
+
+public final class RealTimeClock implements Clock {
+
+	private static final RealTimeClock INSTANCE = new RealTimeClock();
+
+	private static final ThreadFactory SCHEDULER_THREAD_FACTORY = new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable runnableIncoming) {
+			Thread thread = new Thread(runnableIncoming, "PhysicalActivityLibrary scheduler thread");
+
+			thread.setDaemon(true);
+
+			return thread;
+		}
+
+	};
+
+	private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor = null; // Created on the first schedule() call. 
+
+	/**
+	 * Returns the shared instance. 
+	 * 
+	 */
+
+	public static RealTimeClock getInstance() {
+		return INSTANCE;
+	}
+
+	private RealTimeClock() {}
+
+	@Override
+	public long currentTimeMillis() {
+		return System.nanoTime() / 1000000;
+	}
+
+	@Override
+	public synchronized Future<?> schedule(Runnable runnableIncoming, long delayLongIncoming) {
+		if (scheduledThreadPoolExecutor == null) {
+			scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1, SCHEDULER_THREAD_FACTORY);
+		}
+
+		return scheduledThreadPoolExecutor.schedule(new ReportingRunnable(runnableIncoming), delayLongIncoming, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Runs a task and reports its exception, which the scheduler would otherwise keep in the never read Future. 
+	 * 
+	 */
+
+	private static final class ReportingRunnable implements Runnable {
+
+		private final Runnable runnable;
+
+		private ReportingRunnable(Runnable runnableIncoming) {
+			runnable = runnableIncoming;
+		}
+
+		@Override
+		public void run() {
+			try {
+				runnable.run();
+			}
+			catch (Throwable throwable) {
+				Thread thread = Thread.currentThread();
+
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, throwable);
+			}
+		}
+
+	}
+
+	/**
+	 * Removes the cancelled tasks from the scheduler queue. 
+	 * <p>
+	 * A cancelled task is otherwise kept in the queue until its delay has passed, it is not run in any case. 
+	 * 
+	 */
+
+	public synchronized void purge() {
+		if (scheduledThreadPoolExecutor != null) {
+			scheduledThreadPoolExecutor.purge();
+		}
+	}
+
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Tests of AccelerometerRingBuffer: capacity, wrap around and the samples dropped when overwritten. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.AccelerometerRingBuffer 
+ * 
+ */
+
+public class AccelerometerRingBufferTest {
+
+	private static AccelerometerRingBuffer createFilledRingBuffer(int capacityIntegerIncoming, int sampleCountIntegerIncoming) {
+		AccelerometerRingBuffer accelerometerRingBuffer = new AccelerometerRingBuffer(capacityIntegerIncoming);
+
+		for (int i = 0; i < sampleCountIntegerIncoming; i++) {
+			accelerometerRingBuffer.add(i, -i, 9.81f, i * 10000L);
+		}
+
+		return accelerometerRingBuffer;
+	}
+
+	@Test
+	public void capacityIsRoundedUpToAPowerOfTwo() {
+		assertEquals(64, new AccelerometerRingBuffer(1).getCapacity());
+		assertEquals(128, new AccelerometerRingBuffer(100).getCapacity());
+
+		// 100 Hz for 5 s is 500 samples, doubled for headroom: 
+
+		assertEquals(1024, AccelerometerRingBuffer.capacityFor(10000, 5000));
+	}
+
+	@Test
+	public void readCopiesAWindowWrappingAroundTheEnd() {
+		AccelerometerRingBuffer accelerometerRingBuffer = createFilledRingBuffer(64, 100);
+
+		float[] xFloatArray = new float[64];
+		float[] yFloatArray = new float[64];
+		float[] zFloatArray = new float[64];
+
+		long[] timeLongArray = new long[64];
+
+		int countInteger = accelerometerRingBuffer.read(50, 90, xFloatArray, yFloatArray, zFloatArray, timeLongArray);
+
+		assertEquals(40, countInteger);
+
+		for (int i = 0; i < countInteger; i++) {
+			assertEquals(50 + i, xFloatArray[i], 0.0f);
+			assertEquals(-(50 + i), yFloatArray[i], 0.0f);
+			assertEquals((50 + i) * 10000L, timeLongArray[i]);
+		}
+	}
+
+	@Test
+	public void readDropsTheOverwrittenSamples() {
+		AccelerometerRingBuffer accelerometerRingBuffer = createFilledRingBuffer(64, 200);
+
+		float[] xFloatArray = new float[256];
+		float[] yFloatArray = new float[256];
+		float[] zFloatArray = new float[256];
+
+		long[] timeLongArray = new long[256];
+
+		int countInteger = accelerometerRingBuffer.read(0, 200, xFloatArray, yFloatArray, zFloatArray, timeLongArray);
+
+		// Only the newest capacity samples are left: 
+
+		assertEquals(64, countInteger);
+		assertEquals(136, xFloatArray[0], 0.0f);
+		assertEquals(199, xFloatArray[63], 0.0f);
+	}
+
+	@Test
+	public void readIsLimitedByTheDestination() {
+		AccelerometerRingBuffer accelerometerRingBuffer = createFilledRingBuffer(64, 60);
+
+		float[] xFloatArray = new float[16];
+		float[] yFloatArray = new float[16];
+		float[] zFloatArray = new float[16];
+
+		long[] timeLongArray = new long[16];
+
+		int countInteger = accelerometerRingBuffer.read(0, 60, xFloatArray, yFloatArray, zFloatArray, timeLongArray);
+
+		// The newest samples that fit: 
+
+		assertEquals(16, countInteger);
+		assertEquals(44, xFloatArray[0], 0.0f);
+	}
+
+	@Test
+	public void windowStartsFromTheOldestAvailableSample() {
+		AccelerometerRingBuffer accelerometerRingBuffer = createFilledRingBuffer(64, 100);
+
+		AccelerometerWindow accelerometerWindow = accelerometerRingBuffer.getWindow(0, 100);
+
+		assertEquals(36, accelerometerWindow.getStartSequence());
+		assertEquals(64, accelerometerWindow.size());
+		assertEquals(36, accelerometerWindow.getX(0), 0.0f);
+	}
+
+	@Test
+	public void latestWindowCoversTheDuration() {
+		AccelerometerRingBuffer accelerometerRingBuffer = createFilledRingBuffer(64, 100);
+
+		// 100 ms at 10 ms intervals, both ends included: 
+
+		AccelerometerWindow accelerometerWindow = accelerometerRingBuffer.getLatestWindow(100000);
+
+		assertEquals(11, accelerometerWindow.size());
+		assertEquals(890000, accelerometerWindow.getTime(0));
+		assertEquals(990000, accelerometerWindow.getTime(10));
+	}
+
+}
@@ -0,0 +1,275 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests of the overflow policies of CallbackDispatcher, and of the priority of the falls. 
+ * <p>
+ * The first result is taken by the dispatcher thread, which then waits for the gate, so the queue fills up. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.CallbackDispatcher 
+ * 
+ */
+
+public class CallbackDispatcherTest {
+
+	private static final int WALK_INTEGER = VTTPhysicalActivityLibrary.DETECTION_WALK;
+	private static final int STABILITY_INTEGER = VTTPhysicalActivityLibrary.DETECTION_STABILITY;
+
+	private final CountDownLatch gateCountDownLatch = new CountDownLatch(1);
+
+	// The delivered events, "A<window end>", "E<error code>" or "F<fall time>". 
+
+	private final List<String> eventsList = new ArrayList<String>();
+
+	// The delivered results, copied. 
+
+	private final List<ActivitySnapshot> activitySnapshotsList = new ArrayList<ActivitySnapshot>();
+
+	private CallbackDispatcher callbackDispatcher;
+
+	private final WritableActivitySnapshot writableActivitySnapshot = new WritableActivitySnapshot();
+
+	private void createCallbackDispatcher(int capacityIntegerIncoming, int overflowPolicyIntegerIncoming) throws InterruptedException {
+		callbackDispatcher = new CallbackDispatcher(new CallbackDispatcherListener() {
+			public void activitySnapshotDispatched(ActivitySnapshot activitySnapshotIncoming) {
+				try {
+					gateCountDownLatch.await();
+				}
+				catch (InterruptedException interruptedExceptionIncoming) {
+					return;
+				}
+
+				ActivitySnapshot activitySnapshot = new ActivitySnapshot();
+
+				activitySnapshotIncoming.copyTo(activitySnapshot);
+
+				synchronized (eventsList) {
+					eventsList.add("A" + activitySnapshotIncoming.getWindowEndTime());
+					activitySnapshotsList.add(activitySnapshot);
+
+					eventsList.notifyAll();
+				}
+			}
+
+			public void errorDispatched(int errorCodeIntegerIncoming) {
+				synchronized (eventsList) {
+					eventsList.add("E" + errorCodeIntegerIncoming);
+
+					eventsList.notifyAll();
+				}
+			}
+
+			public void fallDispatched(long timeLongIncoming) {
+				synchronized (eventsList) {
+					eventsList.add("F" + timeLongIncoming);
+
+					eventsList.notifyAll();
+				}
+			}
+		}, capacityIntegerIncoming, overflowPolicyIntegerIncoming);
+
+		// The first window is taken by the dispatcher thread, which waits for the gate: 
+
+		dispatchWindow(100, 0.0, 1.0, 0);
+
+		long deadlineLong = System.currentTimeMillis() + 5000;
+
+		while ((callbackDispatcher.getQueueDepth() > 0) && (System.currentTimeMillis() < deadlineLong)) {
+			Thread.sleep(1);
+		}
+	}
+
+	private void dispatchWindow(long windowEndTimeLongIncoming, double walkDoubleIncoming, double stabilityDoubleIncoming, int changeMaskIntegerIncoming) {
+		writableActivitySnapshot.clear(windowEndTimeLongIncoming - 100, windowEndTimeLongIncoming);
+		writableActivitySnapshot.putValue(WALK_INTEGER, walkDoubleIncoming);
+		writableActivitySnapshot.putValue(STABILITY_INTEGER, stabilityDoubleIncoming);
+		writableActivitySnapshot.setChangeMask(changeMaskIntegerIncoming);
+
+		callbackDispatcher.dispatchActivitySnapshot(writableActivitySnapshot);
+	}
+
+	private void dispatchStabilityChange(double stabilityDoubleIncoming) {
+		writableActivitySnapshot.clear(0, 0);
+		writableActivitySnapshot.putValue(STABILITY_INTEGER, stabilityDoubleIncoming);
+		writableActivitySnapshot.setChangeMask(1 << STABILITY_INTEGER);
+
+		callbackDispatcher.dispatchActivitySnapshot(writableActivitySnapshot);
+	}
+
+	private List<String> awaitEvents(int countIntegerIncoming) throws InterruptedException {
+		gateCountDownLatch.countDown();
+
+		long deadlineLong = System.currentTimeMillis() + 5000;
+
+		synchronized (eventsList) {
+			while ((eventsList.size() < countIntegerIncoming) && (System.currentTimeMillis() < deadlineLong)) {
+				eventsList.wait(100);
+			}
+
+			Thread.sleep(50); // No more events expected. 
+
+			return new ArrayList<String>(eventsList);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		gateCountDownLatch.countDown();
+
+		if (callbackDispatcher != null) {
+			callbackDispatcher.shutdown();
+		}
+	}
+
+	@Test
+	public void coalesceKeepsTheChangesOfTheMergedResults() throws InterruptedException {
+		createCallbackDispatcher(3, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_COALESCE);
+
+		dispatchWindow(200, 1.0, 1.0, 1 << WALK_INTEGER); // Walk changed. 
+		dispatchWindow(300, 1.0, 1.0, 0);
+		dispatchWindow(400, 1.0, 1.0, 0);
+		dispatchStabilityChange(0.0); // Overflow, merged into the window 400. 
+
+		assertEquals("[A100, A200, A300, A400]", awaitEvents(4).toString());
+
+		ActivitySnapshot activitySnapshot = activitySnapshotsList.get(3);
+
+		assertEquals(400, activitySnapshot.getWindowEndTime()); // The window of the merged change. 
+		assertEquals(1.0, activitySnapshot.getValue(WALK_INTEGER), 0.0);
+		assertEquals(0.0, activitySnapshot.getValue(STABILITY_INTEGER), 0.0);
+		assertEquals(1 << STABILITY_INTEGER, activitySnapshot.getChangeMask());
+
+		assertEquals(1 << WALK_INTEGER, activitySnapshotsList.get(1).getChangeMask());
+
+		assertEquals(1, callbackDispatcher.getCoalesceCount());
+		assertEquals(0, callbackDispatcher.getDropCount());
+	}
+
+	@Test
+	public void coalesceMergesTheEvictedResultsIntoTheNextResults() throws InterruptedException {
+		createCallbackDispatcher(3, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_COALESCE);
+
+		dispatchWindow(200, 1.0, 1.0, 1 << WALK_INTEGER); // Walk changed. 
+		dispatchWindow(300, 1.0, 1.0, 0);
+		callbackDispatcher.dispatchError(VTTPhysicalActivityLibrary.ERROR_GENERAL); // The newest event is not a result. 
+		dispatchWindow(400, 1.0, 1.0, 0); // Overflow, the window 200 is merged into the window 300. 
+
+		assertEquals("[A100, A300, E-3, A400]", awaitEvents(4).toString());
+
+		assertEquals(1 << WALK_INTEGER, activitySnapshotsList.get(1).getChangeMask());
+	}
+
+	@Test
+	public void dropOldestNeverDropsAFallForAnotherEvent() throws InterruptedException {
+		createCallbackDispatcher(2, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_DROP_OLDEST);
+
+		callbackDispatcher.dispatchFall(7);
+		callbackDispatcher.dispatchFall(8);
+		dispatchWindow(200, 0.0, 1.0, 0); // Only falls are queued, the window is dropped. 
+		callbackDispatcher.dispatchError(VTTPhysicalActivityLibrary.ERROR_GENERAL); // Dropped too. 
+
+		assertEquals("[A100, F7, F8]", awaitEvents(3).toString());
+		assertEquals(2, callbackDispatcher.getDropCount());
+	}
+
+	@Test
+	public void dropOldestDropsTheOldestResults() throws InterruptedException {
+		createCallbackDispatcher(2, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_DROP_OLDEST);
+
+		dispatchWindow(200, 0.0, 1.0, 0);
+		dispatchWindow(300, 0.0, 1.0, 0);
+		dispatchWindow(400, 0.0, 1.0, 0);
+
+		assertEquals("[A100, A300, A400]", awaitEvents(3).toString());
+		assertEquals(1, callbackDispatcher.getDropCount());
+	}
+
+	@Test
+	public void fallIsDeliveredAheadOfTheQueuedEvents() throws InterruptedException {
+		createCallbackDispatcher(5, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_DROP_OLDEST);
+
+		dispatchWindow(200, 0.0, 1.0, 0);
+		callbackDispatcher.dispatchError(VTTPhysicalActivityLibrary.ERROR_GENERAL);
+		callbackDispatcher.dispatchFall(7);
+		dispatchWindow(300, 0.0, 1.0, 0);
+		callbackDispatcher.dispatchFall(8); // Behind the earlier fall. 
+
+		assertEquals("[A100, F7, F8, A200, E-3, A300]", awaitEvents(6).toString());
+	}
+
+	@Test
+	public void fallDoesNotBlockOnAFullQueue() throws InterruptedException {
+		createCallbackDispatcher(2, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_BLOCK);
+
+		dispatchWindow(200, 0.0, 1.0, 0);
+		dispatchWindow(300, 0.0, 1.0, 0);
+		callbackDispatcher.dispatchFall(7); // Returns, the oldest window makes room. 
+
+		assertEquals("[A100, F7, A300]", awaitEvents(3).toString());
+	}
+
+	@Test
+	public void blockWaitsForRoom() throws InterruptedException {
+		createCallbackDispatcher(1, VTTPhysicalActivityLibrary.DISPATCH_OVERFLOW_BLOCK);
+
+		dispatchWindow(200, 0.0, 1.0, 0);
+
+		Thread producerThread = new Thread(new Runnable() {
+			public void run() {
+				dispatchWindow(300, 0.0, 1.0, 0);
+			}
+		});
+
+		producerThread.start();
+		producerThread.join(200);
+
+		assertTrue(producerThread.isAlive()); // Waiting for room. 
+
+		assertEquals("[A100, A200, A300]", awaitEvents(3).toString());
+
+		producerThread.join(5000);
+
+		assertEquals(0, callbackDispatcher.getDropCount());
+	}
+
+}
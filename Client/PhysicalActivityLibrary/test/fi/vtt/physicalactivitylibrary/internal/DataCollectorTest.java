@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import fi.vtt.physicalactivitylibrary.internal.utils.ManualClock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests of the window closure of DataCollector, by the timer on a ManualClock, by the sample timestamps and by the sample count. 
+ * <p>
+ * The samples arrive every 8 to 12 ms, and the windows are completed through an executor that runs only every few samples, 
+ * like a busy main thread. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.DataCollector 
+ * 
+ */
+
+public class DataCollectorTest {
+
+	private final ManualClock manualClock = new ManualClock(0);
+
+	private final List<Runnable> queuedRunnablesList = new ArrayList<Runnable>();
+
+	private final List<Integer> sampleCountsList = new ArrayList<Integer>();
+	private final List<Long> spansList = new ArrayList<Long>();
+
+	private SensorSourceListener sensorSourceListener = null;
+
+	private DataCollector dataCollector;
+
+	private boolean streamingBoolean;
+
+	@Before
+	public void setUp() {
+		SensorSource sensorSource = new SensorSource() {
+			public int getAccelerometerMinDelay() {
+				return 10000;
+			}
+
+			public boolean isRealTime() {
+				return true;
+			}
+
+			public void setAccelerometerDelay(int delayIntegerIncoming) {
+			}
+
+			public void start(SensorSourceListener sensorSourceListenerIncoming) {
+				sensorSourceListener = sensorSourceListenerIncoming;
+			}
+
+			public void stop() {
+				sensorSourceListener = null;
+			}
+		};
+
+		Executor executor = new Executor() {
+			public void execute(Runnable runnableIncoming) {
+				queuedRunnablesList.add(runnableIncoming);
+			}
+		};
+
+		dataCollector = new DataCollector(sensorSource, executor, manualClock);
+
+		dataCollector.registerListener(new DataCollectorListener() {
+			public void dataCollectionCompleted() {
+				RawData rawData = dataCollector.getRawData();
+
+				int sampleCountInteger = rawData.getAccelerometerSampleCount();
+
+				sampleCountsList.add(sampleCountInteger);
+				spansList.add(rawData.getAccelerometerTime(sampleCountInteger - 1) - rawData.getAccelerometerTime(0));
+
+				if (!streamingBoolean) {
+					dataCollector.recordSnapshot();
+				}
+			}
+
+			public void detectionChanged(int typeIntegerIncoming, double valueDoubleIncoming) {
+			}
+
+			public void fallDetected() {
+			}
+
+			public void motionDetected(long timeLongIncoming) {
+			}
+
+			public void dataCollectionFailed(int errorCodeIntegerIncoming) {
+			}
+		});
+	}
+
+	private void record(int windowClosureIntegerIncoming, boolean streamingBooleanIncoming, int sampleCountIntegerIncoming) {
+		streamingBoolean = streamingBooleanIncoming;
+
+		dataCollector.setWindowClosure(windowClosureIntegerIncoming, 300);
+
+		if (streamingBoolean) {
+			dataCollector.startStreaming(3000, 1000);
+		}
+		else {
+			dataCollector.recordSnapshot();
+		}
+
+		Random random = new Random(1);
+
+		long timeLong = 0;
+
+		for (int i = 0; i < sampleCountIntegerIncoming; i++) {
+			timeLong += 8000 + random.nextInt(4000);
+
+			if (sensorSourceListener != null) {
+				sensorSourceListener.accelerometerChanged(0.0f, 0.0f, 9.81f, timeLong);
+			}
+
+			manualClock.advance(10);
+
+			if (i % 7 == 0) {
+				while (!queuedRunnablesList.isEmpty()) {
+					queuedRunnablesList.remove(0).run();
+				}
+			}
+		}
+
+		while (!queuedRunnablesList.isEmpty()) {
+			queuedRunnablesList.remove(0).run();
+		}
+
+		dataCollector.stopRecording();
+	}
+
+	@Test
+	public void sampleCountClosesSnapshotsOfExactlyTheCount() {
+		record(VTTPhysicalActivityLibrary.WINDOW_CLOSURE_SAMPLE_COUNT, false, 2000);
+
+		assertEquals(6, sampleCountsList.size());
+
+		for (int sampleCountInteger : sampleCountsList) {
+			assertEquals(300, sampleCountInteger);
+		}
+	}
+
+	@Test
+	public void sampleCountClosesStreamingWindowsOfExactlyTheCount() {
+		record(VTTPhysicalActivityLibrary.WINDOW_CLOSURE_SAMPLE_COUNT, true, 2000);
+
+		// The first window is full after 300 samples, then a window every 100 samples: 
+
+		assertEquals(18, sampleCountsList.size());
+
+		for (int sampleCountInteger : sampleCountsList) {
+			assertEquals(300, sampleCountInteger);
+		}
+	}
+
+	@Test
+	public void timestampsCloseSnapshotsOfTheWindowDuration() {
+		record(VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMESTAMP, false, 2000);
+
+		assertEquals(3, sampleCountsList.size());
+
+		for (long spanLong : spansList) {
+			assertTrue(spanLong <= 5000000);
+			assertTrue(spanLong > 5000000 - 12000);
+		}
+	}
+
+	@Test
+	public void timestampsCloseStreamingWindowsAtEveryHop() {
+		record(VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMESTAMP, true, 2000);
+
+		assertTrue(sampleCountsList.size() >= 18);
+
+		// The windows grow to the window duration during the first window: 
+
+		for (int i = 2; i < spansList.size(); i++) {
+			assertTrue(spansList.get(i) <= 3000000);
+			assertTrue(spansList.get(i) > 3000000 - 12000);
+		}
+	}
+
+	@Test
+	public void timerClosesSnapshotsOnTheClock() {
+		record(VTTPhysicalActivityLibrary.WINDOW_CLOSURE_TIMER, false, 2000);
+
+		// About 5 s at 10 ms per sample, the completion waits for the executor: 
+
+		assertEquals(3, sampleCountsList.size());
+
+		for (int sampleCountInteger : sampleCountsList) {
+			assertTrue(Math.abs(sampleCountInteger - 500) <= 10);
+		}
+	}
+
+}
@@ -0,0 +1,254 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.vtt.physicalactivitylibrary.ActivityBatch;
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryBatchCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibraryFallCallback;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySnapshotCallback;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import fi.vtt.physicalactivitylibrary.internal.utils.ManualClock;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests of the whole pipeline of InternalClass, driven by a replayed trace or by a ManualClock. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.InternalClass 
+ * @see  fi.vtt.physicalactivitylibrary.internal.TraceReplaySensorSource 
+ * 
+ */
+
+public class InternalClassTest {
+
+	private static final int STABILITY_INTEGER = VTTPhysicalActivityLibrary.DETECTION_STABILITY;
+
+	private File traceFile;
+
+	private InternalClass internalClass;
+
+	// Results and falls, delivered on another thread when replaying. 
+
+	private final List<Double> stabilityValuesList = new ArrayList<Double>();
+	private final List<Long> fallTimesList = new ArrayList<Long>();
+
+	private final List<Integer> batchSizesList = new ArrayList<Integer>();
+	private final List<Long> batchTimesList = new ArrayList<Long>();
+
+	@After
+	public void tearDown() {
+		if (internalClass != null) {
+			internalClass.stop();
+		}
+
+		if (traceFile != null) {
+			traceFile.delete();
+		}
+	}
+
+	/**
+	 * Writes 20 s of accelerometer samples at 100 Hz: 10 s lying still, a fall at 12 s and then 8 s of walking. 
+	 * 
+	 */
+
+	private File writeTrace() throws IOException {
+		File file = File.createTempFile("trace", ".csv");
+
+		PrintWriter printWriter = new PrintWriter(file);
+
+		try {
+			printWriter.println("# Written by InternalClassTest. ");
+
+			for (int i = 0; i < 2000; i++) {
+				long timeLong = 1000000 + i * 10000L;
+
+				float zFloat = 9.81f + 0.01f * (float)Math.sin(i);
+
+				if ((i >= 1200) && (i < 1230)) {
+					zFloat = 0.5f; // Free fall. 
+				}
+				else if (i == 1235) {
+					zFloat = 35.0f; // Impact. 
+				}
+				else if (i >= 1300) {
+					zFloat = 9.81f + 3.0f * (float)Math.sin(i / 100.0 * 2 * Math.PI * 1.8);
+				}
+
+				printWriter.println("a," + timeLong + ",0.1,0.2," + zFloat);
+			}
+		}
+		finally {
+			printWriter.close();
+		}
+
+		return file;
+	}
+
+	@Test
+	public void replayedTraceIsDetected() throws IOException, InterruptedException {
+		traceFile = writeTrace();
+
+		TraceReplaySensorSource traceReplaySensorSource = new TraceReplaySensorSource(traceFile);
+		traceReplaySensorSource.setRealTime(false);
+
+		internalClass = new InternalClass(traceReplaySensorSource);
+
+		internalClass.setSnapshotCallback(new PhysicalActivityLibrarySnapshotCallback() {
+			public void newActivitySnapshot(ActivitySnapshot activitySnapshotIncoming) {
+				if ((activitySnapshotIncoming.getWindowEndTime() != 0) && activitySnapshotIncoming.hasValue(STABILITY_INTEGER)) {
+					synchronized (stabilityValuesList) {
+						stabilityValuesList.add(activitySnapshotIncoming.getValue(STABILITY_INTEGER));
+					}
+				}
+			}
+		});
+
+		internalClass.setFallCallback(new PhysicalActivityLibraryFallCallback() {
+			public void fallDetected(long timeLongIncoming) {
+				synchronized (fallTimesList) {
+					fallTimesList.add(timeLongIncoming);
+				}
+			}
+		});
+
+		internalClass.enableDetectionMethod(STABILITY_INTEGER);
+		internalClass.enableDetectionMethod(VTTPhysicalActivityLibrary.DETECTION_FALL);
+
+		internalClass.start();
+
+		traceReplaySensorSource.awaitCompletion();
+
+		Thread.sleep(300); // The last results are delivered on the main thread. 
+
+		synchronized (stabilityValuesList) {
+			assertTrue(stabilityValuesList.size() >= 3);
+
+			assertEquals(1.0, stabilityValuesList.get(0), 0.0); // Lying still. 
+			assertEquals(0.0, stabilityValuesList.get(stabilityValuesList.size() - 1), 0.0); // Walking. 
+		}
+
+		synchronized (fallTimesList) {
+			assertEquals(1, fallTimesList.size());
+		}
+	}
+
+	private void startBatched(int windowCountIntegerIncoming, long batchDelayLongIncoming, boolean changeOnlyBooleanIncoming) {
+		final SensorSourceListener[] sensorSourceListenersArray = new SensorSourceListener[1];
+
+		SensorSource sensorSource = new SensorSource() {
+			public int getAccelerometerMinDelay() {
+				return 10000;
+			}
+
+			public boolean isRealTime() {
+				return true;
+			}
+
+			public void setAccelerometerDelay(int delayIntegerIncoming) {
+			}
+
+			public void start(SensorSourceListener sensorSourceListenerIncoming) {
+				sensorSourceListenersArray[0] = sensorSourceListenerIncoming;
+			}
+
+			public void stop() {
+				sensorSourceListenersArray[0] = null;
+			}
+		};
+
+		final ManualClock manualClock = new ManualClock(0);
+
+		internalClass = new InternalClass(sensorSource, manualClock);
+
+		internalClass.enableDetectionMethod(STABILITY_INTEGER);
+		internalClass.setChangeOnlyDelivery(changeOnlyBooleanIncoming, 10.0, 0);
+
+		internalClass.setBatchCallback(new PhysicalActivityLibraryBatchCallback() {
+			public void newActivityBatch(ActivityBatch activityBatchIncoming) {
+				batchSizesList.add(activityBatchIncoming.getSize());
+				batchTimesList.add(manualClock.currentTimeMillis());
+			}
+		}, windowCountIntegerIncoming, batchDelayLongIncoming);
+
+		internalClass.start();
+
+		long timeLong = 1000000;
+
+		for (int i = 0; i < 2000; i++) {
+			timeLong += 10000;
+
+			if (sensorSourceListenersArray[0] != null) {
+				sensorSourceListenersArray[0].accelerometerChanged(0.0f, 0.0f, 9.81f, timeLong);
+			}
+
+			manualClock.advance(10);
+		}
+	}
+
+	// The device lies still for 20 s, a result every 5 s. 
+
+	@Test
+	public void fullBatchIsDelivered() {
+		startBatched(2, 0, false);
+
+		assertEquals("[2, 2]", batchSizesList.toString());
+		assertEquals("[10000, 20000]", batchTimesList.toString());
+	}
+
+	@Test
+	public void batchIsDeliveredWhenItCoversTheDelay() {
+		startBatched(10, 8000, false);
+
+		// The second result ends 10 s after the first one started: 
+
+		assertEquals("[2, 2]", batchSizesList.toString());
+		assertEquals("[10000, 20000]", batchTimesList.toString());
+	}
+
+	@Test
+	public void batchIsDeliveredAfterTheDelayWithoutFurtherResults() {
+		startBatched(10, 8000, true);
+
+		// Only the first result is a change, the batch timer delivers it 8 s later: 
+
+		assertEquals("[1]", batchSizesList.toString());
+		assertEquals("[13000]", batchTimesList.toString());
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import fi.vtt.physicalactivitylibrary.ActivitySnapshot;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySubscriber;
+import fi.vtt.physicalactivitylibrary.PhysicalActivityLibrarySubscription;
+import fi.vtt.physicalactivitylibrary.VTTPhysicalActivityLibrary;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+/**
+ * Tests of the demand and the backpressure policies of the publishers created by ResultPublisher. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.ResultPublisher 
+ * @see  fi.vtt.physicalactivitylibrary.internal.ResultSubscription 
+ * 
+ */
+
+public class ResultSubscriptionTest {
+
+	private static final int WALK_INTEGER = VTTPhysicalActivityLibrary.DETECTION_WALK;
+	private static final int STABILITY_INTEGER = VTTPhysicalActivityLibrary.DETECTION_STABILITY;
+
+	private final ResultPublisher resultPublisher = new ResultPublisher();
+
+	private final WritableActivitySnapshot writableActivitySnapshot = new WritableActivitySnapshot();
+
+	private PhysicalActivityLibrarySubscription physicalActivityLibrarySubscription;
+
+	private final List<ActivitySnapshot> activitySnapshotsList = new ArrayList<ActivitySnapshot>();
+	private final List<Throwable> throwablesList = new ArrayList<Throwable>();
+
+	private void subscribe(int backpressurePolicyIntegerIncoming) {
+		resultPublisher.createPublisher(backpressurePolicyIntegerIncoming).subscribe(new PhysicalActivityLibrarySubscriber<ActivitySnapshot>() {
+			public void onSubscribe(PhysicalActivityLibrarySubscription physicalActivityLibrarySubscriptionIncoming) {
+				physicalActivityLibrarySubscription = physicalActivityLibrarySubscriptionIncoming;
+			}
+
+			public void onNext(ActivitySnapshot activitySnapshotIncoming) {
+				activitySnapshotsList.add(activitySnapshotIncoming);
+			}
+
+			public void onError(Throwable throwableIncoming) {
+				throwablesList.add(throwableIncoming);
+			}
+
+			public void onComplete() {}
+		});
+	}
+
+	private void publishWindow(long windowEndTimeLongIncoming, double walkDoubleIncoming, int changeMaskIntegerIncoming) {
+		writableActivitySnapshot.clear(windowEndTimeLongIncoming - 90, windowEndTimeLongIncoming);
+		writableActivitySnapshot.putValue(WALK_INTEGER, walkDoubleIncoming);
+		writableActivitySnapshot.putValue(STABILITY_INTEGER, 1.0);
+		writableActivitySnapshot.setChangeMask(changeMaskIntegerIncoming);
+
+		resultPublisher.publish(writableActivitySnapshot);
+	}
+
+	@Test
+	public void nothingIsDeliveredWithoutDemand() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST);
+
+		publishWindow(100, 1.0, 0);
+
+		assertEquals(0, activitySnapshotsList.size());
+
+		physicalActivityLibrarySubscription.request(2);
+
+		publishWindow(200, 1.0, 0);
+		publishWindow(300, 1.0, 0); // No demand left. 
+
+		assertEquals(2, activitySnapshotsList.size());
+		assertEquals(100, activitySnapshotsList.get(0).getWindowEndTime());
+		assertEquals(200, activitySnapshotsList.get(1).getWindowEndTime());
+
+		physicalActivityLibrarySubscription.request(1);
+
+		assertEquals(3, activitySnapshotsList.size());
+		assertEquals(300, activitySnapshotsList.get(2).getWindowEndTime());
+	}
+
+	@Test
+	public void latestMergesAChangeIntoThePendingResult() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST);
+
+		publishWindow(100, 1.0, 1 << WALK_INTEGER);
+
+		writableActivitySnapshot.clear(0, 0); // A streaming change. 
+		writableActivitySnapshot.putValue(STABILITY_INTEGER, 0.0);
+		writableActivitySnapshot.setChangeMask(1 << STABILITY_INTEGER);
+
+		resultPublisher.publish(writableActivitySnapshot);
+
+		physicalActivityLibrarySubscription.request(1);
+
+		assertEquals(1, activitySnapshotsList.size());
+
+		ActivitySnapshot activitySnapshot = activitySnapshotsList.get(0);
+
+		assertEquals(10, activitySnapshot.getWindowStartTime()); // The window of the pending result. 
+		assertEquals(100, activitySnapshot.getWindowEndTime());
+		assertEquals(1.0, activitySnapshot.getValue(WALK_INTEGER), 0.0);
+		assertEquals(0.0, activitySnapshot.getValue(STABILITY_INTEGER), 0.0);
+		assertEquals((1 << WALK_INTEGER) | (1 << STABILITY_INTEGER), activitySnapshot.getChangeMask());
+	}
+
+	@Test
+	public void latestKeepsTheNewestWindow() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST);
+
+		publishWindow(100, 1.0, 1 << WALK_INTEGER);
+		publishWindow(200, 0.0, 0);
+
+		physicalActivityLibrarySubscription.request(1);
+
+		ActivitySnapshot activitySnapshot = activitySnapshotsList.get(0);
+
+		assertEquals(200, activitySnapshot.getWindowEndTime());
+		assertEquals(0.0, activitySnapshot.getValue(WALK_INTEGER), 0.0);
+		assertTrue(activitySnapshot.hasChanged(WALK_INTEGER)); // The change of the older window is kept. 
+	}
+
+	@Test
+	public void dropDropsTheResultsWithoutDemand() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_DROP);
+
+		publishWindow(100, 1.0, 0);
+
+		physicalActivityLibrarySubscription.request(1);
+
+		assertEquals(0, activitySnapshotsList.size());
+
+		publishWindow(200, 1.0, 0);
+
+		assertEquals(1, activitySnapshotsList.size());
+		assertEquals(200, activitySnapshotsList.get(0).getWindowEndTime());
+	}
+
+	@Test
+	public void cancelStopsTheDelivery() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST);
+
+		physicalActivityLibrarySubscription.request(Long.MAX_VALUE);
+		physicalActivityLibrarySubscription.cancel();
+
+		publishWindow(100, 1.0, 0);
+
+		assertEquals(0, activitySnapshotsList.size());
+		assertTrue(resultPublisher.isEmpty());
+	}
+
+	@Test
+	public void nonPositiveRequestSignalsAnError() {
+		subscribe(VTTPhysicalActivityLibrary.BACKPRESSURE_LATEST);
+
+		physicalActivityLibrarySubscription.request(0);
+
+		assertEquals(1, throwablesList.size());
+		assertTrue(throwablesList.get(0) instanceof IllegalArgumentException);
+		assertTrue(resultPublisher.isEmpty());
+	}
+
+}
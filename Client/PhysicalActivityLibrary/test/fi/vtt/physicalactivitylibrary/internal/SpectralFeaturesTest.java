@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of SpectralFeatures, computed through RawData.getSpectralFeatures() for a known sine. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.SpectralFeatures 
+ * 
+ */
+
+public class SpectralFeaturesTest {
+
+	private static RawData createSineRawData(double frequencyDoubleIncoming, int sampleCountIntegerIncoming) {
+		AccelerometerRingBuffer accelerometerRingBuffer = new AccelerometerRingBuffer(1024);
+
+		for (int i = 0; i < sampleCountIntegerIncoming; i++) {
+			float zFloat = (float)(9.81 + 3.0 * Math.sin(2.0 * Math.PI * frequencyDoubleIncoming * i / 100.0));
+
+			accelerometerRingBuffer.add(0.0f, 0.0f, zFloat, i * 10000L); // 100 Hz. 
+		}
+
+		RawData rawData = new RawData(1024);
+
+		rawData.readFrom(accelerometerRingBuffer, 0, sampleCountIntegerIncoming);
+
+		return rawData;
+	}
+
+	@Test
+	public void dominantFrequencyIsTheSineBin() {
+		SpectralFeatures spectralFeatures = createSineRawData(1.8, 500).getSpectralFeatures();
+
+		assertEquals(1024, spectralFeatures.getSize());
+		assertEquals(100.0 / 1024, spectralFeatures.getFrequencyResolution(), 1.0e-9);
+		assertEquals(1.8, spectralFeatures.getDominantFrequency(), spectralFeatures.getFrequencyResolution());
+	}
+
+	@Test
+	public void energyIsInTheBandOfTheSine() {
+		SpectralFeatures spectralFeatures = createSineRawData(2.5, 500).getSpectralFeatures();
+
+		double ratioSumDouble = 0.0;
+
+		for (int i = 0; i < SpectralFeatures.BAND_COUNT; i++) {
+			ratioSumDouble += spectralFeatures.getBandEnergyRatio(i);
+
+			if ((SpectralFeatures.getBandLowerEdge(i) <= 2.5) && (2.5 < SpectralFeatures.getBandUpperEdge(i))) {
+				assertTrue(spectralFeatures.getBandEnergyRatio(i) > 0.9);
+			}
+		}
+
+		assertTrue(ratioSumDouble <= 1.0 + 1.0e-9);
+	}
+
+	@Test
+	public void pureSineHasLowEntropy() {
+		SpectralFeatures spectralFeatures = createSineRawData(1.8, 500).getSpectralFeatures();
+
+		assertTrue(spectralFeatures.getSpectralEntropy() < 0.5);
+	}
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests of WindowResampler: the even grid, the interpolation and the marking of the gaps. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.WindowResampler 
+ * 
+ */
+
+public class WindowResamplerTest {
+
+	// Samples every 10 ms with a jitter of up to 3 ms, and no samples between 200 ms and 300 ms. The x value is the time in ms. 
+
+	private static RawData createRawDataWithGap() {
+		AccelerometerRingBuffer accelerometerRingBuffer = new AccelerometerRingBuffer(128);
+
+		for (int i = 0; i <= 50; i++) {
+			if ((i > 20) && (i < 30)) {
+				continue;
+			}
+
+			long jitterLong = ((i % 3) - 1) * 3000L;
+
+			if ((i == 0) || (i == 20) || (i == 30) || (i == 50)) {
+				jitterLong = 0; // The ends of the window and of the gap are on the grid. 
+			}
+
+			long timeLong = i * 10000L + jitterLong;
+
+			accelerometerRingBuffer.add(timeLong / 1000.0f, 0.0f, 9.81f, timeLong);
+		}
+
+		RawData rawData = new RawData(128);
+
+		rawData.readFrom(accelerometerRingBuffer, 0, accelerometerRingBuffer.getWriteCount());
+
+		return rawData;
+	}
+
+	@Test
+	public void samplesAreOnAnEvenGrid() {
+		RawData rawData = new WindowResampler(100, false).resample(createRawDataWithGap());
+
+		assertEquals(10000, rawData.getSamplePeriod());
+		assertEquals(51, rawData.getAccelerometerSampleCount());
+
+		for (int i = 0; i < rawData.getAccelerometerSampleCount(); i++) {
+			assertEquals(i * 10000L, rawData.getAccelerometerTime(i));
+
+			// Linear in time, so the linear interpolation is exact: 
+
+			assertEquals(i * 10.0f, rawData.getAccelerometerX(i), 1.0e-3f);
+		}
+	}
+
+	@Test
+	public void gapIsInterpolatedAndMarked() {
+		RawData rawData = new WindowResampler(100, true).resample(createRawDataWithGap());
+
+		assertEquals(10, rawData.getGapCount());
+
+		for (int i = 0; i < rawData.getAccelerometerSampleCount(); i++) {
+			boolean inGapBoolean = (i >= 20) && (i < 30);
+
+			assertEquals(inGapBoolean, rawData.isGap(i));
+
+			if (inGapBoolean) {
+				assertEquals(i * 10.0f, rawData.getAccelerometerX(i), 1.0e-3f); // Linear also with cubic interpolation. 
+			}
+		}
+	}
+
+	@Test
+	public void evenWindowHasNoGaps() {
+		AccelerometerRingBuffer accelerometerRingBuffer = new AccelerometerRingBuffer(128);
+
+		for (int i = 0; i < 100; i++) {
+			accelerometerRingBuffer.add(0.0f, 0.0f, 9.81f, i * 20000L); // 50 Hz. 
+		}
+
+		RawData rawData = new RawData(128);
+
+		rawData.readFrom(accelerometerRingBuffer, 0, 100);
+
+		RawData resampledRawData = new WindowResampler(100, false).resample(rawData);
+
+		assertNotSame(rawData, resampledRawData);
+		assertEquals(199, resampledRawData.getAccelerometerSampleCount());
+		assertEquals(0, resampledRawData.getGapCount());
+		assertFalse(resampledRawData.isGap(0));
+	}
+
+	@Test
+	public void heldWindowIsNotReused() {
+		WindowResampler windowResampler = new WindowResampler(100, false);
+
+		RawData rawData = createRawDataWithGap();
+
+		RawData firstRawData = windowResampler.resample(rawData);
+
+		firstRawData.hold();
+
+		for (int i = 0; i < DataCollector.WINDOW_BUFFER_COUNT_INTEGER; i++) {
+			assertNotSame(firstRawData, windowResampler.resample(rawData));
+		}
+
+		firstRawData.release();
+
+		assertTrue(!firstRawData.isHeld());
+	}
+
+}
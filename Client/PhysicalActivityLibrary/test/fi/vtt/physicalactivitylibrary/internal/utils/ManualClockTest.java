@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2013, VTT Technical Research Centre of Finland 
+ * All rights reserved. 
+ * 
+ * Redistribution and use in source and binary forms, with or without 
+ * modification, are permitted provided that the following conditions are met: 
+ * 
+ * 1. Redistributions of source code must retain the above copyright 
+ *    notice, this list of conditions and the following disclaimer. 
+ * 2. Redistributions in binary form must reproduce the above copyright 
+ *    notice, this list of conditions and the following disclaimer in the 
+ *    documentation and/or other materials provided with the distribution. 
+ * 3. Neither the name of the VTT Technical Research Centre of Finland nor the 
+ *    names of its contributors may be used to endorse or promote products 
+ *    derived from this software without specific prior written permission. 
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND 
+ * ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED 
+ * WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR 
+ * ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES 
+ * (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; 
+ * LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND 
+ * ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT 
+ * (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS 
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE. 
+ * 
+ */
+
+package fi.vtt.physicalactivitylibrary.internal.utils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Future;
+import org.junit.Test;
+
+/**
+ * Tests of ManualClock, which drives the timers of the other tests. 
+ * 
+ * @see  fi.vtt.physicalactivitylibrary.internal.utils.ManualClock 
+ * 
+ */
+
+public class ManualClockTest {
+
+	private final ManualClock manualClock = new ManualClock(1000);
+
+	private final List<String> ranList = new ArrayList<String>();
+
+	private Runnable createRunnable(final String nameStringIncoming) {
+		return new Runnable() {
+			public void run() {
+				ranList.add(nameStringIncoming + "@" + manualClock.currentTimeMillis());
+			}
+		};
+	}
+
+	@Test
+	public void tasksRunInDueOrder() {
+		manualClock.schedule(createRunnable("b"), 200);
+		manualClock.schedule(createRunnable("a"), 100);
+		manualClock.schedule(createRunnable("c"), 200); // Same due time, after b. 
+		manualClock.schedule(createRunnable("d"), 301);
+
+		manualClock.advance(300);
+
+		assertEquals("[a@1100, b@1200, c@1200]", ranList.toString());
+		assertEquals(1300, manualClock.currentTimeMillis());
+		assertEquals(1, manualClock.getPendingTaskCount());
+	}
+
+	@Test
+	public void tasksScheduledByTasksRunWhenDue() {
+		manualClock.schedule(new Runnable() {
+			public void run() {
+				manualClock.schedule(createRunnable("inner"), 50);
+			}
+		}, 100);
+
+		manualClock.advance(200);
+
+		assertEquals("[inner@1150]", ranList.toString());
+	}
+
+	@Test
+	public void cancelledTaskDoesNotRun() throws InterruptedException {
+		Future<?> future = manualClock.schedule(createRunnable("a"), 100);
+
+		assertTrue(future.cancel(false));
+		assertTrue(future.isCancelled());
+
+		manualClock.advance(200);
+
+		assertEquals(0, ranList.size());
+		assertFalse(future.cancel(false));
+	}
+
+	@Test
+	public void exceptionPropagatesAtTheDueTime() {
+		manualClock.schedule(new Runnable() {
+			public void run() {
+				throw new IllegalStateException();
+			}
+		}, 100);
+
+		manualClock.schedule(createRunnable("a"), 150);
+
+		try {
+			manualClock.advance(200);
+
+			fail();
+		}
+		catch (IllegalStateException illegalStateExceptionIncoming) {
+			// Expected. 
+		}
+
+		assertEquals(1100, manualClock.currentTimeMillis());
+
+		manualClock.advance(100);
+
+		assertEquals("[a@1150]", ranList.toString());
+	}
+
+}